@@ -0,0 +1,163 @@
+package Rendimiento;
+
+import Entidades.Cita;
+import Entidades.Departamento;
+import Entidades.EspecialidadMedica;
+import Entidades.EstadoCita;
+import Entidades.Matricula;
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.Sala;
+import Entidades.TipoSangre;
+import Servicio.AnaliticaCitas;
+import Servicio.CitaException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.AbstractCollection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [HU-10] Reportes de ingresos sobre la réplica columnar de las citas.
+ *
+ * La réplica se arma sin conservar las citas: cada una se crea, se copia a
+ * las columnas y se descarta, así que 50M de citas ocupan unos 1,3 GB.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnaliticaCitasBenchmark {
+    private static final Set<EstadoCita> FACTURABLES = EnumSet.of(EstadoCita.PROGRAMADA, EstadoCita.EN_CURSO,
+            EstadoCita.COMPLETADA);
+
+    @State(Scope.Benchmark)
+    public static class Datos {
+        private static final int DEPARTAMENTOS = 10;
+
+        @Param({ "1000000", "10000000", "50000000" })
+        public int cantidadCitas;
+
+        AnaliticaCitas analitica;
+        LocalDateTime desde;
+        LocalDateTime hasta;
+
+        @Setup
+        public void preparar() throws CitaException {
+            Sala[] salas = new Sala[100];
+            for (int i = 0; i < salas.length; i++) {
+                salas[i] = departamento(i % DEPARTAMENTOS).crearSala("S" + i, "Consultorio");
+            }
+            Medico[] medicos = new Medico[1000];
+            for (int i = 0; i < medicos.length; i++) {
+                medicos[i] = Medico.builder()
+                        .nombre("Medico" + i)
+                        .apellido("Benchmark")
+                        .dni("M" + i)
+                        .fechaNacimiento(LocalDate.of(1970, 1, 1))
+                        .tipoSangre(TipoSangre.O_POSITIVO)
+                        .matricula(new Matricula(String.format("MP-%06d", i)))
+                        .especialidad(EspecialidadMedica.CARDIOLOGIA)
+                        .build();
+            }
+            Paciente[] pacientes = new Paciente[10_000];
+            for (int i = 0; i < pacientes.length; i++) {
+                pacientes[i] = Paciente.builder()
+                        .nombre("Paciente" + i)
+                        .apellido("Benchmark")
+                        .dni("P" + i)
+                        .fechaNacimiento(LocalDate.of(1980, 1, 1))
+                        .tipoSangre(TipoSangre.values()[i % TipoSangre.values().length])
+                        .telefono("011-0000-0000")
+                        .direccion("Calle " + i)
+                        .build();
+            }
+            BigDecimal[] costos = new BigDecimal[1000];
+            for (int i = 0; i < costos.length; i++) {
+                costos[i] = BigDecimal.valueOf(500_000 + 997L * i, 2);
+            }
+            EstadoCita[] estados = EstadoCita.values();
+            LocalDateTime inicio = LocalDateTime.of(2020, 1, 1, 8, 0);
+            desde = inicio.plusYears(1);
+            hasta = desde.plusYears(1);
+
+            // Una cita cada 3 minutos: 50M abarcan unos 285 años de agenda
+            analitica = AnaliticaCitas.de(new AbstractCollection<Cita>() {
+                @Override
+                public int size() {
+                    return cantidadCitas;
+                }
+
+                @Override
+                public Iterator<Cita> iterator() {
+                    return new Iterator<Cita>() {
+                        private int i;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < cantidadCitas;
+                        }
+
+                        @Override
+                        public Cita next() {
+                            int k = i++;
+                            return Cita.builder()
+                                    .paciente(pacientes[k % pacientes.length])
+                                    .medico(medicos[k % medicos.length])
+                                    .sala(salas[k % salas.length])
+                                    .fechaHora(inicio.plusMinutes(3L * k))
+                                    .costo(costos[(int) (31L * k % costos.length)])
+                                    .estado(estados[k % estados.length])
+                                    .build();
+                        }
+                    };
+                }
+            });
+        }
+
+        private static Departamento departamento(int i) {
+            return Departamento.builder()
+                    .nombre("Departamento" + i)
+                    .especialidad(EspecialidadMedica.values()[i])
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public BigDecimal ingresosTotales(Datos datos) {
+        return datos.analitica.ingresosTotales(LocalDateTime.MIN, LocalDateTime.MAX, FACTURABLES);
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> ingresosPorMedico(Datos datos) {
+        return datos.analitica.ingresosPorMedico(LocalDateTime.MIN, LocalDateTime.MAX, FACTURABLES);
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> ingresosPorDepartamento(Datos datos) {
+        return datos.analitica.ingresosPorDepartamento(LocalDateTime.MIN, LocalDateTime.MAX, FACTURABLES);
+    }
+
+    /** Los días de un año dentro de toda la agenda. */
+    @Benchmark
+    public NavigableMap<LocalDate, BigDecimal> ingresosPorDia(Datos datos) {
+        return datos.analitica.ingresosPorDia(datos.desde, datos.hasta, FACTURABLES);
+    }
+
+    @Benchmark
+    public BigDecimal medianaCosto(Datos datos) {
+        return datos.analitica.percentilCosto(50, LocalDateTime.MIN, LocalDateTime.MAX, FACTURABLES);
+    }
+}
@@ -0,0 +1,39 @@
+package Rendimiento;
+
+import Entidades.Cita;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [HU-10] Consultas de citas por paciente, médico y sala (RN-10.1) sobre
+ * recursos elegidos al azar.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConsultaCitasBenchmark {
+
+    @Benchmark
+    public Collection<Cita> getCitasPorPaciente(DatosCitas datos) {
+        return datos.citaManager.getCitasPorPaciente(datos.paciente(azar(datos.pacientes.length)));
+    }
+
+    @Benchmark
+    public Collection<Cita> getCitasPorMedico(DatosCitas datos) {
+        return datos.citaManager.getCitasPorMedico(datos.medico(azar(datos.medicos.length)));
+    }
+
+    @Benchmark
+    public Collection<Cita> getCitasPorSala(DatosCitas datos) {
+        return datos.citaManager.getCitasPorSala(datos.sala(azar(datos.salas.length)));
+    }
+
+    private static int azar(int limite) {
+        return ThreadLocalRandom.current().nextInt(limite);
+    }
+}
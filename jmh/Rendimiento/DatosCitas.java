@@ -0,0 +1,145 @@
+package Rendimiento;
+
+import Entidades.Departamento;
+import Entidades.EspecialidadMedica;
+import Entidades.Matricula;
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.Sala;
+import Entidades.TipoSangre;
+import Servicio.CitaManager;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conjunto de datos compartido por los benchmarks.
+ *
+ * Genera pacientes, médicos y salas de un único departamento y un archivo CSV
+ * (RN-11.1) con {@code cantidadCitas} citas, que se carga en un
+ * {@link CitaManager}. Cada cita ocupa un turno propio separado 2 horas del
+ * anterior, de modo que ninguna choca con otra sin importar cómo se repartan
+ * médicos y salas. Los turnos siguientes quedan libres para
+ * {@link ProgramarCitaBenchmark}.
+ */
+@State(Scope.Benchmark)
+public class DatosCitas {
+    static final BigDecimal COSTO = new BigDecimal("15000.00");
+    private static final int CANTIDAD_PACIENTES = 10_000;
+
+    /** Los tamaños grandes (1M, 10M) se piden con {@code -PcantidadCitas}; ver build.gradle. */
+    @Param({ "10000", "100000" })
+    public int cantidadCitas;
+
+    @Param({ "100" })
+    public int cantidadMedicos;
+
+    @Param({ "100" })
+    public int cantidadSalas;
+
+    Paciente[] pacientes;
+    Medico[] medicos;
+    Sala[] salas;
+    Map<String, Paciente> pacientesPorDni;
+    Map<String, Medico> medicosPorDni;
+    Map<String, Sala> salasPorNumero;
+    LocalDateTime inicio;
+    Path archivo;
+    CitaManager citaManager;
+    /** Próximo turno libre; se comparte entre hilos para que no reserven el mismo. */
+    final AtomicLong siguienteTurno = new AtomicLong();
+
+    @Setup
+    public void preparar() throws Exception {
+        Departamento departamento = Departamento.builder()
+                .nombre("Cardiología")
+                .especialidad(EspecialidadMedica.CARDIOLOGIA)
+                .build();
+
+        pacientes = new Paciente[CANTIDAD_PACIENTES];
+        pacientesPorDni = new HashMap<>();
+        for (int i = 0; i < pacientes.length; i++) {
+            pacientes[i] = Paciente.builder()
+                    .nombre("Paciente" + i)
+                    .apellido("Benchmark")
+                    .dni("P" + i)
+                    .fechaNacimiento(LocalDate.of(1980, 1, 1))
+                    .tipoSangre(TipoSangre.values()[i % TipoSangre.values().length])
+                    .telefono("011-0000-0000")
+                    .direccion("Calle " + i)
+                    .build();
+            pacientesPorDni.put(pacientes[i].getDni(), pacientes[i]);
+        }
+
+        medicos = new Medico[cantidadMedicos];
+        medicosPorDni = new HashMap<>();
+        for (int i = 0; i < medicos.length; i++) {
+            medicos[i] = Medico.builder()
+                    .nombre("Medico" + i)
+                    .apellido("Benchmark")
+                    .dni("M" + i)
+                    .fechaNacimiento(LocalDate.of(1970, 1, 1))
+                    .tipoSangre(TipoSangre.O_POSITIVO)
+                    .matricula(new Matricula(String.format("MP-%06d", i)))
+                    .especialidad(EspecialidadMedica.CARDIOLOGIA)
+                    .build();
+            medicosPorDni.put(medicos[i].getDni(), medicos[i]);
+        }
+
+        salas = new Sala[cantidadSalas];
+        salasPorNumero = new HashMap<>();
+        for (int i = 0; i < salas.length; i++) {
+            salas[i] = departamento.crearSala("S" + i, "Consultorio");
+            salasPorNumero.put(salas[i].getNumero(), salas[i]);
+        }
+
+        inicio = LocalDateTime.now().plusDays(1).withHour(8).withMinute(0).withSecond(0).withNano(0);
+        archivo = Files.createTempFile("citas-benchmark", ".csv");
+        try (BufferedWriter escritor = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            for (long turno = 0; turno < cantidadCitas; turno++) {
+                escritor.write(paciente(turno).getDni() + "," + medico(turno).getDni() + ","
+                        + sala(turno).getNumero() + "," + fechaDeTurno(turno) + "," + COSTO + ",PROGRAMADA,");
+                escritor.newLine();
+            }
+        }
+        siguienteTurno.set(cantidadCitas);
+
+        citaManager = new CitaManager();
+        citaManager.cargarCitas(archivo.toString(), pacientesPorDni, medicosPorDni, salasPorNumero);
+    }
+
+    @TearDown
+    public void limpiar() throws IOException {
+        Files.deleteIfExists(archivo);
+    }
+
+    Paciente paciente(long turno) {
+        return pacientes[(int) (turno % pacientes.length)];
+    }
+
+    Medico medico(long turno) {
+        return medicos[(int) (turno % medicos.length)];
+    }
+
+    Sala sala(long turno) {
+        return salas[(int) (turno % salas.length)];
+    }
+
+    LocalDateTime fechaDeTurno(long turno) {
+        return inicio.plusHours(2 * turno);
+    }
+}
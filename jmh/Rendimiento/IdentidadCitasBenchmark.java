@@ -0,0 +1,55 @@
+package Rendimiento;
+
+import Entidades.Medico;
+import Entidades.Paciente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [HU-08] [HU-10] Costo de ubicar la agenda de un médico o paciente en los
+ * índices.
+ *
+ * El hash de las entidades depende solo del DNI, así que estas operaciones
+ * deben medir lo mismo para 10 mil que para 10 millones de citas
+ * ({@code -PcantidadCitas}): la cantidad de citas por recurso crece, pero la
+ * búsqueda no la recorre.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IdentidadCitasBenchmark {
+
+    @Benchmark
+    public int hashCodeMedico(DatosCitas datos) {
+        return datos.medico(azar(datos.medicos.length)).hashCode();
+    }
+
+    @Benchmark
+    public int hashCodePaciente(DatosCitas datos) {
+        return datos.paciente(azar(datos.pacientes.length)).hashCode();
+    }
+
+    /** Ventana de 2 horas en la agenda de un médico, como al validar RN-08.1. */
+    @Benchmark
+    public boolean agendaMedicoEnVentana(DatosCitas datos) {
+        Medico medico = datos.medico(azar(datos.medicos.length));
+        LocalDateTime desde = datos.fechaDeTurno(azar(datos.cantidadCitas));
+        return datos.citaManager.getCitasPorMedico(medico, desde, desde.plusHours(2)).isEmpty();
+    }
+
+    @Benchmark
+    public boolean agendaPacienteEnVentana(DatosCitas datos) {
+        Paciente paciente = datos.paciente(azar(datos.pacientes.length));
+        LocalDateTime desde = datos.fechaDeTurno(azar(datos.cantidadCitas));
+        return datos.citaManager.getCitasPorPaciente(paciente, desde, desde.plusHours(2)).isEmpty();
+    }
+
+    private static int azar(int limite) {
+        return ThreadLocalRandom.current().nextInt(limite);
+    }
+}
@@ -0,0 +1,82 @@
+package Rendimiento;
+
+import Entidades.EspecialidadMedica;
+import Entidades.Matricula;
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.TipoSangre;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDate;
+
+/**
+ * Bytes por paciente y por médico en memoria, medidos con JOL sobre el grafo
+ * completo de cada entidad (textos, fecha, matrícula). Los textos
+ * compartidos entre entidades se cuentan una sola vez, así que el resultado
+ * es el costo amortizado de cada una.
+ *
+ * Los datos imitan una carga desde CSV o JPA: cada texto llega como una
+ * instancia propia, con nombres y apellidos de listas cortas, una dirección
+ * cada 3 pacientes (un domicilio familiar) y DNI y teléfono únicos.
+ *
+ * Uso: {@code ./gradlew memoriaPersonas [-Pcantidad=100000]}. Para comparar
+ * con otra versión de las entidades, se corre sobre cada una.
+ */
+public class MemoriaPersonas {
+    private static final String[] NOMBRES = { "María", "José", "Ana", "Juan", "Lucía", "Carlos", "Sofía",
+            "Martín", "Valentina", "Diego", "Camila", "Pedro", "Elena", "Jorge", "Laura", "Pablo" };
+    private static final String[] APELLIDOS = { "González", "Rodríguez", "Gómez", "Fernández", "López",
+            "Díaz", "Martínez", "Pérez", "García", "Sánchez", "Romero", "Sosa", "Álvarez", "Torres", "Ruiz",
+            "Ramírez", "Flores", "Acosta", "Benítez", "Medina" };
+    private static final String[] CALLES = { "Av. Rivadavia", "Av. Corrientes", "San Martín", "Belgrano",
+            "Mitre", "Sarmiento", "Av. de Mayo", "Moreno" };
+
+    public static void main(String[] args) {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        Paciente[] pacientes = new Paciente[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            pacientes[i] = Paciente.builder()
+                    .nombre(copia(NOMBRES[i % NOMBRES.length]))
+                    .apellido(copia(APELLIDOS[(i / NOMBRES.length) % APELLIDOS.length]))
+                    .dni(String.valueOf(20_000_000 + i))
+                    .fechaNacimiento(LocalDate.of(1940, 1, 1).plusDays(i % 30_000))
+                    .tipoSangre(TipoSangre.values()[i % TipoSangre.values().length])
+                    .telefono("11-" + (40_000_000 + i))
+                    .direccion(CALLES[(i / 3) % CALLES.length] + " " + (i / 3))
+                    .build();
+        }
+
+        Medico[] medicos = new Medico[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            medicos[i] = Medico.builder()
+                    .nombre(copia(NOMBRES[i % NOMBRES.length]))
+                    .apellido(copia(APELLIDOS[(i / NOMBRES.length) % APELLIDOS.length]))
+                    .dni(String.valueOf(10_000_000 + i))
+                    .fechaNacimiento(LocalDate.of(1950, 1, 1).plusDays(i % 15_000))
+                    .tipoSangre(TipoSangre.values()[i % TipoSangre.values().length])
+                    .matricula(new Matricula(String.format("MP-%06d", i % 1_000_000)))
+                    .especialidad(EspecialidadMedica.values()[i % EspecialidadMedica.values().length])
+                    .build();
+        }
+
+        System.out.println(ClassLayout.parseClass(Paciente.class).toPrintable());
+        System.out.println(ClassLayout.parseClass(Medico.class).toPrintable());
+        informar("Paciente", pacientes);
+        informar("Medico", medicos);
+    }
+
+    private static void informar(String entidad, Object[] entidades) {
+        GraphLayout grafo = GraphLayout.parseInstance((Object) entidades);
+        long bytes = grafo.totalSize() - ClassLayout.parseInstance(entidades).instanceSize();
+        System.out.println(grafo.toFootprint());
+        System.out.printf("%s: %d bytes por entidad (%d entidades)%n%n", entidad, bytes / entidades.length,
+                entidades.length);
+    }
+
+    /** Una instancia nueva por entidad, como la que deja un parser. */
+    private static String copia(String texto) {
+        return new String(texto.toCharArray());
+    }
+}
@@ -0,0 +1,43 @@
+package Rendimiento;
+
+import Entidades.Sala;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [HU-10] Utilización de una sala elegida al azar durante el primer año de
+ * la agenda, contando bits de los turnos de cada día.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OcupacionSalasBenchmark {
+
+    @Benchmark
+    public double utilizacionAnual(DatosCitas datos) {
+        LocalDate desde = datos.inicio.toLocalDate();
+        return datos.citaManager.getOcupacion().utilizacion(sala(datos), desde, desde.plusYears(1));
+    }
+
+    @Benchmark
+    public NavigableMap<LocalDate, Double> utilizacionPorSemana(DatosCitas datos) {
+        LocalDate desde = datos.inicio.toLocalDate();
+        return datos.citaManager.getOcupacion().utilizacionPorSemana(sala(datos), desde, desde.plusYears(1));
+    }
+
+    @Benchmark
+    public int horaPico(DatosCitas datos) {
+        LocalDate desde = datos.inicio.toLocalDate();
+        return datos.citaManager.getOcupacion().horaPico(sala(datos), desde, desde.plusYears(1));
+    }
+
+    private static Sala sala(DatosCitas datos) {
+        return datos.sala(ThreadLocalRandom.current().nextInt(datos.salas.length));
+    }
+}
@@ -0,0 +1,61 @@
+package Rendimiento;
+
+import Servicio.CitaManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [HU-11] Guardado y carga del CSV de citas (RN-11.1).
+ *
+ * Cada operación recorre el conjunto completo, por lo que se usan pocas
+ * iteraciones y se reporta el tiempo por operación. Cada hilo escribe en su
+ * propio archivo y carga en su propio {@link CitaManager}.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class PersistenciaCitasBenchmark {
+
+    @State(Scope.Thread)
+    public static class Destino {
+        Path archivo;
+        CitaManager citaManager;
+
+        @Setup
+        public void preparar() throws IOException {
+            archivo = Files.createTempFile("citas-benchmark-salida", ".csv");
+            citaManager = new CitaManager();
+        }
+
+        @TearDown
+        public void limpiar() throws IOException {
+            Files.deleteIfExists(archivo);
+        }
+    }
+
+    @Benchmark
+    public void guardarCitas(DatosCitas datos, Destino destino) throws IOException {
+        datos.citaManager.guardarCitas(destino.archivo.toString());
+    }
+
+    @Benchmark
+    public CitaManager cargarCitas(DatosCitas datos, Destino destino) throws Exception {
+        destino.citaManager.cargarCitas(datos.archivo.toString(), datos.pacientesPorDni, datos.medicosPorDni,
+                datos.salasPorNumero);
+        return destino.citaManager;
+    }
+}
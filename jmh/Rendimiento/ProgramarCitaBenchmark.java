@@ -0,0 +1,30 @@
+package Rendimiento;
+
+import Entidades.Cita;
+import Servicio.CitaException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [HU-07] [HU-08] Programación de citas sobre una agenda precargada.
+ *
+ * Cada operación reserva el próximo turno libre, por lo que nunca se rechaza
+ * por disponibilidad: se mide el camino completo de validación, cerrojos e
+ * índices. Con varios hilos ({@code -PjmhThreads}) compiten por las franjas
+ * de los mismos médicos y salas.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProgramarCitaBenchmark {
+
+    @Benchmark
+    public Cita programarCita(DatosCitas datos) throws CitaException {
+        long turno = datos.siguienteTurno.getAndIncrement();
+        return datos.citaManager.programarCita(datos.paciente(turno), datos.medico(turno), datos.sala(turno),
+                datos.fechaDeTurno(turno), DatosCitas.COSTO);
+    }
+}
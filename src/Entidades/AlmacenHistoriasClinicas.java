@@ -0,0 +1,395 @@
+package Entidades;
+
+import lombok.Value;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * [HU-05] Historias clínicas en disco, paginadas y cargadas bajo demanda.
+ *
+ * Cada paciente tiene un segmento propio de solo agregado en el directorio
+ * del almacén. En memoria queda solo la cabecera de cada historia abierta
+ * (fecha de creación y cantidad de entradas por tipo); las entradas se leen
+ * en páginas de {@link #ENTRADAS_POR_PAGINA} que se conservan en una caché
+ * LRU de tamaño fijo. Así la memoria no crece con la cantidad de entradas.
+ *
+ * Formato del segmento: registros {@code <tipo:1 byte><longitud:int><texto UTF-8>},
+ * el primero de tipo {@code C} con la fecha de creación y luego {@code D}
+ * (diagnóstico), {@code T} (tratamiento) o {@code A} (alergia). Un último
+ * registro incompleto (escritura interrumpida) se descarta al abrirlo.
+ *
+ * Los segmentos se escriben sin fsync por entrada; {@link #close()} fuerza
+ * lo escrito a disco.
+ *
+ * @see Hospital#setAlmacenHistorias
+ */
+public class AlmacenHistoriasClinicas implements Closeable {
+    public static final int ENTRADAS_POR_PAGINA = 64;
+    static final String EXTENSION = ".hc";
+
+    private static final int ARCHIVOS_ABIERTOS = 32;
+    private static final int DIRECTORIOS_EN_CACHE = 256;
+    private static final byte CREACION = 'C';
+    private static final int CABECERA_REGISTRO = Byte.BYTES + Integer.BYTES;
+    private static final int TAMANO_LECTURA = 1 << 16;
+
+    private final Path directorio;
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    /** Cabeceras de las historias abiertas, una por DNI. */
+    private final Map<String, Segmento> segmentos = new HashMap<>();
+    private final Map<ClavePagina, List<String>> paginas;
+    private final Map<Segmento, Directorio> directorios = lru(DIRECTORIOS_EN_CACHE, null);
+    private final Map<Segmento, FileChannel> canales = lru(ARCHIVOS_ABIERTOS, AlmacenHistoriasClinicas::cerrar);
+
+    /**
+     * @param directorio     Directorio de los segmentos; se crea si no existe
+     * @param paginasEnCache Páginas de entradas que se conservan en memoria
+     */
+    public AlmacenHistoriasClinicas(Path directorio, int paginasEnCache) throws IOException {
+        if (paginasEnCache <= 0) {
+            throw new IllegalArgumentException("La caché debe admitir al menos una página.");
+        }
+        this.directorio = Files.createDirectories(directorio);
+        this.paginas = lru(paginasEnCache, null);
+    }
+
+    /**
+     * Abre la historia del paciente, creando su segmento si no existe. Las
+     * entradas existentes no se cargan: solo se cuentan.
+     */
+    HistoriaClinica abrir(Paciente paciente) {
+        cerrojo.lock();
+        try {
+            Segmento segmento = segmentos.get(paciente.getDni());
+            if (segmento == null) {
+                segmento = new Segmento(directorio.resolve(nombreArchivo(paciente.getDni())));
+                if (Files.exists(segmento.archivo)) {
+                    recorrer(segmento);
+                } else {
+                    segmento.fechaCreacion = LocalDateTime.now();
+                    escribir(segmento, CREACION, segmento.fechaCreacion.toString());
+                    directorios.put(segmento, new Directorio());
+                }
+                segmentos.put(paciente.getDni(), segmento);
+            }
+            return HistoriaClinica.builder()
+                    .paciente(paciente)
+                    .fechaCreacion(segmento.fechaCreacion)
+                    .diagnosticos(new EntradasPaginadas(this, segmento, TipoEntradaHistoria.DIAGNOSTICO))
+                    .tratamientos(new EntradasPaginadas(this, segmento, TipoEntradaHistoria.TRATAMIENTO))
+                    .alergias(new EntradasPaginadas(this, segmento, TipoEntradaHistoria.ALERGIA))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir la historia clínica de " + paciente.getDni(), e);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Si el paciente ya tiene historia en el almacén. */
+    boolean existe(String dni) {
+        cerrojo.lock();
+        try {
+            return segmentos.containsKey(dni) || Files.exists(directorio.resolve(nombreArchivo(dni)));
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    int cantidad(Segmento segmento, TipoEntradaHistoria tipo) {
+        cerrojo.lock();
+        try {
+            return segmento.cantidades[tipo.ordinal()];
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    void agregar(Segmento segmento, TipoEntradaHistoria tipo, String texto) {
+        cerrojo.lock();
+        try {
+            long posicion = segmento.tamano;
+            escribir(segmento, (byte) tipo.marca, texto);
+            int indice = segmento.cantidades[tipo.ordinal()]++;
+            Directorio directorio = directorios.get(segmento);
+            if (directorio != null) {
+                directorio.registrar(tipo, indice, posicion);
+            }
+            // La última página, si está en caché, sigue completa
+            List<String> pagina = paginas.get(new ClavePagina(segmento, tipo, indice / ENTRADAS_POR_PAGINA));
+            if (pagina != null) {
+                pagina.add(texto);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir la historia clínica en " + segmento.archivo, e);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    String leer(Segmento segmento, TipoEntradaHistoria tipo, int indice) {
+        cerrojo.lock();
+        try {
+            Objects.checkIndex(indice, segmento.cantidades[tipo.ordinal()]);
+            int numero = indice / ENTRADAS_POR_PAGINA;
+            ClavePagina clave = new ClavePagina(segmento, tipo, numero);
+            List<String> pagina = paginas.get(clave);
+            if (pagina == null) {
+                pagina = cargarPagina(segmento, tipo, numero);
+                paginas.put(clave, pagina);
+            }
+            return pagina.get(indice % ENTRADAS_POR_PAGINA);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la historia clínica en " + segmento.archivo, e);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Lee de una vez los bytes entre el inicio de la página y el de la
+     * siguiente del mismo tipo, y extrae de ellos las entradas del tipo.
+     */
+    private List<String> cargarPagina(Segmento segmento, TipoEntradaHistoria tipo, int numero) throws IOException {
+        Directorio directorio = directorios.get(segmento);
+        if (directorio == null) {
+            directorio = recorrer(segmento);
+        }
+        long inicio = directorio.inicio(tipo, numero);
+        long fin = numero + 1 < directorio.paginas(tipo) ? directorio.inicio(tipo, numero + 1) : segmento.tamano;
+        ByteBuffer bloque = ByteBuffer.allocate(Math.toIntExact(fin - inicio));
+        leer(segmento, bloque, inicio);
+        bloque.flip();
+
+        int restantes = Math.min(ENTRADAS_POR_PAGINA,
+                segmento.cantidades[tipo.ordinal()] - numero * ENTRADAS_POR_PAGINA);
+        List<String> pagina = new ArrayList<>(ENTRADAS_POR_PAGINA);
+        while (pagina.size() < restantes) {
+            byte marca = bloque.get();
+            int longitud = bloque.getInt();
+            if (marca == tipo.marca) {
+                pagina.add(new String(bloque.array(), bloque.position(), longitud, StandardCharsets.UTF_8));
+            }
+            bloque.position(bloque.position() + longitud);
+        }
+        return pagina;
+    }
+
+    /**
+     * Recorre el segmento completo: cuenta las entradas, ubica el inicio de
+     * cada página y descarta un registro final incompleto.
+     */
+    private Directorio recorrer(Segmento segmento) throws IOException {
+        Directorio directorio = new Directorio();
+        int[] cantidades = new int[TipoEntradaHistoria.values().length];
+        FileChannel canal = canal(segmento);
+        long tamanoArchivo = canal.size();
+        long posicion = 0;
+        boolean completo = true;
+        ByteBuffer bloque = ByteBuffer.allocate(TAMANO_LECTURA);
+        while (completo && posicion < tamanoArchivo) {
+            bloque.clear().limit((int) Math.min(bloque.capacity(), tamanoArchivo - posicion));
+            leer(segmento, bloque, posicion);
+            bloque.flip();
+            int procesados = 0;
+            while (bloque.remaining() >= CABECERA_REGISTRO) {
+                int longitud = bloque.getInt(bloque.position() + Byte.BYTES);
+                if (longitud < 0 || posicion + CABECERA_REGISTRO + longitud > tamanoArchivo) {
+                    completo = false;
+                    break;
+                }
+                if (bloque.remaining() < CABECERA_REGISTRO + longitud) {
+                    // Continúa en el próximo bloque
+                    break;
+                }
+                byte marca = bloque.get();
+                bloque.position(bloque.position() + Integer.BYTES);
+                TipoEntradaHistoria tipo = TipoEntradaHistoria.deMarca(marca);
+                if (tipo != null) {
+                    directorio.registrar(tipo, cantidades[tipo.ordinal()]++, posicion);
+                } else if (marca == CREACION) {
+                    segmento.fechaCreacion = LocalDateTime.parse(
+                            new String(bloque.array(), bloque.position(), longitud, StandardCharsets.UTF_8));
+                } else {
+                    throw new IOException("Registro inválido en " + segmento.archivo + " en la posición " + posicion);
+                }
+                bloque.position(bloque.position() + longitud);
+                posicion += CABECERA_REGISTRO + longitud;
+                procesados++;
+            }
+            if (completo && procesados == 0) {
+                if (bloque.remaining() < CABECERA_REGISTRO) {
+                    // Cabecera cortada al final del archivo
+                    completo = false;
+                } else {
+                    // Registro más grande que el bloque
+                    bloque = ByteBuffer.allocate(CABECERA_REGISTRO + bloque.getInt(bloque.position() + Byte.BYTES));
+                }
+            }
+        }
+        if (segmento.fechaCreacion == null) {
+            throw new IOException("El segmento " + segmento.archivo + " no tiene fecha de creación.");
+        }
+        if (posicion < tamanoArchivo) {
+            // Escritura interrumpida: el registro nunca se completó
+            canal.truncate(posicion);
+        }
+        segmento.tamano = posicion;
+        segmento.cantidades = cantidades;
+        directorios.put(segmento, directorio);
+        return directorio;
+    }
+
+    /** Llena el destino (desde su posición 0) con los bytes del segmento a partir de {@code posicion}. */
+    private void leer(Segmento segmento, ByteBuffer destino, long posicion) throws IOException {
+        FileChannel canal = canal(segmento);
+        while (destino.hasRemaining()) {
+            if (canal.read(destino, posicion + destino.position()) < 0) {
+                throw new EOFException("El segmento " + segmento.archivo + " terminó antes de lo esperado.");
+            }
+        }
+    }
+
+    private void escribir(Segmento segmento, byte marca, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer registro = ByteBuffer.allocate(CABECERA_REGISTRO + bytes.length);
+        registro.put(marca).putInt(bytes.length).put(bytes).flip();
+        FileChannel canal = canal(segmento);
+        long posicion = segmento.tamano;
+        while (registro.hasRemaining()) {
+            posicion += canal.write(registro, posicion);
+        }
+        segmento.tamano = posicion;
+    }
+
+    private FileChannel canal(Segmento segmento) throws IOException {
+        FileChannel canal = canales.get(segmento);
+        if (canal == null) {
+            canal = FileChannel.open(segmento.archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            canales.put(segmento, canal);
+        }
+        return canal;
+    }
+
+    /** Fuerza a disco y cierra los segmentos abiertos. */
+    @Override
+    public void close() throws IOException {
+        cerrojo.lock();
+        try {
+            for (FileChannel canal : canales.values()) {
+                canal.force(false);
+                canal.close();
+            }
+            canales.clear();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private static void cerrar(FileChannel canal) {
+        try {
+            canal.force(false);
+            canal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** El DNI con los caracteres que no son letras, dígitos o guiones escapados. */
+    static String nombreArchivo(String dni) {
+        StringBuilder nombre = new StringBuilder(dni.length() + EXTENSION.length());
+        for (int i = 0; i < dni.length(); i++) {
+            char c = dni.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-') {
+                nombre.append(c);
+            } else {
+                nombre.append('_').append(String.format("%04x", (int) c));
+            }
+        }
+        return nombre.append(EXTENSION).toString();
+    }
+
+    /** Mapa en orden de acceso que desaloja el menos usado al superar la capacidad. */
+    private static <K, V> Map<K, V> lru(int capacidad, Consumer<V> alDesalojar) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> masAntigua) {
+                if (size() <= capacidad) {
+                    return false;
+                }
+                if (alDesalojar != null) {
+                    alDesalojar.accept(masAntigua.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    /** Cabecera en memoria de una historia: todo lo demás está en disco. */
+    static final class Segmento {
+        final Path archivo;
+        LocalDateTime fechaCreacion;
+        long tamano;
+        int[] cantidades = new int[TipoEntradaHistoria.values().length];
+
+        Segmento(Path archivo) {
+            this.archivo = archivo;
+        }
+    }
+
+    /** Posición en el segmento del primer registro de cada página, por tipo. */
+    private static final class Directorio {
+        private final long[][] inicios = new long[TipoEntradaHistoria.values().length][];
+        private final int[] cantidades = new int[TipoEntradaHistoria.values().length];
+
+        Directorio() {
+            Arrays.setAll(inicios, t -> new long[4]);
+        }
+
+        void registrar(TipoEntradaHistoria tipo, int indice, long posicion) {
+            if (indice % ENTRADAS_POR_PAGINA != 0) {
+                return;
+            }
+            int t = tipo.ordinal();
+            if (cantidades[t] == inicios[t].length) {
+                inicios[t] = Arrays.copyOf(inicios[t], inicios[t].length * 2);
+            }
+            inicios[t][cantidades[t]++] = posicion;
+        }
+
+        long inicio(TipoEntradaHistoria tipo, int numero) {
+            return inicios[tipo.ordinal()][numero];
+        }
+
+        int paginas(TipoEntradaHistoria tipo) {
+            return cantidades[tipo.ordinal()];
+        }
+    }
+
+    @Value
+    private static class ClavePagina {
+        Segmento segmento;
+        TipoEntradaHistoria tipo;
+        int numero;
+    }
+}
@@ -0,0 +1,29 @@
+package Entidades;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * [HU-04] Criterios de búsqueda de pacientes. Los criterios nulos no
+ * filtran; los presentes se combinan con "y".
+ *
+ * - {@code prefijo}: comienzo del apellido o del nombre, sin distinguir
+ *   mayúsculas ni tildes. Primero aparecen las coincidencias por apellido.
+ * - {@code edadMinima} / {@code edadMaxima}: inclusivas, según
+ *   {@link Persona#getEdad()}.
+ *
+ * @see Hospital#buscarPacientes(BusquedaPacientes)
+ */
+@Getter
+@ToString
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BusquedaPacientes {
+    final String prefijo;
+    final TipoSangre tipoSangre;
+    final Integer edadMinima;
+    final Integer edadMaxima;
+    /** Cantidad máxima de resultados. */
+    @Builder.Default
+    final int limite = Integer.MAX_VALUE;
+}
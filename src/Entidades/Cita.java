@@ -1,5 +1,6 @@
 package Entidades;
 
+import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import Servicio.CitaException;
@@ -10,43 +11,107 @@ import java.time.LocalDateTime;
 import java.util.Map;
 
 @Getter
-@ToString(exclude = { "paciente", "medico", "sala" })
+@ToString(exclude = { "paciente", "medico", "sala", "observador" })
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "cita", indexes = {
+        @Index(name = "idx_cita_paciente", columnList = "paciente_dni, fecha_hora"),
+        @Index(name = "idx_cita_fecha_hora", columnList = "fecha_hora")
+}, uniqueConstraints = {
+        // RN-08.1 / RN-08.2: también sirven de índice para las consultas por médico y sala
+        @UniqueConstraint(name = "uk_cita_medico_fecha_hora", columnNames = { "medico_dni", "fecha_hora" }),
+        @UniqueConstraint(name = "uk_cita_sala_fecha_hora", columnNames = { "sala_numero", "fecha_hora" })
+})
 public class Cita implements Serializable {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cita_seq")
+    @SequenceGenerator(name = "cita_seq", sequenceName = "cita_seq", allocationSize = 50)
+    Long id;
     @NonNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "paciente_dni", nullable = false)
     final Paciente paciente;
     @NonNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "medico_dni", nullable = false)
     final Medico medico;
     @NonNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "sala_numero", nullable = false)
     final Sala sala;
     @NonNull
+    @Column(name = "fecha_hora", nullable = false)
     final LocalDateTime fechaHora;
     @NonNull
+    @Column(nullable = false, precision = 19, scale = 2)
     final BigDecimal costo;
+    /**
+     * Se asigna sin validar. En una cita de un gestor, los cambios de estado
+     * pasan por {@code CitaManager.cambiarEstado}, que valida la transición
+     * (RN-07.3) y actualiza sus índices y su diario; este setter no lo hace.
+     */
     @Setter
     @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
     EstadoCita estado = EstadoCita.PROGRAMADA;
-    @Setter
     @Builder.Default
+    @Column(nullable = false, length = 1000)
     String observaciones = "";
+    /** El gestor que registró la cita; no se expone ni en el builder. */
+    @Getter(AccessLevel.NONE)
+    transient volatile ObservadorCita observador;
+
+    /**
+     * Registra la cita en un gestor: desde entonces sus cambios de
+     * observaciones se le notifican. La cita pertenece a ese gestor aunque
+     * luego la cancele o elimine.
+     *
+     * @throws IllegalStateException Si otro gestor ya registró la cita
+     */
+    public synchronized void vincularObservador(@NonNull ObservadorCita observador) {
+        if (this.observador != null && this.observador != observador) {
+            throw new IllegalStateException("La cita ya pertenece a otro gestor: " + this);
+        }
+        this.observador = observador;
+    }
+
+    public void setObservaciones(String observaciones) {
+        String anteriores = this.observaciones;
+        this.observaciones = observaciones;
+        if (observador != null) {
+            observador.observacionesCambiadas(this, anteriores);
+        }
+    }
 
     public String toCsvString() {
-        return String.format("%s,%s,%s,%s,%s,%s,%s",
-                paciente.getDni(),
-                medico.getDni(),
-                sala.getNumero(),
-                fechaHora.toString(),
-                costo.toString(),
-                estado.name(),
-                observaciones.replaceAll(",", ";"));
+        return new StringBuilder(96)
+                .append(paciente.getDni()).append(',')
+                .append(medico.getDni()).append(',')
+                .append(sala.getNumero()).append(',')
+                .append(fechaHora).append(',')
+                .append(costo).append(',')
+                .append(estado.name()).append(',')
+                .append(observaciones.replace(',', ';'))
+                .toString();
+    }
+
+    public static class CitaBuilder {
+        /** Oculta el método que Lombok generaría: el observador solo se asigna con {@link #vincularObservador}. */
+        @SuppressWarnings("unused")
+        private CitaBuilder observador(ObservadorCita observador) {
+            return this;
+        }
     }
 
     public static Cita fromCsvString(String csvString,
             Map<String, Paciente> pacientes,
             Map<String, Medico> medicos,
             Map<String, Sala> salas) throws CitaException {
-        String[] values = csvString.split(",");
+        String[] values = csvString.split(",", -1);
         if (values.length != 7) {
             throw new CitaException("Formato de CSV inválido para Cita: " + csvString);
         }
@@ -57,7 +122,7 @@ public class Cita implements Serializable {
         LocalDateTime fechaHora = LocalDateTime.parse(values[3]);
         BigDecimal costo = new BigDecimal(values[4]);
         EstadoCita estado = EstadoCita.valueOf(values[5]);
-        String observaciones = values[6].replaceAll(";", ",");
+        String observaciones = values[6].replace(';', ',');
 
         Paciente paciente = pacientes.get(dniPaciente);
         Medico medico = medicos.get(dniMedico);
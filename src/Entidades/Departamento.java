@@ -1,62 +1,101 @@
 package Entidades;
 
+import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
 import java.util.Objects;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Getter
 @ToString(exclude = { "hospital", "medicos", "salas" })
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "departamento")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Departamento implements Serializable {
     @EqualsAndHashCode.Include
     @NonNull
+    @Id
     final String nombre;
     @NonNull
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
     final EspecialidadMedica especialidad;
+    @ManyToOne
+    @JoinColumn(name = "hospital_nombre")
     Hospital hospital;
+    /**
+     * Por DNI, en orden de registro. Se lee sin bloquear; las altas de
+     * médicos y salas se serializan con el monitor del departamento, el mismo
+     * con el que las estadísticas del hospital cuentan sus totales.
+     */
     @Builder.Default
-    List<Medico> medicos = new ArrayList<>();
+    @OneToMany(mappedBy = "departamento", cascade = { CascadeType.PERSIST, CascadeType.MERGE })
+    @MapKey(name = "dni")
+    Map<String, Medico> medicos = new RegistroOrdenado<>();
+    /** Pocas altas y muchos recorridos, por ejemplo al buscar turnos libres. */
     @Builder.Default
-    List<Sala> salas = new ArrayList<>();
+    @OneToMany(mappedBy = "departamento", cascade = { CascadeType.PERSIST, CascadeType.MERGE })
+    List<Sala> salas = new CopyOnWriteArrayList<>();
 
     public void setHospital(Hospital hospital) {
         if (this.hospital != hospital) {
             if (this.hospital != null) {
-                this.hospital.getInternalDepartamentos().remove(this);
+                this.hospital.retirarDepartamento(this);
             }
             this.hospital = hospital;
             if (hospital != null) {
-                hospital.getInternalDepartamentos().add(this);
+                hospital.registrarDepartamento(this);
             }
         }
     }
 
-    public void agregarMedico(Medico medico) {
-        if (medico != null && !medicos.contains(medico)) {
-            medicos.add(medico);
+    public synchronized void agregarMedico(Medico medico) {
+        if (medico != null && medicos.putIfAbsent(medico.getDni(), medico) == null) {
             medico.setDepartamento(this);
+            if (hospital != null) {
+                hospital.contarMedico(this, medico);
+            }
         }
     }
 
-    public Sala crearSala(String numero, String tipo) {
+    public synchronized Sala crearSala(String numero, String tipo) {
         Sala sala = Sala.builder()
                 .numero(numero)
                 .tipo(tipo)
                 .departamento(this)
                 .build();
         salas.add(sala);
+        if (hospital != null) {
+            hospital.contarSala(this);
+        }
         return sala;
     }
 
+    /**
+     * [HU-03] Busca un médico del departamento por DNI en O(1).
+     *
+     * @return El médico, o {@code null} si no pertenece al departamento
+     */
+    public Medico buscarMedico(String dni) {
+        return medicos.get(dni);
+    }
+
+    /** Vista de solo lectura, en orden de registro. */
     public List<Medico> getMedicos() {
-        return Collections.unmodifiableList(medicos);
+        return RegistroOrdenado.valoresEnLista(medicos);
     }
 
     public List<Sala> getSalas() {
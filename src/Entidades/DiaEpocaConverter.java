@@ -0,0 +1,28 @@
+package Entidades;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.time.LocalDate;
+
+/**
+ * Guarda en memoria una fecha como días desde 1970-01-01 (4 bytes en lugar
+ * de un {@link LocalDate} de 24) y la mantiene como DATE en la base.
+ */
+@Converter
+public class DiaEpocaConverter implements AttributeConverter<Integer, LocalDate> {
+
+    static int aDias(LocalDate fecha) {
+        return Math.toIntExact(fecha.toEpochDay());
+    }
+
+    @Override
+    public LocalDate convertToDatabaseColumn(Integer dias) {
+        return dias == null ? null : LocalDate.ofEpochDay(dias);
+    }
+
+    @Override
+    public Integer convertToEntityAttribute(LocalDate fecha) {
+        return fecha == null ? null : aDias(fecha);
+    }
+}
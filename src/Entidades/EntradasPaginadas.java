@@ -0,0 +1,39 @@
+package Entidades;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * [HU-05] Entradas de un tipo de una historia clínica guardada en un
+ * {@link AlmacenHistoriasClinicas}. Solo conoce su segmento: cada lectura
+ * pasa por la caché de páginas del almacén y cada alta se agrega al segmento.
+ */
+final class EntradasPaginadas extends AbstractList<String> implements RandomAccess {
+    private final AlmacenHistoriasClinicas almacen;
+    private final AlmacenHistoriasClinicas.Segmento segmento;
+    private final TipoEntradaHistoria tipo;
+
+    EntradasPaginadas(AlmacenHistoriasClinicas almacen, AlmacenHistoriasClinicas.Segmento segmento,
+            TipoEntradaHistoria tipo) {
+        this.almacen = almacen;
+        this.segmento = segmento;
+        this.tipo = tipo;
+    }
+
+    @Override
+    public String get(int indice) {
+        return almacen.leer(segmento, tipo, indice);
+    }
+
+    @Override
+    public int size() {
+        return almacen.cantidad(segmento, tipo);
+    }
+
+    @Override
+    public boolean add(String texto) {
+        almacen.agregar(segmento, tipo, texto);
+        modCount++;
+        return true;
+    }
+}
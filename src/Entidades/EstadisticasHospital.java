@@ -0,0 +1,208 @@
+package Entidades;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * [HU-01] Estadísticas de un hospital: pacientes por tipo de sangre, médicos
+ * por especialidad, citas por estado y totales por departamento.
+ *
+ * Se cargan en la primera consulta y luego el hospital y sus departamentos
+ * las actualizan con cada alta o baja, así que cada lectura es O(1) y no
+ * recorre pacientes ni médicos. Los contadores son {@link LongAdder}: las
+ * actualizaciones concurrentes no se pierden y no compiten por un cerrojo.
+ * Una lectura simultánea a una actualización ve cada contador antes o
+ * después de ella.
+ *
+ * Las citas por estado son las que tiene en las salas del hospital el último
+ * gestor que programó o cargó citas en ellas, como {@code getCitas()} de las
+ * entidades. Un gestor con citas de varios hospitales les da a cada uno solo
+ * las suyas.
+ *
+ * @see Hospital#getEstadisticas()
+ */
+public final class EstadisticasHospital {
+    private final Map<TipoSangre, LongAdder> pacientesPorTipoSangre = contadores(TipoSangre.class);
+    private final Map<EspecialidadMedica, LongAdder> medicosPorEspecialidad = contadores(EspecialidadMedica.class);
+    /** Por nombre del departamento. */
+    private final Map<String, TotalesDepartamento> departamentos = new ConcurrentHashMap<>();
+    private final LongAdder salas = new LongAdder();
+    private volatile Map<EstadoCita, ? extends Number> citasPorEstado = Map.of();
+    private volatile boolean cargado;
+
+    /** Cuenta los departamentos y pacientes ya registrados; el hospital la invoca con su monitor tomado. */
+    void cargar(Collection<Departamento> departamentos, Collection<Paciente> pacientes) {
+        for (Departamento departamento : departamentos) {
+            agregarDepartamento(departamento);
+        }
+        for (Paciente paciente : pacientes) {
+            contarPaciente(paciente, 1);
+        }
+        cargado = true;
+    }
+
+    boolean isCargado() {
+        return cargado;
+    }
+
+    /** @param delta 1 por un alta, -1 por una baja */
+    void contarPaciente(Paciente paciente, int delta) {
+        pacientesPorTipoSangre.get(paciente.getTipoSangre()).add(delta);
+    }
+
+    /**
+     * Suma el departamento con los médicos y salas que ya tiene. Con su
+     * monitor tomado, un alta simultánea se cuenta aquí o en
+     * {@link #contarMedico}, nunca en ambos.
+     */
+    void agregarDepartamento(Departamento departamento) {
+        synchronized (departamento) {
+            TotalesDepartamento totales = new TotalesDepartamento();
+            if (departamentos.putIfAbsent(departamento.getNombre(), totales) != null) {
+                return;
+            }
+            for (Medico medico : departamento.getMedicos()) {
+                contarMedico(totales, medico);
+            }
+            totales.salas.add(departamento.getSalas().size());
+            salas.add(departamento.getSalas().size());
+        }
+    }
+
+    void quitarDepartamento(Departamento departamento) {
+        synchronized (departamento) {
+            TotalesDepartamento totales = departamentos.remove(departamento.getNombre());
+            if (totales == null) {
+                return;
+            }
+            for (Medico medico : departamento.getMedicos()) {
+                medicosPorEspecialidad.get(medico.getEspecialidad()).decrement();
+            }
+            salas.add(-totales.getSalas());
+        }
+    }
+
+    void contarMedico(Departamento departamento, Medico medico) {
+        TotalesDepartamento totales = departamentos.get(departamento.getNombre());
+        if (totales != null) {
+            contarMedico(totales, medico);
+        }
+    }
+
+    void contarSala(Departamento departamento) {
+        TotalesDepartamento totales = departamentos.get(departamento.getNombre());
+        if (totales != null) {
+            totales.salas.increment();
+            salas.increment();
+        }
+    }
+
+    private void contarMedico(TotalesDepartamento totales, Medico medico) {
+        totales.medicos.increment();
+        medicosPorEspecialidad.get(medico.getEspecialidad()).increment();
+    }
+
+    /** @param citasPorEstado Vista de solo lectura sobre los contadores de un gestor */
+    void vincularCitas(Map<EstadoCita, ? extends Number> citasPorEstado) {
+        if (this.citasPorEstado != citasPorEstado) {
+            this.citasPorEstado = citasPorEstado;
+        }
+    }
+
+    public int getDepartamentos() {
+        return departamentos.size();
+    }
+
+    public long getPacientes() {
+        return suma(pacientesPorTipoSangre);
+    }
+
+    public long getPacientes(TipoSangre tipoSangre) {
+        return pacientesPorTipoSangre.get(tipoSangre).sum();
+    }
+
+    /** [HU-04] Pacientes de cada tipo de sangre, incluidos los que no tienen ninguno. */
+    public Map<TipoSangre, Long> getPacientesPorTipoSangre() {
+        return instantanea(TipoSangre.class, pacientesPorTipoSangre);
+    }
+
+    public long getMedicos() {
+        return suma(medicosPorEspecialidad);
+    }
+
+    public long getMedicos(EspecialidadMedica especialidad) {
+        return medicosPorEspecialidad.get(especialidad).sum();
+    }
+
+    /** [HU-03] Médicos de cada especialidad, incluidas las que no tienen ninguno. */
+    public Map<EspecialidadMedica, Long> getMedicosPorEspecialidad() {
+        return instantanea(EspecialidadMedica.class, medicosPorEspecialidad);
+    }
+
+    public long getSalas() {
+        return salas.sum();
+    }
+
+    /** [HU-10] Citas en el estado dado; 0 si ningún gestor registró citas del hospital. */
+    public long getCitas(EstadoCita estado) {
+        Number citas = citasPorEstado.get(estado);
+        return citas != null ? citas.longValue() : 0;
+    }
+
+    /** [HU-10] Citas de cada estado. */
+    public Map<EstadoCita, Long> getCitasPorEstado() {
+        Map<EstadoCita, Long> resultado = new EnumMap<>(EstadoCita.class);
+        for (EstadoCita estado : EstadoCita.values()) {
+            resultado.put(estado, getCitas(estado));
+        }
+        return resultado;
+    }
+
+    /**
+     * [HU-02] Totales del departamento con el nombre dado.
+     *
+     * @return Los totales, o {@code null} si el departamento no pertenece al hospital
+     */
+    public TotalesDepartamento getTotales(String nombreDepartamento) {
+        return departamentos.get(nombreDepartamento);
+    }
+
+    private static <E extends Enum<E>> Map<E, LongAdder> contadores(Class<E> tipo) {
+        Map<E, LongAdder> contadores = new EnumMap<>(tipo);
+        for (E valor : tipo.getEnumConstants()) {
+            contadores.put(valor, new LongAdder());
+        }
+        return contadores;
+    }
+
+    private static long suma(Map<?, LongAdder> contadores) {
+        long total = 0;
+        for (LongAdder contador : contadores.values()) {
+            total += contador.sum();
+        }
+        return total;
+    }
+
+    private static <E extends Enum<E>> Map<E, Long> instantanea(Class<E> tipo, Map<E, LongAdder> contadores) {
+        Map<E, Long> resultado = new EnumMap<>(tipo);
+        contadores.forEach((valor, contador) -> resultado.put(valor, contador.sum()));
+        return resultado;
+    }
+
+    /** Médicos y salas de un departamento. */
+    public static final class TotalesDepartamento {
+        private final LongAdder medicos = new LongAdder();
+        private final LongAdder salas = new LongAdder();
+
+        public long getMedicos() {
+            return medicos.sum();
+        }
+
+        public long getSalas() {
+            return salas.sum();
+        }
+    }
+}
@@ -13,4 +13,20 @@ public enum EstadoCita {
     NO_ASISTIO("No Asistió");
 
     private final String descripcion;
-}
\ No newline at end of file
+
+    /**
+     * RN-07.3: Transiciones permitidas. Una cita programada puede comenzar,
+     * completarse, cancelarse o registrarse como inasistencia; una en curso
+     * solo puede completarse o cancelarse. Los demás estados son finales.
+     */
+    public boolean puedeCambiarA(EstadoCita destino) {
+        switch (this) {
+            case PROGRAMADA:
+                return destino != PROGRAMADA;
+            case EN_CURSO:
+                return destino == COMPLETADA || destino == CANCELADA;
+            default:
+                return false;
+        }
+    }
+}
@@ -9,6 +9,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * [HU-05] Historia clínica de un paciente. Por defecto las entradas viven en
+ * memoria; con un {@link AlmacenHistoriasClinicas} en el hospital, las listas
+ * son vistas paginadas sobre el segmento del paciente en disco.
+ */
 @Getter
 @ToString(exclude = { "paciente" })
 @Builder
@@ -32,18 +37,40 @@ public class HistoriaClinica implements Serializable {
     public void agregarDiagnostico(String diagnostico) {
         if (diagnostico != null && !diagnostico.trim().isEmpty()) {
             diagnosticos.add(diagnostico);
+            indexar(TipoEntradaHistoria.DIAGNOSTICO, diagnostico);
         }
     }
 
     public void agregarTratamiento(String tratamiento) {
         if (tratamiento != null && !tratamiento.trim().isEmpty()) {
             tratamientos.add(tratamiento);
+            indexar(TipoEntradaHistoria.TRATAMIENTO, tratamiento);
         }
     }
 
     public void agregarAlergia(String alergia) {
         if (alergia != null && !alergia.trim().isEmpty()) {
             alergias.add(alergia);
+            indexar(TipoEntradaHistoria.ALERGIA, alergia);
+        }
+    }
+
+    /** [HU-05] Mantiene al día el índice de búsqueda del hospital del paciente. */
+    private void indexar(TipoEntradaHistoria tipo, String entrada) {
+        Hospital hospital = paciente.getHospital();
+        if (hospital != null) {
+            hospital.indexarEntrada(paciente, tipo, entrada);
+        }
+    }
+
+    List<String> getEntradas(TipoEntradaHistoria tipo) {
+        switch (tipo) {
+            case DIAGNOSTICO:
+                return getDiagnosticos();
+            case TRATAMIENTO:
+                return getTratamientos();
+            default:
+                return getAlergias();
         }
     }
 
@@ -1,30 +1,72 @@
 package Entidades;
 
+import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Getter
-@ToString(exclude = { "departamentos", "pacientes" })
+@ToString(exclude = { "departamentos", "pacientes", "indicePacientes", "indiceHistorias", "almacenHistorias",
+        "estadisticas" })
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "hospital")
 public class Hospital implements Serializable {
     @EqualsAndHashCode.Include
     @NonNull
+    @Id
     final String nombre;
     @NonNull
+    @Column(nullable = false)
     final String direccion;
     @NonNull
+    @Column(nullable = false)
     final String telefono;
+    /**
+     * Por nombre, en orden de registro. Los registros se leen sin bloquear;
+     * las altas, las bajas y la carga de los índices y las estadísticas se
+     * serializan con el monitor del hospital.
+     */
     @Builder.Default
-    List<Departamento> departamentos = new ArrayList<>();
+    @OneToMany(mappedBy = "hospital", cascade = { CascadeType.PERSIST, CascadeType.MERGE })
+    @MapKey(name = "nombre")
+    Map<String, Departamento> departamentos = new RegistroOrdenado<>();
+    /** Por DNI, en orden de registro. */
     @Builder.Default
-    List<Paciente> pacientes = new ArrayList<>();
+    @OneToMany(mappedBy = "hospital", cascade = { CascadeType.PERSIST, CascadeType.MERGE })
+    @MapKey(name = "dni")
+    Map<String, Paciente> pacientes = new RegistroOrdenado<>();
+    /** Se carga en la primera búsqueda y luego se actualiza con cada alta o baja. */
+    @Getter(AccessLevel.NONE)
+    @Transient
+    transient IndicePacientes indicePacientes = new IndicePacientes();
+    /** Se carga en la primera búsqueda en historias y luego se actualiza con cada entrada. */
+    @Getter(AccessLevel.NONE)
+    @Transient
+    transient IndiceHistorias indiceHistorias = new IndiceHistorias();
+    /** Se cargan en la primera consulta y luego se actualizan con cada alta o baja. */
+    @Getter(AccessLevel.NONE)
+    @Transient
+    transient EstadisticasHospital estadisticas = new EstadisticasHospital();
+    /**
+     * [HU-05] Si está configurado, las historias clínicas de los pacientes se
+     * guardan en disco y se paginan bajo demanda; si no, quedan en memoria.
+     * Solo afecta a las historias que se abran después de configurarlo.
+     */
+    @Setter
+    @NonFinal
+    @Transient
+    transient AlmacenHistoriasClinicas almacenHistorias;
 
     /**
      * [HU-01] Agrega un departamento al hospital.
@@ -33,12 +75,46 @@ public class Hospital implements Serializable {
      * @param departamento El departamento a agregar
      */
     public void agregarDepartamento(Departamento departamento) {
-        if (departamento != null && !departamentos.contains(departamento)) {
-            departamentos.add(departamento);
+        if (departamento != null && !departamentos.containsKey(departamento.getNombre())) {
             departamento.setHospital(this);
         }
     }
 
+    /** Alta en el registro y en las estadísticas; la invoca {@link Departamento#setHospital}. */
+    synchronized void registrarDepartamento(Departamento departamento) {
+        if (departamentos.putIfAbsent(departamento.getNombre(), departamento) == null
+                && estadisticas.isCargado()) {
+            estadisticas.agregarDepartamento(departamento);
+        }
+    }
+
+    /** Baja del registro y de las estadísticas; la invoca {@link Departamento#setHospital}. */
+    synchronized void retirarDepartamento(Departamento departamento) {
+        if (departamentos.remove(departamento.getNombre(), departamento) && estadisticas.isCargado()) {
+            estadisticas.quitarDepartamento(departamento);
+        }
+    }
+
+    /**
+     * Alta de un médico en las estadísticas; la invoca
+     * {@link Departamento#agregarMedico} con el monitor del departamento, el
+     * mismo con el que la carga de las estadísticas cuenta sus médicos. Solo
+     * se cuenta si el departamento ya tiene totales, aunque la carga siga en
+     * curso con otros departamentos.
+     */
+    void contarMedico(Departamento departamento, Medico medico) {
+        if (departamentos.get(departamento.getNombre()) == departamento) {
+            estadisticas.contarMedico(departamento, medico);
+        }
+    }
+
+    /** Alta de una sala en las estadísticas; la invoca {@link Departamento#crearSala}, como {@link #contarMedico}. */
+    void contarSala(Departamento departamento) {
+        if (departamentos.get(departamento.getNombre()) == departamento) {
+            estadisticas.contarSala(departamento);
+        }
+    }
+
     /**
      * [HU-01] Registra un paciente en el hospital.
      * [HU-04] Establece relación bidireccional Hospital-Paciente.
@@ -46,25 +122,169 @@ public class Hospital implements Serializable {
      * @param paciente El paciente a registrar
      */
     public void agregarPaciente(Paciente paciente) {
-        if (paciente != null && !pacientes.contains(paciente)) {
-            pacientes.add(paciente);
+        if (paciente != null) {
             paciente.setHospital(this);
+            registrarPaciente(paciente);
         }
     }
 
-    public List<Departamento> getDepartamentos() {
-        return Collections.unmodifiableList(departamentos);
+    /** Alta en el registro y en el índice; la invoca {@link Paciente#setHospital}. */
+    synchronized void registrarPaciente(Paciente paciente) {
+        if (pacientes.putIfAbsent(paciente.getDni(), paciente) == null) {
+            if (estadisticas.isCargado()) {
+                estadisticas.contarPaciente(paciente, 1);
+            }
+            if (indicePacientes.isCargado()) {
+                indicePacientes.agregar(paciente);
+            }
+            if (indiceHistorias.isCargado()) {
+                indiceHistorias.agregar(paciente);
+            }
+        }
     }
 
-    public List<Paciente> getPacientes() {
-        return Collections.unmodifiableList(pacientes);
+    /** Baja del registro y del índice; la invoca {@link Paciente#setHospital}. */
+    synchronized void retirarPaciente(Paciente paciente) {
+        if (pacientes.remove(paciente.getDni(), paciente)) {
+            if (estadisticas.isCargado()) {
+                estadisticas.contarPaciente(paciente, -1);
+            }
+            if (indicePacientes.isCargado()) {
+                indicePacientes.quitar(paciente);
+            }
+            if (indiceHistorias.isCargado()) {
+                indiceHistorias.quitar(paciente);
+            }
+        }
+    }
+
+    /** Alta de una entrada en el índice; la invoca {@link HistoriaClinica}. */
+    synchronized void indexarEntrada(Paciente paciente, TipoEntradaHistoria tipo, String entrada) {
+        if (indiceHistorias.isCargado() && pacientes.get(paciente.getDni()) == paciente) {
+            indiceHistorias.agregar(paciente, tipo, entrada);
+        }
+    }
+
+    /**
+     * [HU-04] Busca un paciente registrado por DNI en O(1).
+     *
+     * @return El paciente, o {@code null} si no está registrado
+     */
+    public Paciente buscarPaciente(String dni) {
+        return pacientes.get(dni);
     }
 
-    List<Departamento> getInternalDepartamentos() {
-        return departamentos;
+    /**
+     * [HU-02] Busca un departamento por nombre en O(1).
+     *
+     * @return El departamento, o {@code null} si no pertenece al hospital
+     */
+    public Departamento buscarDepartamento(String nombre) {
+        return departamentos.get(nombre);
+    }
+
+    /**
+     * [HU-04] Pacientes que cumplen todos los criterios dados, por ejemplo
+     * para autocompletar por apellido en recepción. Con prefijo se ordenan
+     * por apellido (y luego por nombre); sin prefijo pero con tipo de sangre,
+     * por orden de registro; con solo edades, por año de nacimiento.
+     *
+     * El costo es O(log n) más los pacientes recorridos hasta completar el
+     * límite.
+     */
+    public synchronized List<Paciente> buscarPacientes(BusquedaPacientes busqueda) {
+        return indice().buscar(busqueda);
+    }
+
+    /** [HU-04] Autocompletado: pacientes cuyo apellido o nombre comienza con el prefijo. */
+    public List<Paciente> buscarPacientesPorPrefijo(String prefijo, int limite) {
+        return buscarPacientes(BusquedaPacientes.builder().prefijo(prefijo).limite(limite).build());
+    }
+
+    /**
+     * [HU-04] Pacientes de un tipo de sangre, por ejemplo todos los O- ante una
+     * emergencia. Vista de solo lectura en O(1), en orden de registro; no
+     * debe recorrerse durante un alta o baja simultánea.
+     */
+    public synchronized Collection<Paciente> getPacientesPorTipoSangre(TipoSangre tipoSangre) {
+        return indice().porTipoSangre(tipoSangre);
+    }
+
+    /**
+     * [HU-05] Pacientes con todas las palabras del texto en las entradas del
+     * tipo dado (o de cualquiera, si es {@code null}), sin distinguir
+     * mayúsculas ni tildes: "penicilina" encuentra "Penicilina" en alergias.
+     *
+     * La primera búsqueda indexa las historias existentes; desde entonces el
+     * costo depende de los pacientes que coinciden y no de la cantidad de
+     * historias.
+     */
+    public synchronized List<Paciente> buscarEnHistorias(String texto, TipoEntradaHistoria tipo) {
+        return indiceHistorias().buscar(texto, tipo, false);
+    }
+
+    /**
+     * [HU-05] Igual que {@link #buscarEnHistorias}, pero la última palabra
+     * puede estar incompleta: "hipertensi" encuentra "Hipertensión arterial".
+     */
+    public synchronized List<Paciente> buscarEnHistoriasPorPrefijo(String texto, TipoEntradaHistoria tipo) {
+        return indiceHistorias().buscar(texto, tipo, true);
+    }
+
+    /**
+     * [HU-01] Totales del hospital para tableros y reportes. La primera
+     * consulta cuenta lo ya registrado; desde entonces cada lectura es O(1).
+     * La carga se serializa con las altas y bajas, así que consultas
+     * simultáneas cuentan cada paciente una sola vez.
+     */
+    public EstadisticasHospital getEstadisticas() {
+        if (!estadisticas.isCargado()) {
+            cargarEstadisticas();
+        }
+        return estadisticas;
+    }
+
+    private synchronized void cargarEstadisticas() {
+        if (!estadisticas.isCargado()) {
+            estadisticas.cargar(departamentos.values(), pacientes.values());
+        }
+    }
+
+    /**
+     * Enlaza las citas por estado de las estadísticas con los contadores de un
+     * gestor. Las consultas posteriores ven sus cambios sin copiarlos.
+     */
+    public void vincularCitas(Map<EstadoCita, ? extends Number> citasPorEstado) {
+        estadisticas.vincularCitas(citasPorEstado);
+    }
+
+    /** Los índices se cargan y se consultan con el monitor del hospital tomado. */
+    private IndiceHistorias indiceHistorias() {
+        if (!indiceHistorias.isCargado()) {
+            indiceHistorias.cargar(pacientes.values());
+        }
+        return indiceHistorias;
+    }
+
+    private IndicePacientes indice() {
+        if (!indicePacientes.isCargado()) {
+            indicePacientes.cargar(pacientes.values());
+        }
+        return indicePacientes;
+    }
+
+    /** Vista de solo lectura, en orden de registro. */
+    public List<Departamento> getDepartamentos() {
+        return RegistroOrdenado.valoresEnLista(departamentos);
+    }
+
+    /** Vista de solo lectura, en orden de registro. */
+    public List<Paciente> getPacientes() {
+        return RegistroOrdenado.valoresEnLista(pacientes);
     }
 
-    List<Paciente> getInternalPacientes() {
-        return pacientes;
+    /** Vista de solo lectura de los pacientes por DNI, lista para {@code cargarCitas}. */
+    public Map<String, Paciente> getPacientesPorDni() {
+        return Collections.unmodifiableMap(pacientes);
     }
 }
\ No newline at end of file
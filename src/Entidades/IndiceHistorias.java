@@ -0,0 +1,193 @@
+package Entidades;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * [HU-05] Índice invertido de las entradas de las historias clínicas de un
+ * hospital.
+ *
+ * Cada entrada se divide en términos normalizados (minúsculas, sin tildes,
+ * como en {@link IndicePacientes}), de modo que "Hipertensión" y
+ * "hipertension" son el mismo término. Cada término lleva, por tipo de
+ * entrada, los pacientes que lo mencionan. El diccionario de términos es un
+ * mapa ordenado, así que un prefijo es un {@code subMap}.
+ *
+ * Las palabras vacías más comunes del español no se indexan: aparecen en
+ * casi todas las entradas y no distinguen a nadie.
+ */
+final class IndiceHistorias {
+    private static final char FIN_PREFIJO = '\uffff';
+    private static final Set<String> PALABRAS_VACIAS = Set.of("a", "al", "con", "de", "del", "e", "el", "en",
+            "la", "las", "lo", "los", "o", "para", "por", "se", "sin", "su", "u", "un", "una", "y");
+
+    private final NavigableMap<String, Map<TipoEntradaHistoria, Map<String, Paciente>>> terminos = new TreeMap<>();
+    private boolean cargado;
+
+    /** Indexa las historias existentes de los pacientes ya registrados. */
+    void cargar(Collection<Paciente> pacientes) {
+        for (Paciente paciente : pacientes) {
+            agregar(paciente);
+        }
+        cargado = true;
+    }
+
+    boolean isCargado() {
+        return cargado;
+    }
+
+    /** Todas las entradas de la historia del paciente, si tiene una. */
+    void agregar(Paciente paciente) {
+        HistoriaClinica historia = paciente.historiaExistente();
+        if (historia != null) {
+            for (TipoEntradaHistoria tipo : TipoEntradaHistoria.values()) {
+                for (String entrada : historia.getEntradas(tipo)) {
+                    agregar(paciente, tipo, entrada);
+                }
+            }
+        }
+    }
+
+    void agregar(Paciente paciente, TipoEntradaHistoria tipo, String entrada) {
+        for (String termino : tokenizar(entrada)) {
+            if (PALABRAS_VACIAS.contains(termino)) {
+                continue;
+            }
+            terminos.computeIfAbsent(termino, t -> new EnumMap<>(TipoEntradaHistoria.class))
+                    .computeIfAbsent(tipo, t -> new LinkedHashMap<>())
+                    .put(paciente.getDni(), paciente);
+        }
+    }
+
+    void quitar(Paciente paciente) {
+        HistoriaClinica historia = paciente.historiaExistente();
+        if (historia == null) {
+            return;
+        }
+        for (TipoEntradaHistoria tipo : TipoEntradaHistoria.values()) {
+            for (String entrada : historia.getEntradas(tipo)) {
+                for (String termino : tokenizar(entrada)) {
+                    Map<TipoEntradaHistoria, Map<String, Paciente>> porTipo = terminos.get(termino);
+                    if (porTipo == null) {
+                        continue;
+                    }
+                    Map<String, Paciente> grupo = porTipo.get(tipo);
+                    if (grupo != null && grupo.remove(paciente.getDni(), paciente) && grupo.isEmpty()) {
+                        porTipo.remove(tipo);
+                        if (porTipo.isEmpty()) {
+                            terminos.remove(termino);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pacientes cuyas entradas del tipo dado (o de cualquiera, si es
+     * {@code null}) contienen todos los términos del texto. Con
+     * {@code ultimoEsPrefijo} el último término puede ser el comienzo de una
+     * palabra, como al autocompletar.
+     *
+     * Se recorre primero el término con menos pacientes, así que el costo es
+     * proporcional al grupo más chico y no a la cantidad de historias.
+     */
+    List<Paciente> buscar(String texto, TipoEntradaHistoria tipo, boolean ultimoEsPrefijo) {
+        List<String> consulta = tokenizar(texto);
+        // El prefijo se conserva aunque sea una palabra vacía: "de" puede ser el comienzo de "dermatitis"
+        String prefijo = ultimoEsPrefijo && !consulta.isEmpty() ? consulta.remove(consulta.size() - 1) : null;
+        consulta.removeAll(PALABRAS_VACIAS);
+        if (prefijo != null) {
+            consulta.add(prefijo);
+        }
+        if (consulta.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Map<String, Paciente>> grupos = new ArrayList<>(consulta.size());
+        for (int i = 0; i < consulta.size(); i++) {
+            Map<String, Paciente> grupo = unir(coincidencias(consulta.get(i), prefijo != null && i == consulta.size() - 1),
+                    tipo);
+            if (grupo.isEmpty()) {
+                return new ArrayList<>();
+            }
+            grupos.add(grupo);
+        }
+        grupos.sort(Comparator.comparingInt(Map::size));
+
+        List<Paciente> resultado = new ArrayList<>();
+        Map<String, Paciente> menor = grupos.get(0);
+        candidatos:
+        for (Map.Entry<String, Paciente> candidato : menor.entrySet()) {
+            for (int i = 1; i < grupos.size(); i++) {
+                if (!grupos.get(i).containsKey(candidato.getKey())) {
+                    continue candidatos;
+                }
+            }
+            resultado.add(candidato.getValue());
+        }
+        return resultado;
+    }
+
+    private Collection<Map<TipoEntradaHistoria, Map<String, Paciente>>> coincidencias(String termino,
+            boolean esPrefijo) {
+        if (esPrefijo) {
+            return terminos.subMap(termino, true, termino + FIN_PREFIJO, false).values();
+        }
+        Map<TipoEntradaHistoria, Map<String, Paciente>> porTipo = terminos.get(termino);
+        return porTipo != null ? List.of(porTipo) : List.of();
+    }
+
+    /**
+     * Pacientes de los grupos de los términos dados. Con un solo grupo se
+     * devuelve sin copiarlo; solo se lee.
+     */
+    private static Map<String, Paciente> unir(
+            Collection<Map<TipoEntradaHistoria, Map<String, Paciente>>> coincidencias, TipoEntradaHistoria tipo) {
+        Map<String, Paciente> unico = null;
+        Map<String, Paciente> union = null;
+        for (Map<TipoEntradaHistoria, Map<String, Paciente>> porTipo : coincidencias) {
+            for (Map.Entry<TipoEntradaHistoria, Map<String, Paciente>> grupo : porTipo.entrySet()) {
+                if (tipo != null && grupo.getKey() != tipo) {
+                    continue;
+                }
+                if (unico == null) {
+                    unico = grupo.getValue();
+                } else {
+                    if (union == null) {
+                        union = new LinkedHashMap<>(unico);
+                    }
+                    union.putAll(grupo.getValue());
+                }
+            }
+        }
+        return union != null ? union : unico != null ? unico : Map.of();
+    }
+
+    /** Términos normalizados del texto, sin repetidos. */
+    static List<String> tokenizar(String texto) {
+        String normalizado = IndicePacientes.normalizar(texto);
+        List<String> resultado = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= normalizado.length(); i++) {
+            boolean alfanumerico = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+            if (alfanumerico && inicio < 0) {
+                inicio = i;
+            } else if (!alfanumerico && inicio >= 0) {
+                String termino = normalizado.substring(inicio, i);
+                if (!resultado.contains(termino)) {
+                    resultado.add(termino);
+                }
+                inicio = -1;
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,194 @@
+package Entidades;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * [HU-04] Índice de búsqueda de los pacientes de un hospital.
+ *
+ * - Prefijo de apellido o nombre: mapas ordenados por el texto normalizado
+ *   (minúsculas, sin tildes) con un grupo de pacientes por valor distinto, de
+ *   modo que un prefijo es un {@code subMap} que se recorre solo hasta
+ *   completar el límite. Los apellidos y nombres se repiten mucho, así que
+ *   los árboles tienen pocos nodos y cada alta es casi siempre una inserción
+ *   en un {@link LinkedHashMap}.
+ * - {@link TipoSangre}: un grupo por tipo en un {@link EnumMap}.
+ * - Edad: {@link Persona#getEdad()} cuenta años calendario, así que los
+ *   pacientes se agrupan por año de nacimiento y un rango de edades es un
+ *   rango de años.
+ *
+ * Los campos indexados son finales en {@link Persona}, así que el índice solo
+ * cambia al agregar o retirar pacientes, en O(log n). No es seguro entre
+ * hilos: el hospital lo carga, actualiza y consulta con su monitor tomado.
+ */
+final class IndicePacientes {
+    private static final char FIN_PREFIJO = '\uffff';
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    private final NavigableMap<String, Map<String, Paciente>> porApellido = new TreeMap<>();
+    private final NavigableMap<String, Map<String, Paciente>> porNombre = new TreeMap<>();
+    private final Map<TipoSangre, Map<String, Paciente>> porTipo = new EnumMap<>(TipoSangre.class);
+    private final NavigableMap<Integer, Map<String, Paciente>> porAnioNacimiento = new TreeMap<>();
+    private boolean cargado;
+
+    IndicePacientes() {
+        for (TipoSangre tipo : TipoSangre.values()) {
+            porTipo.put(tipo, new LinkedHashMap<>());
+        }
+    }
+
+    /**
+     * Indexa los pacientes ya registrados. Hasta entonces el índice no ocupa
+     * memoria ni se actualiza, así que un hospital sin búsquedas (o leído con
+     * JPA, cuyos pacientes no pasan por el alta) no paga su costo.
+     */
+    void cargar(Collection<Paciente> pacientes) {
+        for (Paciente paciente : pacientes) {
+            agregar(paciente);
+        }
+        cargado = true;
+    }
+
+    boolean isCargado() {
+        return cargado;
+    }
+
+    void agregar(Paciente paciente) {
+        agregarEn(porApellido, normalizar(paciente.getApellido()), paciente);
+        agregarEn(porNombre, normalizar(paciente.getNombre()), paciente);
+        porTipo.get(paciente.getTipoSangre()).put(paciente.getDni(), paciente);
+        agregarEn(porAnioNacimiento, paciente.getFechaNacimiento().getYear(), paciente);
+    }
+
+    void quitar(Paciente paciente) {
+        quitarDe(porApellido, normalizar(paciente.getApellido()), paciente);
+        quitarDe(porNombre, normalizar(paciente.getNombre()), paciente);
+        porTipo.get(paciente.getTipoSangre()).remove(paciente.getDni(), paciente);
+        quitarDe(porAnioNacimiento, paciente.getFechaNacimiento().getYear(), paciente);
+    }
+
+    private static <K> void agregarEn(NavigableMap<K, Map<String, Paciente>> indice, K clave, Paciente paciente) {
+        indice.computeIfAbsent(clave, k -> new LinkedHashMap<>()).put(paciente.getDni(), paciente);
+    }
+
+    private static <K> void quitarDe(NavigableMap<K, Map<String, Paciente>> indice, K clave, Paciente paciente) {
+        Map<String, Paciente> grupo = indice.get(clave);
+        if (grupo != null) {
+            grupo.remove(paciente.getDni(), paciente);
+            if (grupo.isEmpty()) {
+                indice.remove(clave);
+            }
+        }
+    }
+
+    /** Vista de solo lectura, en orden de registro. */
+    Collection<Paciente> porTipoSangre(TipoSangre tipo) {
+        return Collections.unmodifiableCollection(porTipo.get(tipo).values());
+    }
+
+    /**
+     * Parte del filtro más selectivo disponible (prefijo, tipo de sangre o
+     * rango de edades) y aplica los demás a cada candidato.
+     */
+    List<Paciente> buscar(BusquedaPacientes busqueda) {
+        int limite = busqueda.getLimite();
+        List<Paciente> resultado = new ArrayList<>(Math.min(limite, 64));
+        if (limite <= 0) {
+            return resultado;
+        }
+        int anioActual = LocalDate.now().getYear();
+        // Persona#getEdad cuenta años calendario: edad = año actual - año de nacimiento
+        int nacidoDesde = busqueda.getEdadMaxima() == null
+                ? Integer.MIN_VALUE : anioActual - busqueda.getEdadMaxima();
+        int nacidoHasta = busqueda.getEdadMinima() == null
+                ? Integer.MAX_VALUE : anioActual - busqueda.getEdadMinima();
+        Filtro filtro = new Filtro(busqueda.getTipoSangre(), nacidoDesde, nacidoHasta);
+
+        String prefijo = busqueda.getPrefijo() == null ? "" : normalizar(busqueda.getPrefijo());
+        if (!prefijo.isEmpty()) {
+            Set<Paciente> vistos = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (agregarGrupos(resultado, limite, filtro, vistos, rango(porApellido, prefijo))) {
+                agregarGrupos(resultado, limite, filtro, vistos, rango(porNombre, prefijo));
+            }
+        } else if (busqueda.getTipoSangre() != null) {
+            agregarHasta(resultado, limite, filtro, null, porTipo.get(busqueda.getTipoSangre()).values());
+        } else if (nacidoDesde <= nacidoHasta) {
+            agregarGrupos(resultado, limite, filtro, null,
+                    porAnioNacimiento.subMap(nacidoDesde, true, nacidoHasta, true).values());
+        }
+        return resultado;
+    }
+
+    /** @return {@code false} si se alcanzó el límite */
+    private static boolean agregarGrupos(List<Paciente> resultado, int limite, Filtro filtro,
+            Set<Paciente> vistos, Collection<Map<String, Paciente>> grupos) {
+        for (Map<String, Paciente> grupo : grupos) {
+            if (!agregarHasta(resultado, limite, filtro, vistos, grupo.values())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return {@code false} si se alcanzó el límite */
+    private static boolean agregarHasta(List<Paciente> resultado, int limite, Filtro filtro,
+            Set<Paciente> vistos, Collection<Paciente> candidatos) {
+        for (Paciente paciente : candidatos) {
+            if (resultado.size() >= limite) {
+                return false;
+            }
+            if (filtro.acepta(paciente) && (vistos == null || vistos.add(paciente))) {
+                resultado.add(paciente);
+            }
+        }
+        return resultado.size() < limite;
+    }
+
+    private static Collection<Map<String, Paciente>> rango(NavigableMap<String, Map<String, Paciente>> indice,
+            String prefijo) {
+        return indice.subMap(prefijo, true, prefijo + FIN_PREFIJO, false).values();
+    }
+
+    static String normalizar(String texto) {
+        String recortado = texto.trim();
+        for (int i = 0; i < recortado.length(); i++) {
+            if (recortado.charAt(i) > 0x7F) {
+                String sinTildes = MARCAS.matcher(Normalizer.normalize(recortado, Normalizer.Form.NFD)).replaceAll("");
+                return sinTildes.toLowerCase(Locale.ROOT);
+            }
+        }
+        // Sin tildes posibles: evita Normalizer y la expresión regular
+        return recortado.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Filtro {
+        final TipoSangre tipoSangre;
+        final int nacidoDesde;
+        final int nacidoHasta;
+
+        Filtro(TipoSangre tipoSangre, int nacidoDesde, int nacidoHasta) {
+            this.tipoSangre = tipoSangre;
+            this.nacidoDesde = nacidoDesde;
+            this.nacidoHasta = nacidoHasta;
+        }
+
+        boolean acepta(Paciente paciente) {
+            int anio = paciente.getFechaNacimiento().getYear();
+            return (tipoSangre == null || paciente.getTipoSangre() == tipoSangre)
+                    && anio >= nacidoDesde && anio <= nacidoHasta;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package Entidades;
 
+import jakarta.persistence.Embeddable;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 import java.io.Serializable;
@@ -8,6 +11,8 @@ import java.util.Objects;
 
 @Getter
 @ToString
+@Embeddable
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
 public class Matricula implements Serializable {
     private final String numero;
 
@@ -1,34 +1,55 @@
 package Entidades;
 
+import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.SuperBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 @Getter
 @ToString(callSuper = true, exclude = { "citas", "departamento" })
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, onlyExplicitlyIncluded = true)
 @SuperBuilder(toBuilder = true)
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@Entity
+@Table(name = "medico")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Medico extends Persona implements Serializable {
     @NonNull
+    @Embedded
+    @AttributeOverride(name = "numero", column = @Column(name = "matricula", nullable = false, unique = true))
     final Matricula matricula;
     @NonNull
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
     final EspecialidadMedica especialidad;
     @Setter
+    @ManyToOne
+    @JoinColumn(name = "departamento_nombre")
     Departamento departamento;
+    /** Vista de solo lectura sobre el índice del gestor que registró sus citas. */
     @Builder.Default
-    List<Cita> citas = new ArrayList<>();
+    @Transient
+    transient volatile Collection<Cita> citas = List.of();
 
-    public void addCita(Cita cita) {
-        this.citas.add(cita);
+    /**
+     * Enlaza las citas con el índice de un gestor. Las consultas posteriores
+     * ven los cambios del índice sin copiarlo.
+     */
+    public void vincularCitas(Collection<Cita> citas) {
+        this.citas = Collections.unmodifiableCollection(citas);
     }
 
-    public List<Cita> getCitas() {
-        return Collections.unmodifiableList(new ArrayList<>(citas));
+    public Collection<Cita> getCitas() {
+        Collection<Cita> vinculadas = citas;
+        return vinculadas != null ? vinculadas : List.of();
     }
 }
\ No newline at end of file
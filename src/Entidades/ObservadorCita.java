@@ -0,0 +1,13 @@
+package Entidades;
+
+/**
+ * Recibe las modificaciones que se realizan sobre una {@link Cita} ya
+ * registrada, para que el gestor de citas pueda mantener sus estructuras
+ * derivadas (diario) sincronizadas.
+ *
+ * @see Cita#vincularObservador(ObservadorCita)
+ */
+public interface ObservadorCita {
+
+    void observacionesCambiadas(Cita cita, String anteriores);
+}
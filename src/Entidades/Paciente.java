@@ -1,57 +1,98 @@
 package Entidades;
 
+import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.SuperBuilder;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
 @Getter
 @ToString(callSuper = true, exclude = { "citas", "hospital", "historiaClinica" })
-@EqualsAndHashCode(callSuper = true)
+@EqualsAndHashCode(callSuper = true, onlyExplicitlyIncluded = true)
 @SuperBuilder(toBuilder = true)
 @FieldDefaults(level = AccessLevel.PRIVATE)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@Entity
+@Table(name = "paciente")
 public class Paciente extends Persona implements Serializable {
     @NonNull
+    @Column(nullable = false)
     final String telefono;
     @NonNull
+    @Column(nullable = false)
+    @Convert(converter = TextoCompartidoConverter.class)
     final String direccion;
+    @ManyToOne
+    @JoinColumn(name = "hospital_nombre")
     Hospital hospital;
+    /** Vista de solo lectura sobre el índice del gestor que registró sus citas. */
     @Builder.Default
-    List<Cita> citas = new ArrayList<>();
+    @Transient
+    transient volatile Collection<Cita> citas = List.of();
     // HistoriaClinica se gestiona externamente o con factory; evitar 'this' en
     // builder
+    @Transient
     HistoriaClinica historiaClinica;
 
     public HistoriaClinica getHistoriaClinica() {
         if (this.historiaClinica == null) {
-            this.historiaClinica = HistoriaClinica.builder()
-                    .paciente(this)
-                    .build();
+            AlmacenHistoriasClinicas almacen = hospital != null ? hospital.getAlmacenHistorias() : null;
+            this.historiaClinica = almacen != null
+                    ? almacen.abrir(this)
+                    : HistoriaClinica.builder()
+                            .paciente(this)
+                            .build();
         }
         return this.historiaClinica;
     }
 
+    /**
+     * La historia si ya existe, en memoria o en el almacén del hospital, sin
+     * crear una vacía.
+     */
+    HistoriaClinica historiaExistente() {
+        if (historiaClinica == null && hospital != null && hospital.getAlmacenHistorias() != null
+                && hospital.getAlmacenHistorias().existe(getDni())) {
+            return getHistoriaClinica();
+        }
+        return historiaClinica;
+    }
+
     public void setHospital(Hospital hospital) {
         if (this.hospital != hospital) {
             if (this.hospital != null) {
-                this.hospital.getInternalPacientes().remove(this);
+                this.hospital.retirarPaciente(this);
             }
             this.hospital = hospital;
             if (hospital != null) {
-                hospital.getInternalPacientes().add(this);
+                hospital.registrarPaciente(this);
             }
         }
     }
 
-    public void addCita(Cita cita) {
-        this.citas.add(cita);
+    /**
+     * Enlaza las citas con el índice de un gestor. Las consultas posteriores
+     * ven los cambios del índice sin copiarlo.
+     */
+    public void vincularCitas(Collection<Cita> citas) {
+        this.citas = Collections.unmodifiableCollection(citas);
     }
 
-    public List<Cita> getCitas() {
-        return Collections.unmodifiableList(new ArrayList<>(citas));
+    public Collection<Cita> getCitas() {
+        Collection<Cita> vinculadas = citas;
+        return vinculadas != null ? vinculadas : List.of();
+    }
+
+    public static abstract class PacienteBuilder<C extends Paciente, B extends PacienteBuilder<C, B>>
+            extends PersonaBuilder<C, B> {
+        /** Las direcciones se repiten entre los pacientes de un mismo domicilio. */
+        public B direccion(@NonNull String direccion) {
+            this.direccion = TextoCompartidoConverter.compartir(direccion);
+            return self();
+        }
     }
-}
\ No newline at end of file
+}
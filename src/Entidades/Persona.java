@@ -1,35 +1,95 @@
 package Entidades;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import lombok.experimental.SuperBuilder;
 
 import java.io.Serializable;
 import java.time.LocalDate;
+import java.util.Objects;
 
+/**
+ * Datos comunes de pacientes y médicos, con una representación compacta
+ * pensada para millones de personas en memoria:
+ *
+ * - Nombre y apellido se comparten entre todas las personas que los repiten
+ *   ({@link TextoCompartidoConverter}), tanto al construirlas como al
+ *   leerlas con JPA.
+ * - La fecha de nacimiento se guarda como días desde 1970-01-01 en un
+ *   {@code int} y se expone como {@link LocalDate}.
+ * - El DNI sigue siendo un {@link String}: es la clave de los registros del
+ *   hospital y de los índices de citas, que comparten esta misma instancia.
+ */
 @Getter
 @ToString
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @SuperBuilder(toBuilder = true)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@MappedSuperclass
 @FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
 public abstract class Persona implements Serializable {
     @NonNull
+    @Column(nullable = false)
+    @Convert(converter = TextoCompartidoConverter.class)
     final String nombre;
     @NonNull
+    @Column(nullable = false)
+    @Convert(converter = TextoCompartidoConverter.class)
     final String apellido;
     @EqualsAndHashCode.Include
     @NonNull
+    @Id
     final String dni;
+    @Getter(AccessLevel.NONE)
+    @Column(nullable = false)
+    @Convert(converter = DiaEpocaConverter.class)
+    final int fechaNacimiento;
     @NonNull
-    final LocalDate fechaNacimiento;
-    @NonNull
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
     final TipoSangre tipoSangre;
 
+    protected Persona(PersonaBuilder<?, ?> builder) {
+        this.nombre = TextoCompartidoConverter.compartir(
+                Objects.requireNonNull(builder.nombre, "nombre is marked non-null but is null"));
+        this.apellido = TextoCompartidoConverter.compartir(
+                Objects.requireNonNull(builder.apellido, "apellido is marked non-null but is null"));
+        this.dni = Objects.requireNonNull(builder.dni, "dni is marked non-null but is null");
+        this.fechaNacimiento = DiaEpocaConverter.aDias(
+                Objects.requireNonNull(builder.fechaNacimiento, "fechaNacimiento is marked non-null but is null"));
+        this.tipoSangre = Objects.requireNonNull(builder.tipoSangre, "tipoSangre is marked non-null but is null");
+    }
+
+    public LocalDate getFechaNacimiento() {
+        return LocalDate.ofEpochDay(fechaNacimiento);
+    }
+
     public String getNombreCompleto() {
         return nombre + " " + apellido;
     }
 
     public int getEdad() {
-        return LocalDate.now().getYear() - fechaNacimiento.getYear();
+        return LocalDate.now().getYear() - getFechaNacimiento().getYear();
+    }
+
+    /** La fecha se recibe como {@link LocalDate}; el campo guarda los días. */
+    public static abstract class PersonaBuilder<C extends Persona, B extends PersonaBuilder<C, B>> {
+        private LocalDate fechaNacimiento;
+
+        public B fechaNacimiento(@NonNull LocalDate fechaNacimiento) {
+            this.fechaNacimiento = fechaNacimiento;
+            return self();
+        }
+
+        /** Usado por {@code toBuilder()}, que copia el campo compacto. */
+        private B fechaNacimiento(int dias) {
+            return fechaNacimiento(LocalDate.ofEpochDay(dias));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+package Entidades;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Registro del hospital y de sus departamentos: como un
+ * {@link java.util.LinkedHashMap}, busca por clave en O(1) y recorre en orden
+ * de registro, pero puede usarse desde varios hilos.
+ *
+ * Cada entrada se guarda en un mapa por clave y en otro por número de alta.
+ * Las escrituras se serializan entre sí; las lecturas y los recorridos no
+ * bloquean y, como en {@link ConcurrentHashMap}, ven cada alta o baja
+ * simultánea antes o después de ella. Reemplazar el valor de una clave
+ * conserva su lugar en el orden. No admite claves ni valores {@code null}.
+ */
+@SuppressWarnings("serial")
+final class RegistroOrdenado<K, V> extends AbstractMap<K, V> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<K, Entrada<K, V>> porClave = new ConcurrentHashMap<>();
+    /** Por número de alta. */
+    private final NavigableMap<Long, Entrada<K, V>> enOrden = new ConcurrentSkipListMap<>();
+    private long altas;
+
+    @Override
+    public V get(Object clave) {
+        Entrada<K, V> entrada = porClave.get(clave);
+        return entrada != null ? entrada.getValue() : null;
+    }
+
+    @Override
+    public boolean containsKey(Object clave) {
+        return porClave.containsKey(clave);
+    }
+
+    @Override
+    public int size() {
+        return porClave.size();
+    }
+
+    @Override
+    public synchronized V put(K clave, V valor) {
+        Objects.requireNonNull(valor);
+        Entrada<K, V> anterior = porClave.get(clave);
+        Entrada<K, V> entrada = new Entrada<>(anterior != null ? anterior.alta : altas++, clave, valor);
+        porClave.put(clave, entrada);
+        enOrden.put(entrada.alta, entrada);
+        return anterior != null ? anterior.getValue() : null;
+    }
+
+    @Override
+    public synchronized V putIfAbsent(K clave, V valor) {
+        V actual = get(clave);
+        return actual != null ? actual : put(clave, valor);
+    }
+
+    @Override
+    public synchronized V remove(Object clave) {
+        Entrada<K, V> anterior = porClave.remove(clave);
+        if (anterior == null) {
+            return null;
+        }
+        enOrden.remove(anterior.alta);
+        return anterior.getValue();
+    }
+
+    @Override
+    public synchronized boolean remove(Object clave, Object valor) {
+        V actual = get(clave);
+        if (actual == null || !actual.equals(valor)) {
+            return false;
+        }
+        remove(clave);
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        porClave.clear();
+        enOrden.clear();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                Iterator<Entrada<K, V>> entradas = enOrden.values().iterator();
+                return new Iterator<>() {
+                    private Entrada<K, V> ultima;
+
+                    @Override
+                    public boolean hasNext() {
+                        return entradas.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<K, V> next() {
+                        ultima = entradas.next();
+                        return ultima;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (ultima == null) {
+                            throw new IllegalStateException();
+                        }
+                        RegistroOrdenado.this.remove(ultima.getKey(), ultima.getValue());
+                        ultima = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return RegistroOrdenado.this.size();
+            }
+        };
+    }
+
+    /**
+     * Vista de lista de solo lectura sobre los valores del mapa, en su orden
+     * de recorrido: el de registro si es un {@code RegistroOrdenado}. No copia
+     * los valores; recorrerla es O(n), pero {@code get(i)} avanza desde el
+     * primero y es O(i).
+     */
+    static <V> List<V> valoresEnLista(Map<?, V> mapa) {
+        Collection<V> valores = Collections.unmodifiableCollection(mapa.values());
+        return new AbstractList<>() {
+            @Override
+            public V get(int indice) {
+                if (indice >= 0) {
+                    Iterator<V> recorrido = valores.iterator();
+                    for (int i = 0; recorrido.hasNext(); i++) {
+                        V valor = recorrido.next();
+                        if (i == indice) {
+                            return valor;
+                        }
+                    }
+                }
+                throw new IndexOutOfBoundsException("Índice fuera de rango: " + indice);
+            }
+
+            @Override
+            public Iterator<V> iterator() {
+                return valores.iterator();
+            }
+
+            @Override
+            public int size() {
+                return valores.size();
+            }
+        };
+    }
+
+    private static final class Entrada<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        final long alta;
+
+        Entrada(long alta, K clave, V valor) {
+            super(clave, valor);
+            this.alta = alta;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package Entidades;
 
+import jakarta.persistence.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -13,22 +17,40 @@ import java.util.List;
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 @Builder
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@NoArgsConstructor(access = AccessLevel.PROTECTED, force = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "sala")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Sala implements Serializable {
     @EqualsAndHashCode.Include
     @NonNull
+    @Id
     final String numero;
     @NonNull
+    @Column(nullable = false)
     final String tipo;
     @NonNull
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "departamento_nombre", nullable = false)
     final Departamento departamento;
+    /** Vista de solo lectura sobre el índice del gestor que registró sus citas. */
     @Builder.Default
-    List<Cita> citas = new ArrayList<>();
+    @Transient
+    @NonFinal
+    transient volatile Collection<Cita> citas = List.of();
 
-    public void addCita(Cita cita) {
-        this.citas.add(cita);
+    /**
+     * Enlaza las citas con el índice de un gestor. Las consultas posteriores
+     * ven los cambios del índice sin copiarlo.
+     */
+    public void vincularCitas(Collection<Cita> citas) {
+        this.citas = Collections.unmodifiableCollection(citas);
     }
 
-    public List<Cita> getCitas() {
-        return Collections.unmodifiableList(new ArrayList<>(citas));
+    public Collection<Cita> getCitas() {
+        Collection<Cita> vinculadas = citas;
+        return vinculadas != null ? vinculadas : List.of();
     }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package Entidades;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Comparte una sola instancia por texto distinto. Nombres, apellidos y
+ * direcciones se repiten entre miles de personas; sin esto cada fila leída
+ * de la base o del CSV trae su propia copia.
+ *
+ * Usa la tabla de {@link String#intern()} de la JVM, que libera los textos
+ * que ya nadie referencia.
+ */
+@Converter
+public class TextoCompartidoConverter implements AttributeConverter<String, String> {
+
+    static String compartir(String texto) {
+        return texto == null ? null : texto.intern();
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String texto) {
+        return texto;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String texto) {
+        return compartir(texto);
+    }
+}
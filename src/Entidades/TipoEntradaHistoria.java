@@ -0,0 +1,27 @@
+package Entidades;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Getter
+public enum TipoEntradaHistoria {
+    DIAGNOSTICO("Diagnóstico", 'D'),
+    TRATAMIENTO("Tratamiento", 'T'),
+    ALERGIA("Alergia", 'A');
+
+    private final String descripcion;
+    /** Marca del registro en los segmentos de {@link AlmacenHistoriasClinicas}. */
+    @Getter(AccessLevel.NONE)
+    final char marca;
+
+    static TipoEntradaHistoria deMarca(int marca) {
+        for (TipoEntradaHistoria tipo : values()) {
+            if (tipo.marca == marca) {
+                return tipo;
+            }
+        }
+        return null;
+    }
+}
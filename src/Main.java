@@ -1,14 +1,26 @@
 import Entidades.*;
 import Servicio.CitaException;
 import Servicio.CitaManager;
+import Servicio.OcupacionSalas;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public class Main {
     public static void main(String[] args) {
@@ -246,7 +258,7 @@ public class Main {
                 fechaBase.withHour(10).withMinute(0),
                 new BigDecimal("150000.00"));
         citaCardiologica.setObservaciones("Paciente con antecedentes de hipertensión");
-        citaCardiologica.setEstado(EstadoCita.COMPLETADA);
+        citaManager.cambiarEstado(citaCardiologica, EstadoCita.COMPLETADA);
 
         // Programar cita pediátrica
         Cita citaPediatrica = citaManager.programarCita(
@@ -256,7 +268,7 @@ public class Main {
                 fechaBase.plusDays(1).withHour(14).withMinute(30),
                 new BigDecimal("80000.00"));
         citaPediatrica.setObservaciones("Control de rutina - vacunas");
-        citaPediatrica.setEstado(EstadoCita.EN_CURSO);
+        citaManager.cambiarEstado(citaPediatrica, EstadoCita.EN_CURSO);
 
         // Programar cita traumatológica
         Cita citaTraumatologica = citaManager.programarCita(
@@ -352,7 +364,7 @@ public class Main {
 
         // Mostrar citas por paciente
         for (Paciente paciente : hospital.getPacientes()) {
-            List<Cita> citasPaciente = citaManager.getCitasPorPaciente(paciente);
+            Collection<Cita> citasPaciente = citaManager.getCitasPorPaciente(paciente);
             if (!citasPaciente.isEmpty()) {
                 System.out.println("Citas de " + paciente.getNombreCompleto() + ":");
                 for (Cita cita : citasPaciente) {
@@ -380,11 +392,10 @@ public class Main {
 
             // Probar carga desde archivo
             CitaManager nuevoCitaManager = new CitaManager();
-            Map<String, Paciente> pacientesMap = crearMapaPacientes(pacientes);
             Map<String, Medico> medicosMap = crearMapaMedicos(medicos);
             Map<String, Sala> salasMap = crearMapaSalas(hospital);
 
-            nuevoCitaManager.cargarCitas(archivo, pacientesMap, medicosMap, salasMap);
+            nuevoCitaManager.cargarCitas(archivo, hospital.getPacientesPorDni(), medicosMap, salasMap);
             System.out.println("✓ Citas cargadas exitosamente desde archivo");
 
             // Verificar que se cargaron correctamente
@@ -401,14 +412,6 @@ public class Main {
         System.out.println();
     }
 
-    private static Map<String, Paciente> crearMapaPacientes(List<Paciente> pacientes) {
-        Map<String, Paciente> mapa = new HashMap<>();
-        for (Paciente p : pacientes) {
-            mapa.put(p.getDni(), p);
-        }
-        return mapa;
-    }
-
     private static Map<String, Medico> crearMapaMedicos(List<Medico> medicos) {
         Map<String, Medico> mapa = new HashMap<>();
         for (Medico m : medicos) {
@@ -446,6 +449,24 @@ public class Main {
         // Prueba 3: Especialidad incompatible
         probarValidacionEspecialidadIncompatible(citaManager, pacientePrueba, medicos, hospital);
 
+        // Prueba 4: Identidad estable en los índices
+        probarIdentidadEstable(citaManager, pacientePrueba, medicoPrueba, salaPrueba);
+
+        // Prueba 5: Historia clínica paginada en disco
+        probarHistoriaEnDisco(pacientePrueba);
+
+        // Prueba 6: Búsqueda en historias clínicas
+        probarBusquedaEnHistorias(hospital, pacientePrueba);
+
+        // Prueba 7: Estadísticas incrementales
+        probarEstadisticas(hospital, citaManager);
+
+        // Prueba 8: Ingresos sobre la réplica columnar
+        probarAnaliticaIngresos(citaManager, medicos);
+
+        // Prueba 9: Ocupación de salas por turnos
+        probarOcupacionSalas(hospital, citaManager, medicos);
+
         System.out.println();
     }
 
@@ -489,6 +510,222 @@ public class Main {
         }
     }
 
+    /**
+     * El hash de médicos y pacientes no debe cambiar al agregar citas ni al
+     * crear la historia clínica, y una copia con el mismo DNI debe encontrar
+     * la misma agenda.
+     */
+    private static void probarIdentidadEstable(CitaManager citaManager, Paciente paciente, Medico medico,
+            Sala sala) {
+        try {
+            int hashPaciente = paciente.hashCode();
+            int hashMedico = medico.hashCode();
+            Cita cita = citaManager.programarCita(paciente, medico, sala,
+                    LocalDateTime.now().plusYears(1), new BigDecimal("100000.00"));
+            paciente.getHistoriaClinica();
+            boolean estable = paciente.hashCode() == hashPaciente && medico.hashCode() == hashMedico
+                    && citaManager.getCitasPorMedico(medico.toBuilder().build()).contains(cita)
+                    && citaManager.getCitasPorPaciente(paciente.toBuilder().build()).contains(cita);
+            citaManager.cancelarCita(cita);
+            if (estable && !medico.getCitas().contains(cita)) {
+                System.out.println("✓ Identidad estable: las agendas se encuentran por DNI antes y después de cada cita");
+            } else {
+                System.out.println("✗ ERROR: Cambió la identidad de un médico o paciente en los índices");
+            }
+        } catch (CitaException e) {
+            System.out.println("✗ ERROR: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Una historia guardada en un almacén en disco debe recuperar las mismas
+     * entradas al volver a abrir el almacén, sin conservarlas en memoria.
+     */
+    private static void probarHistoriaEnDisco(Paciente paciente) {
+        Path directorio = null;
+        try {
+            directorio = Files.createTempDirectory("historias");
+            HistoriaClinica original = paciente.getHistoriaClinica();
+            try (AlmacenHistoriasClinicas almacen = new AlmacenHistoriasClinicas(directorio, 16)) {
+                HistoriaClinica enDisco = copiaEnHospital(paciente, almacen).getHistoriaClinica();
+                original.getDiagnosticos().forEach(enDisco::agregarDiagnostico);
+                original.getTratamientos().forEach(enDisco::agregarTratamiento);
+                original.getAlergias().forEach(enDisco::agregarAlergia);
+            }
+            try (AlmacenHistoriasClinicas almacen = new AlmacenHistoriasClinicas(directorio, 16)) {
+                HistoriaClinica recuperada = copiaEnHospital(paciente, almacen).getHistoriaClinica();
+                if (recuperada.getDiagnosticos().equals(original.getDiagnosticos())
+                        && recuperada.getTratamientos().equals(original.getTratamientos())
+                        && recuperada.getAlergias().equals(original.getAlergias())) {
+                    System.out.println("✓ Historia clínica en disco: " + recuperada.getNumeroHistoria()
+                            + " se recupera igual al reabrir el almacén");
+                } else {
+                    System.out.println("✗ ERROR: La historia clínica recuperada no coincide con la original");
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("✗ ERROR: " + e.getMessage());
+        } finally {
+            eliminarDirectorio(directorio);
+        }
+    }
+
+    /**
+     * Las búsquedas no distinguen mayúsculas ni tildes, y el índice incorpora
+     * las entradas agregadas después de la primera búsqueda.
+     */
+    private static void probarBusquedaEnHistorias(Hospital hospital, Paciente paciente) {
+        List<Paciente> alergicos = hospital.buscarEnHistorias("PENICILINA", TipoEntradaHistoria.ALERGIA);
+        List<Paciente> hipertensos = hospital.buscarEnHistoriasPorPrefijo("hipertensi",
+                TipoEntradaHistoria.DIAGNOSTICO);
+        boolean antes = hospital.buscarEnHistorias("asma", null).contains(paciente);
+        paciente.getHistoriaClinica().agregarDiagnostico("Asma bronquial leve");
+        boolean despues = hospital.buscarEnHistorias("Asma", TipoEntradaHistoria.DIAGNOSTICO).contains(paciente);
+        if (alergicos.equals(List.of(paciente)) && hipertensos.equals(List.of(paciente)) && !antes && despues) {
+            System.out.println("✓ Búsqueda en historias: " + paciente.getNombreCompleto()
+                    + " aparece por \"penicilina\", \"hipertensi\" y por un diagnóstico nuevo");
+        } else {
+            System.out.println("✗ ERROR: La búsqueda en historias clínicas no encontró al paciente esperado");
+        }
+    }
+
+    /**
+     * Las estadísticas deben coincidir con un recuento completo del hospital
+     * y seguir cada alta y baja sin volver a contar.
+     */
+    private static void probarEstadisticas(Hospital hospital, CitaManager citaManager) {
+        EstadisticasHospital estadisticas = hospital.getEstadisticas();
+        Map<TipoSangre, Long> porTipoSangre = new EnumMap<>(TipoSangre.class);
+        Map<EspecialidadMedica, Long> porEspecialidad = new EnumMap<>(EspecialidadMedica.class);
+        for (TipoSangre tipo : TipoSangre.values()) {
+            porTipoSangre.put(tipo, 0L);
+        }
+        for (EspecialidadMedica especialidad : EspecialidadMedica.values()) {
+            porEspecialidad.put(especialidad, 0L);
+        }
+        hospital.getPacientes().forEach(paciente -> porTipoSangre.merge(paciente.getTipoSangre(), 1L, Long::sum));
+        boolean coinciden = estadisticas.getPacientesPorTipoSangre().equals(porTipoSangre)
+                && estadisticas.getCitasPorEstado().equals(citaManager.getConteoPorEstado());
+        for (Departamento dep : hospital.getDepartamentos()) {
+            dep.getMedicos().forEach(medico -> porEspecialidad.merge(medico.getEspecialidad(), 1L, Long::sum));
+            EstadisticasHospital.TotalesDepartamento totales = estadisticas.getTotales(dep.getNombre());
+            coinciden &= totales.getMedicos() == dep.getMedicos().size()
+                    && totales.getSalas() == dep.getSalas().size();
+        }
+        coinciden &= estadisticas.getMedicosPorEspecialidad().equals(porEspecialidad);
+
+        Paciente temporal = Paciente.builder()
+                .nombre("Temporal")
+                .apellido("Prueba")
+                .dni("99999999")
+                .fechaNacimiento(LocalDate.of(2000, 1, 1))
+                .tipoSangre(TipoSangre.B_NEGATIVO)
+                .telefono("-")
+                .direccion("-")
+                .build();
+        long antes = estadisticas.getPacientes(TipoSangre.B_NEGATIVO);
+        hospital.agregarPaciente(temporal);
+        boolean alta = estadisticas.getPacientes(TipoSangre.B_NEGATIVO) == antes + 1;
+        temporal.setHospital(null);
+        boolean baja = estadisticas.getPacientes(TipoSangre.B_NEGATIVO) == antes;
+
+        if (coinciden && alta && baja) {
+            System.out.println("✓ Estadísticas: coinciden con un recuento completo y siguen el alta y la baja de un paciente");
+        } else {
+            System.out.println("✗ ERROR: Las estadísticas no coinciden con el estado del hospital");
+        }
+    }
+
+    /**
+     * Los ingresos de la réplica columnar deben coincidir con sumar los
+     * costos de las citas vigentes de cada médico.
+     */
+    private static void probarAnaliticaIngresos(CitaManager citaManager, List<Medico> medicos) {
+        Set<EstadoCita> todos = EnumSet.allOf(EstadoCita.class);
+        Map<String, BigDecimal> porMedico = citaManager.getAnalitica()
+                .ingresosPorMedico(LocalDateTime.MIN, LocalDateTime.MAX, todos);
+        BigDecimal total = BigDecimal.ZERO;
+        boolean coinciden = true;
+        for (Medico medico : medicos) {
+            BigDecimal esperado = citaManager.getCitasPorMedico(medico).stream()
+                    .map(Cita::getCosto)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            coinciden &= esperado.compareTo(porMedico.getOrDefault(medico.getDni(), BigDecimal.ZERO)) == 0;
+            total = total.add(esperado);
+        }
+        if (coinciden && total.compareTo(citaManager.getAnalitica()
+                .ingresosTotales(LocalDateTime.MIN, LocalDateTime.MAX, todos)) == 0) {
+            System.out.println("✓ Analítica de ingresos: $" + total + " en total, igual a sumar las citas de cada médico");
+        } else {
+            System.out.println("✗ ERROR: Los ingresos de la analítica no coinciden con las citas");
+        }
+    }
+
+    /**
+     * Cada cita ocupa su sala 2 horas: la ocupación de la próxima semana debe
+     * coincidir con contar las citas de cada sala y liberarse al cancelar.
+     */
+    private static void probarOcupacionSalas(Hospital hospital, CitaManager citaManager, List<Medico> medicos) {
+        OcupacionSalas ocupacion = citaManager.getOcupacion();
+        LocalDate desde = LocalDate.now();
+        LocalDate hasta = desde.plusWeeks(1);
+        Duration ocupado = Duration.ZERO;
+        boolean coinciden = true;
+        for (Departamento dep : hospital.getDepartamentos()) {
+            for (Sala sala : dep.getSalas()) {
+                Duration esperado = Duration.ofHours(2L * citaManager.getCitasPorSala(sala,
+                        desde.atStartOfDay(), hasta.atStartOfDay()).size());
+                Duration libre = ocupacion.capacidadLibre(sala, desde, hasta);
+                coinciden &= libre.plus(esperado).equals(Duration.ofDays(7));
+                ocupado = ocupado.plus(esperado);
+            }
+        }
+
+        try {
+            Sala sala = obtenerSalaPorEspecialidad(hospital, EspecialidadMedica.CARDIOLOGIA);
+            double antes = ocupacion.utilizacion(sala, desde, hasta);
+            Cita temporal = citaManager.programarCita(hospital.getPacientes().get(0),
+                    obtenerMedicoPorEspecialidad(medicos, EspecialidadMedica.CARDIOLOGIA), sala,
+                    desde.plusDays(5).atTime(12, 0), new BigDecimal("1000.00"));
+            boolean alta = ocupacion.utilizacionPorDia(sala, desde, hasta).get(desde.plusDays(5)) > 0;
+            citaManager.cancelarCita(temporal);
+            boolean baja = ocupacion.utilizacion(sala, desde, hasta) == antes;
+
+            if (coinciden && alta && baja) {
+                System.out.println("✓ Ocupación de salas: " + ocupado.toHours() + " h en la próxima semana, "
+                        + "hora pico " + ocupacion.horaPico(hospital, null, desde, hasta)
+                        + " h; la cancelación libera los turnos");
+            } else {
+                System.out.println("✗ ERROR: La ocupación de las salas no coincide con sus citas");
+            }
+        } catch (CitaException e) {
+            System.out.println("✗ ERROR: " + e.getMessage());
+        }
+    }
+
+    private static Paciente copiaEnHospital(Paciente paciente, AlmacenHistoriasClinicas almacen) {
+        Hospital hospital = Hospital.builder()
+                .nombre("Hospital de prueba")
+                .direccion("-")
+                .telefono("-")
+                .almacenHistorias(almacen)
+                .build();
+        Paciente copia = paciente.toBuilder().hospital(null).historiaClinica(null).build();
+        hospital.agregarPaciente(copia);
+        return copia;
+    }
+
+    private static void eliminarDirectorio(Path directorio) {
+        if (directorio == null) {
+            return;
+        }
+        try (Stream<Path> archivos = Files.walk(directorio)) {
+            archivos.sorted(Comparator.reverseOrder()).forEach(archivo -> archivo.toFile().delete());
+        } catch (IOException e) {
+            System.err.println("No se pudo eliminar " + directorio + ": " + e.getMessage());
+        }
+    }
+
     private static Sala obtenerSalaPorEspecialidad(Hospital hospital, EspecialidadMedica especialidad) {
         return hospital.getDepartamentos().stream()
                 .filter(dep -> dep.getEspecialidad() == especialidad)
@@ -502,48 +739,45 @@ public class Main {
     private static void mostrarEstadisticasFinales(Hospital hospital) {
         System.out.println("===== ESTADÍSTICAS FINALES =====");
 
-        // Contadores generales
-        int totalDepartamentos = hospital.getDepartamentos().size();
-        int totalPacientes = hospital.getPacientes().size();
-        int totalMedicos = hospital.getDepartamentos().stream()
-                .mapToInt(dep -> dep.getMedicos().size())
-                .sum();
-        int totalSalas = hospital.getDepartamentos().stream()
-                .mapToInt(dep -> dep.getSalas().size())
-                .sum();
-
-        System.out.println("Departamentos: " + totalDepartamentos);
-        System.out.println("Médicos: " + totalMedicos);
-        System.out.println("Salas: " + totalSalas);
-        System.out.println("Pacientes: " + totalPacientes);
+        // Contadores generales, mantenidos por el hospital con cada alta
+        EstadisticasHospital estadisticas = hospital.getEstadisticas();
+
+        System.out.println("Departamentos: " + estadisticas.getDepartamentos());
+        System.out.println("Médicos: " + estadisticas.getMedicos());
+        System.out.println("Salas: " + estadisticas.getSalas());
+        System.out.println("Pacientes: " + estadisticas.getPacientes());
 
         // Distribución por tipo de sangre
-        mostrarDistribucionTipoSangre(hospital);
+        mostrarDistribucionTipoSangre(estadisticas);
 
         // Distribución por especialidad
-        mostrarDistribucionEspecialidades(hospital);
+        mostrarDistribucionEspecialidades(hospital, estadisticas);
+
+        // Distribución por estado de cita
+        mostrarDistribucionEstadosCita(estadisticas);
     }
 
-    private static void mostrarDistribucionTipoSangre(Hospital hospital) {
+    private static void mostrarDistribucionTipoSangre(EstadisticasHospital estadisticas) {
         System.out.println("\nDistribución por tipo de sangre:");
-        Map<TipoSangre, Integer> distribucion = new HashMap<>();
-
-        for (Paciente paciente : hospital.getPacientes()) {
-            TipoSangre tipo = paciente.getTipoSangre();
-            distribucion.put(tipo, distribucion.getOrDefault(tipo, 0) + 1);
-        }
-
-        distribucion.entrySet().stream()
-                .sorted(Map.Entry.<TipoSangre, Integer>comparingByValue().reversed())
+        estadisticas.getPacientesPorTipoSangre().entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<TipoSangre, Long>comparingByValue().reversed())
                 .forEach(entry -> System.out.println("  " + entry.getKey().getDescripcion() + ": " + entry.getValue()));
     }
 
-    private static void mostrarDistribucionEspecialidades(Hospital hospital) {
+    private static void mostrarDistribucionEspecialidades(Hospital hospital, EstadisticasHospital estadisticas) {
         System.out.println("\nDistribución por especialidad:");
         for (Departamento dep : hospital.getDepartamentos()) {
+            EstadisticasHospital.TotalesDepartamento totales = estadisticas.getTotales(dep.getNombre());
             System.out.println("  " + dep.getEspecialidad().getDescripcion() + ": " +
-                    dep.getMedicos().size() + " médicos, " +
-                    dep.getSalas().size() + " salas");
+                    totales.getMedicos() + " médicos, " +
+                    totales.getSalas() + " salas");
         }
     }
+
+    private static void mostrarDistribucionEstadosCita(EstadisticasHospital estadisticas) {
+        System.out.println("\nDistribución por estado de cita:");
+        estadisticas.getCitasPorEstado().forEach((estado, cantidad) ->
+                System.out.println("  " + estado.getDescripcion() + ": " + cantidad));
+    }
 }
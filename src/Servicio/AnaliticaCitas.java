@@ -0,0 +1,658 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.Departamento;
+import Entidades.EstadoCita;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * [HU-10] Réplica columnar de las citas para reportes de facturación:
+ * ingresos por médico, sala, paciente, departamento y día, y percentiles de
+ * costo.
+ *
+ * Cada cita es una fila repartida en columnas primitivas: costo en
+ * centavos, {@code fechaHora} en minutos desde la época, identificadores
+ * enteros de médico, sala y paciente, y el estado. Las consultas recorren
+ * solo esas columnas, en tramos paralelos y con un ciclo interno sin saltos,
+ * así que no tocan las entidades y su costo es lineal en la cantidad de
+ * filas. Las fechas se comparan con resolución de minutos y los costos con
+ * más de dos decimales se redondean al centavo. La columna de minutos admite
+ * cualquier {@code fechaHora}.
+ *
+ * Límite de costos: una cita cuyo costo supera {@link #COSTO_MAXIMO} en
+ * valor absoluto ({@code 2^36} centavos, unos 687 millones de pesos) se
+ * rechaza con {@link ReglaNegocio#RN_07_2} en lugar de registrarse, así que
+ * las sumas de hasta {@code 2^27} filas son exactas en un {@code long}.
+ *
+ * Las columnas se guardan en bloques de 2^16 filas. Solo el primero crece
+ * copiándose, hasta completar su tamaño; los siguientes se agregan enteros,
+ * así que un alta nunca copia las filas anteriores.
+ *
+ * Un {@link CitaManager} mantiene su réplica con cada alta, cambio de
+ * estado y baja ({@link CitaManager#getAnalitica()}); {@link #de} arma una
+ * independiente, por ejemplo a partir de una exportación. Las filas de
+ * citas canceladas o eliminadas quedan marcadas y no se reutilizan.
+ *
+ * Concurrencia: las escrituras se serializan con un cerrojo que las
+ * consultas solo toman para leer dónde terminan las columnas; como ninguna
+ * escritura copia las filas anteriores, cada una lo retiene un tiempo
+ * constante. Los bloques que lee una consulta se publicaron bajo ese
+ * cerrojo y no se reemplazan mientras los lee: el primero crece en
+ * directorios nuevos. Una consulta ve las citas registradas antes de
+ * comenzar; un cambio de estado simultáneo puede verse o no.
+ */
+public final class AnaliticaCitas {
+    private static final EstadoCita[] ESTADOS = EstadoCita.values();
+    /** Estado de las filas de citas retiradas: ninguna máscara de estados lo incluye. */
+    private static final byte RETIRADA = (byte) ESTADOS.length;
+    private static final int MINUTOS_POR_DIA = 24 * 60;
+    private static final int CAPACIDAD_INICIAL = 1024;
+    /** Un bloque de columnas es también el menor tramo que conviene repartir. */
+    private static final int BITS_BLOQUE = 16;
+    private static final int FILAS_POR_BLOQUE = 1 << BITS_BLOQUE;
+    /** [HU-10] Mayor costo, en valor absoluto, que puede tener una cita registrada en la analítica. */
+    public static final BigDecimal COSTO_MAXIMO = BigDecimal.valueOf(1L << 36, 2);
+    /** Cubetas de cada pasada de {@link #percentilCosto}; el histograma entra en la caché L2. */
+    private static final int BITS_CUBETA = 16;
+
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private Diccionario medicos;
+    private Diccionario salas;
+    private Diccionario pacientes;
+    private Diccionario departamentos;
+    /** Departamento de cada sala por identificador; -1 si la sala no tiene departamento. */
+    private int[] departamentoPorSala;
+    /** Columnas por bloque de {@link #FILAS_POR_BLOQUE} filas. */
+    private long[][] costos;
+    private long[][] minutos;
+    private int[][] idsMedico;
+    private int[][] idsSala;
+    private int[][] idsPaciente;
+    private byte[][] estados;
+    private int filas;
+    private long primerMinuto;
+    private long ultimoMinuto;
+    /** Extremos de todos los costos registrados: acotan la primera pasada de {@link #percentilCosto}. */
+    private long menorCosto;
+    private long mayorCosto;
+
+    AnaliticaCitas() {
+        this(CAPACIDAD_INICIAL);
+    }
+
+    private AnaliticaCitas(int capacidad) {
+        reiniciar(capacidad);
+    }
+
+    /**
+     * Réplica independiente de las citas dadas, con sus estados actuales.
+     * No sigue cambios posteriores de las citas.
+     *
+     * @throws CitaException Si alguna cita tiene un costo mayor a {@link #COSTO_MAXIMO} (RN-07.2)
+     */
+    public static AnaliticaCitas de(Collection<Cita> citas) throws CitaException {
+        AnaliticaCitas analitica = new AnaliticaCitas(Math.max(CAPACIDAD_INICIAL, citas.size()));
+        for (Cita cita : citas) {
+            analitica.agregar(cita);
+        }
+        return analitica;
+    }
+
+    /**
+     * Convierte la cita a los valores de sus columnas. El gestor la invoca
+     * antes de registrar la cita en su diario y sus índices, así que una
+     * conversión fallida no deja la cita registrada a medias.
+     *
+     * @throws CitaException Si el costo supera {@link #COSTO_MAXIMO} (RN-07.2)
+     */
+    static Fila fila(Cita cita) throws CitaException {
+        return new Fila(cita);
+    }
+
+    /** @return La fila de la cita, para {@link #cambiarEstado} y {@link #retirar} */
+    int agregar(Cita cita) throws CitaException {
+        return agregar(fila(cita));
+    }
+
+    int agregar(Fila valores) {
+        int fila;
+        cerrojo.lock();
+        try {
+            fila = filas;
+            int bloque = fila >>> BITS_BLOQUE;
+            int i = fila & (FILAS_POR_BLOQUE - 1);
+            hacerLugar(bloque, i);
+            int sala = salas.id(valores.sala);
+            if (sala == departamentoPorSala.length) {
+                departamentoPorSala = Arrays.copyOf(departamentoPorSala, sala * 2);
+            }
+            departamentoPorSala[sala] = valores.departamento != null ? departamentos.id(valores.departamento) : -1;
+            costos[bloque][i] = valores.centavos;
+            minutos[bloque][i] = valores.minuto;
+            idsMedico[bloque][i] = medicos.id(valores.medico);
+            idsSala[bloque][i] = sala;
+            idsPaciente[bloque][i] = pacientes.id(valores.paciente);
+            estados[bloque][i] = valores.estado;
+            primerMinuto = Math.min(primerMinuto, valores.minuto);
+            ultimoMinuto = Math.max(ultimoMinuto, valores.minuto);
+            menorCosto = Math.min(menorCosto, valores.centavos);
+            mayorCosto = Math.max(mayorCosto, valores.centavos);
+            filas = fila + 1;
+        } finally {
+            cerrojo.unlock();
+        }
+        return fila;
+    }
+
+    void cambiarEstado(int fila, EstadoCita estado) {
+        escribirEstado(fila, (byte) estado.ordinal());
+    }
+
+    /** La cita fue cancelada o eliminada: su fila deja de contarse. */
+    void retirar(int fila) {
+        escribirEstado(fila, RETIRADA);
+    }
+
+    /** Descarta todas las filas; las consultas en curso terminan sobre las anteriores. */
+    void vaciar() {
+        cerrojo.lock();
+        try {
+            reiniciar(CAPACIDAD_INICIAL);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * [HU-10] Suma de los costos de las citas con {@code desde <= fechaHora < hasta}
+     * en alguno de los estados dados.
+     */
+    public BigDecimal ingresosTotales(LocalDateTime desde, LocalDateTime hasta, Set<EstadoCita> estados) {
+        Vista vista = vista(null);
+        Filtro filtro = vista.filtro(desde, hasta, estados);
+        long[][] parciales = new long[vista.tramos()][];
+        IntStream.range(0, parciales.length).parallel().forEach(t -> {
+            long suma = 0;
+            for (int b = vista.primerBloque(t), ultimo = vista.primerBloque(t + 1); b < ultimo; b++) {
+                long[] costosBloque = vista.costos[b];
+                long[] minutosBloque = vista.minutos[b];
+                byte[] estadosBloque = vista.estados[b];
+                for (int i = 0, fin = vista.filasDelBloque(b); i < fin; i++) {
+                    suma += costosBloque[i] & -filtro.incluye(minutosBloque[i], estadosBloque[i]);
+                }
+            }
+            parciales[t] = new long[] { suma };
+        });
+        long total = 0;
+        for (long[] parcial : parciales) {
+            total += parcial[0];
+        }
+        return BigDecimal.valueOf(total, 2);
+    }
+
+    /** [HU-10] Ingresos de cada médico por DNI, en orden de su primera cita. */
+    public Map<String, BigDecimal> ingresosPorMedico(LocalDateTime desde, LocalDateTime hasta,
+            Set<EstadoCita> estados) {
+        Vista vista = vista(analitica -> analitica.medicos);
+        return porClave(vista, sumarPorGrupo(vista, vista.filtro(desde, hasta, estados), vista.idsMedico));
+    }
+
+    /** [HU-10] Ingresos de cada sala por número, en orden de su primera cita. */
+    public Map<String, BigDecimal> ingresosPorSala(LocalDateTime desde, LocalDateTime hasta,
+            Set<EstadoCita> estados) {
+        Vista vista = vista(analitica -> analitica.salas);
+        return porClave(vista, sumarPorGrupo(vista, vista.filtro(desde, hasta, estados), vista.idsSala));
+    }
+
+    /** [HU-10] Ingresos de cada paciente por DNI, en orden de su primera cita. */
+    public Map<String, BigDecimal> ingresosPorPaciente(LocalDateTime desde, LocalDateTime hasta,
+            Set<EstadoCita> estados) {
+        Vista vista = vista(analitica -> analitica.pacientes);
+        return porClave(vista, sumarPorGrupo(vista, vista.filtro(desde, hasta, estados), vista.idsPaciente));
+    }
+
+    /**
+     * [HU-10] Ingresos de cada departamento por nombre. Se agrupa por sala y
+     * luego se suman las salas de cada departamento.
+     */
+    public Map<String, BigDecimal> ingresosPorDepartamento(LocalDateTime desde, LocalDateTime hasta,
+            Set<EstadoCita> estados) {
+        Vista vista = vista(analitica -> analitica.salas);
+        long[][] porSala = sumarPorGrupo(vista, vista.filtro(desde, hasta, estados), vista.idsSala);
+        long[] sumas = new long[vista.nombresDepartamento.length];
+        long[] cantidades = new long[sumas.length];
+        for (int sala = 0; sala < porSala[0].length; sala++) {
+            int departamento = vista.departamentoPorSala[sala];
+            if (departamento >= 0) {
+                sumas[departamento] += porSala[0][sala];
+                cantidades[departamento] += porSala[1][sala];
+            }
+        }
+        Map<String, BigDecimal> resultado = new LinkedHashMap<>();
+        for (int departamento = 0; departamento < sumas.length; departamento++) {
+            if (cantidades[departamento] > 0) {
+                resultado.put(vista.nombresDepartamento[departamento], BigDecimal.valueOf(sumas[departamento], 2));
+            }
+        }
+        return resultado;
+    }
+
+    /** [HU-10] Ingresos de cada día con al menos una cita, en orden cronológico. */
+    public NavigableMap<LocalDate, BigDecimal> ingresosPorDia(LocalDateTime desde, LocalDateTime hasta,
+            Set<EstadoCita> estados) {
+        Vista vista = vista(null);
+        Filtro filtro = vista.filtro(desde, hasta, estados);
+        NavigableMap<LocalDate, BigDecimal> resultado = new TreeMap<>();
+        if (filtro.vacio()) {
+            return resultado;
+        }
+        long primerDia = Math.floorDiv(filtro.desde, MINUTOS_POR_DIA);
+        long base = primerDia * MINUTOS_POR_DIA;
+        int dias = Math.toIntExact(Math.floorDiv(filtro.hasta - 1, MINUTOS_POR_DIA) - primerDia + 1);
+        long[][][] parciales = new long[vista.tramos()][][];
+        IntStream.range(0, parciales.length).parallel().forEach(t -> {
+            long[] sumas = new long[dias];
+            long[] cantidades = new long[dias];
+            for (int b = vista.primerBloque(t), ultimo = vista.primerBloque(t + 1); b < ultimo; b++) {
+                long[] costosBloque = vista.costos[b];
+                long[] minutosBloque = vista.minutos[b];
+                byte[] estadosBloque = vista.estados[b];
+                for (int i = 0, fin = vista.filasDelBloque(b); i < fin; i++) {
+                    int incluida = filtro.incluye(minutosBloque[i], estadosBloque[i]);
+                    // Las filas excluidas pueden caer fuera del rango de días: van a la cubeta 0 sin sumar
+                    int dia = (int) ((minutosBloque[i] - base) / MINUTOS_POR_DIA) & -incluida;
+                    sumas[dia] += costosBloque[i] & -incluida;
+                    cantidades[dia] += incluida;
+                }
+            }
+            parciales[t] = new long[][] { sumas, cantidades };
+        });
+        long[][] total = combinar(parciales, dias);
+        for (int dia = 0; dia < dias; dia++) {
+            if (total[1][dia] > 0) {
+                resultado.put(LocalDate.ofEpochDay(primerDia + dia), BigDecimal.valueOf(total[0][dia], 2));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * [HU-10] Percentil de costo por rango más cercano: el menor costo que
+     * alcanza o supera al {@code percentil} por ciento de las citas del
+     * filtro. 50 es la mediana.
+     *
+     * Se resuelve con una selección por base sobre histogramas de 2^16
+     * cubetas, sin ordenar ni copiar los costos: cada pasada divide el rango
+     * de búsqueda por 65536, así que para costos de hasta 42 millones de
+     * pesos ({@code 2^32} centavos) alcanzan dos pasadas.
+     *
+     * @return El costo, o {@code null} si ninguna cita cumple el filtro
+     * @throws IllegalArgumentException Si el percentil no está entre 0 y 100
+     */
+    public BigDecimal percentilCosto(double percentil, LocalDateTime desde, LocalDateTime hasta,
+            Set<EstadoCita> estados) {
+        if (!(percentil >= 0 && percentil <= 100)) {
+            throw new IllegalArgumentException("El percentil debe estar entre 0 y 100: " + percentil);
+        }
+        Vista vista = vista(null);
+        Filtro filtro = vista.filtro(desde, hasta, estados);
+        if (filtro.vacio()) {
+            return null;
+        }
+        // La primera pasada parte de los extremos de todas las filas y de paso cuenta las del filtro
+        long minimo = vista.menorCosto;
+        long maximo = vista.mayorCosto;
+        long rango = -1;
+        while (true) {
+            int desplazamiento = Math.max(0, 64 - Long.numberOfLeadingZeros(maximo - minimo) - BITS_CUBETA);
+            long[] histograma = histograma(vista, filtro, minimo, maximo, desplazamiento);
+            if (rango < 0) {
+                long cantidad = 0;
+                for (long citas : histograma) {
+                    cantidad += citas;
+                }
+                if (cantidad == 0) {
+                    return null;
+                }
+                // Rango más cercano, entre 1 y la cantidad de citas
+                rango = Math.max(1, Math.min(cantidad, (long) Math.ceil(percentil / 100 * cantidad)));
+            }
+            int cubeta = 0;
+            while (rango > histograma[cubeta]) {
+                rango -= histograma[cubeta++];
+            }
+            minimo += (long) cubeta << desplazamiento;
+            if (desplazamiento == 0) {
+                break;
+            }
+            maximo = Math.min(maximo, minimo + (1L << desplazamiento) - 1);
+        }
+        return BigDecimal.valueOf(minimo, 2);
+    }
+
+    /** Citas del filtro con costo en [minimo, maximo] por cubeta de {@code 2^desplazamiento} centavos. */
+    private static long[] histograma(Vista vista, Filtro filtro, long minimo, long maximo, int desplazamiento) {
+        int[][] parciales = new int[vista.tramos()][];
+        IntStream.range(0, parciales.length).parallel().forEach(t -> {
+            int[] cubetas = new int[1 << BITS_CUBETA];
+            for (int b = vista.primerBloque(t), ultimo = vista.primerBloque(t + 1); b < ultimo; b++) {
+                long[] costosBloque = vista.costos[b];
+                long[] minutosBloque = vista.minutos[b];
+                byte[] estadosBloque = vista.estados[b];
+                for (int i = 0, fin = vista.filasDelBloque(b); i < fin; i++) {
+                    long costo = costosBloque[i];
+                    int dentro = filtro.incluye(minutosBloque[i], estadosBloque[i])
+                            & (int) ((costo - minimo) >>> 63 ^ 1) & (int) ((maximo - costo) >>> 63 ^ 1);
+                    cubetas[(int) ((costo - minimo) >>> desplazamiento) & -dentro] += dentro;
+                }
+            }
+            parciales[t] = cubetas;
+        });
+        long[] total = new long[1 << BITS_CUBETA];
+        for (int[] parcial : parciales) {
+            for (int c = 0; c < total.length; c++) {
+                total[c] += parcial[c];
+            }
+        }
+        return total;
+    }
+
+    /** Suma y cantidad por identificador de la columna {@code grupos}. */
+    private static long[][] sumarPorGrupo(Vista vista, Filtro filtro, int[][] grupos) {
+        int cantidadGrupos = vista.claves.length;
+        long[][][] parciales = new long[vista.tramos()][][];
+        IntStream.range(0, parciales.length).parallel().forEach(t -> {
+            long[] sumas = new long[cantidadGrupos];
+            long[] cantidades = new long[cantidadGrupos];
+            for (int b = vista.primerBloque(t), ultimo = vista.primerBloque(t + 1); b < ultimo; b++) {
+                long[] costosBloque = vista.costos[b];
+                long[] minutosBloque = vista.minutos[b];
+                byte[] estadosBloque = vista.estados[b];
+                int[] gruposBloque = grupos[b];
+                for (int i = 0, fin = vista.filasDelBloque(b); i < fin; i++) {
+                    int incluida = filtro.incluye(minutosBloque[i], estadosBloque[i]);
+                    int grupo = gruposBloque[i];
+                    sumas[grupo] += costosBloque[i] & -incluida;
+                    cantidades[grupo] += incluida;
+                }
+            }
+            parciales[t] = new long[][] { sumas, cantidades };
+        });
+        return combinar(parciales, cantidadGrupos);
+    }
+
+    private static long[][] combinar(long[][][] parciales, int grupos) {
+        long[] sumas = new long[grupos];
+        long[] cantidades = new long[grupos];
+        for (long[][] parcial : parciales) {
+            for (int g = 0; g < grupos; g++) {
+                sumas[g] += parcial[0][g];
+                cantidades[g] += parcial[1][g];
+            }
+        }
+        return new long[][] { sumas, cantidades };
+    }
+
+    private static Map<String, BigDecimal> porClave(Vista vista, long[][] porGrupo) {
+        Map<String, BigDecimal> resultado = new LinkedHashMap<>();
+        for (int grupo = 0; grupo < porGrupo[0].length; grupo++) {
+            if (porGrupo[1][grupo] > 0) {
+                resultado.put(vista.claves[grupo], BigDecimal.valueOf(porGrupo[0][grupo], 2));
+            }
+        }
+        return resultado;
+    }
+
+    private void escribirEstado(int fila, byte estado) {
+        cerrojo.lock();
+        try {
+            if (fila >= 0 && fila < filas) {
+                estados[fila >>> BITS_BLOQUE][fila & (FILAS_POR_BLOQUE - 1)] = estado;
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Asegura el lugar de la posición {@code i} del bloque. Un bloque que
+     * una vista puede leer nunca se reemplaza en los directorios que ella
+     * tomó: si el primero crece, se copia en directorios nuevos y la vista
+     * sigue leyendo el que publicó.
+     */
+    private void hacerLugar(int bloque, int i) {
+        if (bloque == costos.length) {
+            copiarDirectorios(bloque * 2);
+        }
+        if (costos[bloque] == null) {
+            asignarBloque(bloque, FILAS_POR_BLOQUE);
+        } else if (i == costos[bloque].length) {
+            // Solo el primer bloque queda incompleto; su copia nunca supera FILAS_POR_BLOQUE
+            copiarDirectorios(costos.length);
+            int capacidad = Math.min(i * 2, FILAS_POR_BLOQUE);
+            costos[bloque] = Arrays.copyOf(costos[bloque], capacidad);
+            minutos[bloque] = Arrays.copyOf(minutos[bloque], capacidad);
+            idsMedico[bloque] = Arrays.copyOf(idsMedico[bloque], capacidad);
+            idsSala[bloque] = Arrays.copyOf(idsSala[bloque], capacidad);
+            idsPaciente[bloque] = Arrays.copyOf(idsPaciente[bloque], capacidad);
+            estados[bloque] = Arrays.copyOf(estados[bloque], capacidad);
+        }
+    }
+
+    private void copiarDirectorios(int cantidad) {
+        costos = Arrays.copyOf(costos, cantidad);
+        minutos = Arrays.copyOf(minutos, cantidad);
+        idsMedico = Arrays.copyOf(idsMedico, cantidad);
+        idsSala = Arrays.copyOf(idsSala, cantidad);
+        idsPaciente = Arrays.copyOf(idsPaciente, cantidad);
+        estados = Arrays.copyOf(estados, cantidad);
+    }
+
+    private void asignarBloque(int bloque, int capacidad) {
+        costos[bloque] = new long[capacidad];
+        minutos[bloque] = new long[capacidad];
+        idsMedico[bloque] = new int[capacidad];
+        idsSala[bloque] = new int[capacidad];
+        idsPaciente[bloque] = new int[capacidad];
+        estados[bloque] = new byte[capacidad];
+    }
+
+    /** Columnas y diccionarios nuevos: las vistas anteriores conservan los suyos. */
+    private void reiniciar(int capacidad) {
+        medicos = new Diccionario();
+        salas = new Diccionario();
+        pacientes = new Diccionario();
+        departamentos = new Diccionario();
+        departamentoPorSala = new int[16];
+        int bloques = Math.max(1, (capacidad + FILAS_POR_BLOQUE - 1) >>> BITS_BLOQUE);
+        costos = new long[bloques][];
+        minutos = new long[bloques][];
+        idsMedico = new int[bloques][];
+        idsSala = new int[bloques][];
+        idsPaciente = new int[bloques][];
+        estados = new byte[bloques][];
+        asignarBloque(0, Math.min(capacidad, FILAS_POR_BLOQUE));
+        filas = 0;
+        primerMinuto = Long.MAX_VALUE;
+        ultimoMinuto = Long.MIN_VALUE;
+        menorCosto = Long.MAX_VALUE;
+        mayorCosto = Long.MIN_VALUE;
+    }
+
+    /** @param dimension Diccionario cuyas claves necesita la consulta, o {@code null} */
+    private Vista vista(Function<AnaliticaCitas, Diccionario> dimension) {
+        cerrojo.lock();
+        try {
+            return new Vista(this, dimension != null ? dimension.apply(this) : null);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Costo en centavos; se verifica antes de escalarlo, así que la conversión no desborda. */
+    private static long centavos(BigDecimal costo) throws CitaException {
+        if (costo.abs().compareTo(COSTO_MAXIMO) > 0) {
+            throw new CitaException(ReglaNegocio.RN_07_2, "El costo no puede superar " + COSTO_MAXIMO + ".");
+        }
+        return costo.setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValue();
+    }
+
+    private static long minuto(LocalDateTime fechaHora) {
+        return Math.floorDiv(fechaHora.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    /** Valores de una cita listos para sus columnas; los identificadores se asignan al agregarla. */
+    static final class Fila {
+        final long centavos;
+        final long minuto;
+        final String medico;
+        final String sala;
+        final String paciente;
+        final String departamento;
+        final byte estado;
+
+        private Fila(Cita cita) throws CitaException {
+            centavos = centavos(cita.getCosto());
+            minuto = minuto(cita.getFechaHora());
+            medico = cita.getMedico().getDni();
+            sala = cita.getSala().getNumero();
+            paciente = cita.getPaciente().getDni();
+            Departamento departamentoSala = cita.getSala().getDepartamento();
+            departamento = departamentoSala != null ? departamentoSala.getNombre() : null;
+            estado = (byte) cita.getEstado().ordinal();
+        }
+    }
+
+    /** Columnas publicadas al comenzar una consulta; se leen sin cerrojo. */
+    private static final class Vista {
+        final int filas;
+        final long[][] costos;
+        final long[][] minutos;
+        final int[][] idsMedico;
+        final int[][] idsSala;
+        final int[][] idsPaciente;
+        final byte[][] estados;
+        final long primerMinuto;
+        final long ultimoMinuto;
+        final long menorCosto;
+        final long mayorCosto;
+        /** Claves de la dimensión de la consulta, por identificador. */
+        final String[] claves;
+        final int[] departamentoPorSala;
+        final String[] nombresDepartamento;
+        private final int bloques;
+        private final int tramos;
+
+        Vista(AnaliticaCitas analitica, Diccionario dimension) {
+            filas = analitica.filas;
+            costos = analitica.costos;
+            minutos = analitica.minutos;
+            idsMedico = analitica.idsMedico;
+            idsSala = analitica.idsSala;
+            idsPaciente = analitica.idsPaciente;
+            estados = analitica.estados;
+            primerMinuto = analitica.primerMinuto;
+            ultimoMinuto = analitica.ultimoMinuto;
+            menorCosto = analitica.menorCosto;
+            mayorCosto = analitica.mayorCosto;
+            claves = dimension != null ? dimension.claves.toArray(new String[0]) : new String[0];
+            departamentoPorSala = dimension == analitica.salas
+                    ? Arrays.copyOf(analitica.departamentoPorSala, claves.length) : new int[0];
+            nombresDepartamento = dimension == analitica.salas
+                    ? analitica.departamentos.claves.toArray(new String[0]) : new String[0];
+            bloques = (filas + FILAS_POR_BLOQUE - 1) >>> BITS_BLOQUE;
+            tramos = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, bloques));
+        }
+
+        int tramos() {
+            return tramos;
+        }
+
+        /** Primer bloque del tramo {@code t}; {@code primerBloque(tramos())} es el total de bloques. */
+        int primerBloque(int t) {
+            return (int) ((long) bloques * t / tramos);
+        }
+
+        /** Filas de la vista en el bloque: todas salvo en el último. */
+        int filasDelBloque(int bloque) {
+            return Math.min(FILAS_POR_BLOQUE, filas - (bloque << BITS_BLOQUE));
+        }
+
+        /**
+         * Los límites se recortan a las fechas registradas, así que las
+         * restas del filtro no desbordan.
+         */
+        Filtro filtro(LocalDateTime desde, LocalDateTime hasta, Set<EstadoCita> estados) {
+            int mascara = 0;
+            for (EstadoCita estado : estados) {
+                mascara |= 1 << estado.ordinal();
+            }
+            if (filas == 0) {
+                return new Filtro(0, 0, mascara);
+            }
+            long desdeMinuto = Math.max(primerMinuto,
+                    Math.floorDiv(desde.toEpochSecond(ZoneOffset.UTC), 60));
+            long hastaMinuto = Math.min(ultimoMinuto + 1L,
+                    Math.floorDiv(hasta.toEpochSecond(ZoneOffset.UTC), 60));
+            return hastaMinuto > desdeMinuto ? new Filtro(desdeMinuto, hastaMinuto, mascara)
+                    : new Filtro(0, 0, mascara);
+        }
+    }
+
+    /** Rango de minutos {@code [desde, hasta)} y estados incluidos, como bits por ordinal. */
+    private static final class Filtro {
+        final long desde;
+        final long hasta;
+        final int mascara;
+
+        Filtro(long desde, long hasta, int mascara) {
+            this.desde = desde;
+            this.hasta = hasta;
+            this.mascara = mascara;
+        }
+
+        boolean vacio() {
+            return hasta <= desde;
+        }
+
+        /** 1 si la fila cumple el filtro, 0 si no; sin saltos, para que el ciclo se mantenga lineal. */
+        int incluye(long minuto, byte estado) {
+            return (mascara >>> estado) & 1 & (int) ((minuto - desde) >>> 63 ^ 1) & (int) ((minuto - hasta) >>> 63);
+        }
+    }
+
+    /** Identificadores enteros consecutivos por clave, en orden de aparición. */
+    private static final class Diccionario {
+        final Map<String, Integer> ids = new HashMap<>();
+        final List<String> claves = new ArrayList<>();
+
+        int id(String clave) {
+            Integer id = ids.get(clave);
+            if (id == null) {
+                id = claves.size();
+                ids.put(clave, id);
+                claves.add(clave);
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.Departamento;
+import Entidades.EspecialidadMedica;
+import Entidades.Hospital;
+import Entidades.Medico;
+import Entidades.Sala;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * [HU-07] Programación de Citas
+ * [HU-08] Validación de Disponibilidad
+ * [HU-09] Validación de Especialidades
+ *
+ * Asigna en bloque solicitudes sin médico ni sala (por ejemplo, una campaña
+ * de vacunación) a los médicos y salas de los departamentos de su
+ * especialidad, sobre las agendas de un {@link CitaManager}.
+ *
+ * Por RN-09.1 cada especialidad usa médicos y salas propios, así que las
+ * especialidades se planifican en paralelo con fork/join. Dentro de una
+ * especialidad el tiempo avanza de evento en evento: en cada instante en que
+ * hay un médico y una sala libres se ubica la solicitud liberada cuya ventana
+ * vence primero (EDF), que es la estrategia que más solicitudes acomoda
+ * cuando todas duran lo mismo. Médicos y salas esperan en colas por su
+ * próximo horario libre, calculado saltando huecos entre citas existentes
+ * (RN-08.1/RN-08.2), así que el costo es O(n log n) y no depende de la
+ * granularidad del horario.
+ *
+ * Cada plan se registra con {@link CitaManager#programarCitas}, que vuelve a
+ * validar todo bajo los cerrojos. Si el lote se rechaza, por ejemplo porque
+ * una programación concurrente ocupó un horario entre la planificación y el
+ * registro, solo se rechazan las solicitudes que nombra
+ * {@link CitaLoteException#getErrores()}; el resto de la especialidad se
+ * replanifica sobre las agendas actualizadas.
+ *
+ * @see SolicitudAsignacion
+ * @see ResultadoAsignacion
+ */
+public class AsignadorCitas {
+    private static final int INTENTOS = 3;
+
+    private final CitaManager citaManager;
+
+    public AsignadorCitas(CitaManager citaManager) {
+        this.citaManager = citaManager;
+    }
+
+    /**
+     * [HU-07] Ubica las solicitudes en los médicos y salas del hospital.
+     * Cada solicitud recibe un horario dentro de su ventana o un motivo de
+     * rechazo; las citas se registran en un lote por especialidad.
+     *
+     * @return Citas y rechazos indexados por la posición de cada solicitud
+     */
+    public ResultadoAsignacion asignar(Hospital hospital, List<SolicitudAsignacion> solicitudes) {
+        Map<EspecialidadMedica, List<Integer>> porEspecialidad = new EnumMap<>(EspecialidadMedica.class);
+        for (int i = 0; i < solicitudes.size(); i++) {
+            porEspecialidad.computeIfAbsent(solicitudes.get(i).getEspecialidad(), e -> new ArrayList<>()).add(i);
+        }
+        Map<EspecialidadMedica, List<Departamento>> departamentos = new EnumMap<>(EspecialidadMedica.class);
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            departamentos.computeIfAbsent(departamento.getEspecialidad(), e -> new ArrayList<>()).add(departamento);
+        }
+
+        List<AsignacionEspecialidad> tareas = new ArrayList<>(porEspecialidad.size());
+        porEspecialidad.forEach((especialidad, indices) -> tareas.add(new AsignacionEspecialidad(
+                especialidad, departamentos.getOrDefault(especialidad, List.of()), solicitudes, indices)));
+        ForkJoinTask.invokeAll(tareas);
+
+        Map<Integer, Cita> asignadas = new TreeMap<>();
+        Map<Integer, String> rechazadas = new TreeMap<>();
+        for (AsignacionEspecialidad tarea : tareas) {
+            asignadas.putAll(tarea.asignadas);
+            rechazadas.putAll(tarea.rechazadas);
+        }
+        return new ResultadoAsignacion(Collections.unmodifiableMap(asignadas),
+                Collections.unmodifiableMap(rechazadas));
+    }
+
+    /** Planifica y registra las solicitudes de una especialidad. */
+    @SuppressWarnings("serial")
+    private final class AsignacionEspecialidad extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final EspecialidadMedica especialidad;
+        private final List<Departamento> departamentos;
+        private final List<SolicitudAsignacion> solicitudes;
+        private final List<Integer> indices;
+        private final Map<Integer, Cita> asignadas = new TreeMap<>();
+        private final Map<Integer, String> rechazadas = new TreeMap<>();
+        /** Rechazadas por el registro de un plan anterior; no se vuelven a planificar. */
+        private final Map<Integer, String> excluidas = new TreeMap<>();
+
+        AsignacionEspecialidad(EspecialidadMedica especialidad, List<Departamento> departamentos,
+                List<SolicitudAsignacion> solicitudes, List<Integer> indices) {
+            this.especialidad = especialidad;
+            this.departamentos = departamentos;
+            this.solicitudes = solicitudes;
+            this.indices = indices;
+        }
+
+        @Override
+        protected Void compute() {
+            Map<String, Medico> medicos = new LinkedHashMap<>();
+            Map<String, Sala> salas = new LinkedHashMap<>();
+            CitaManager.reunirRecursos(especialidad, departamentos, medicos, salas);
+
+            // Cada lote rechazado excluye al menos una solicitud, así que solo
+            // los demás errores (p. ej. del diario) consumen intentos
+            int fallos = 0;
+            while (true) {
+                asignadas.clear();
+                rechazadas.clear();
+                rechazadas.putAll(excluidas);
+                List<Integer> planificadas = new ArrayList<>();
+                List<SolicitudCita> plan = planificar(new ArrayList<>(medicos.values()),
+                        new ArrayList<>(salas.values()), planificadas);
+                if (plan.isEmpty()) {
+                    return null;
+                }
+                try {
+                    List<Cita> citas = citaManager.programarCitas(plan);
+                    for (int i = 0; i < citas.size(); i++) {
+                        asignadas.put(planificadas.get(i), citas.get(i));
+                    }
+                    return null;
+                } catch (CitaLoteException e) {
+                    e.getErrores().forEach((posicion, motivo) -> excluidas.put(planificadas.get(posicion), motivo));
+                } catch (CitaException e) {
+                    if (++fallos == INTENTOS) {
+                        for (int indice : planificadas) {
+                            rechazadas.put(indice, e.getMessage());
+                        }
+                        return null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Recorre el tiempo en orden creciente. Las solicitudes entran a la cola
+         * de pendientes al abrirse su ventana y se descartan al vencer.
+         *
+         * @param planificadas Recibe el índice de la solicitud de cada cita del plan
+         */
+        private List<SolicitudCita> planificar(List<Medico> medicos, List<Sala> salas, List<Integer> planificadas) {
+            // RN-07.1: con margen para que el plan siga siendo futuro al registrarse
+            LocalDateTime minimo = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+            List<Integer> ordenadas = new ArrayList<>(indices.size());
+            for (int indice : indices) {
+                if (excluidas.containsKey(indice)) {
+                    continue;
+                }
+                SolicitudAsignacion solicitud = solicitudes.get(indice);
+                if (solicitud.getCosto().compareTo(BigDecimal.ZERO) <= 0) {
+                    rechazadas.put(indice, "El costo debe ser mayor que cero.");
+                } else if (solicitud.getHasta().isBefore(solicitud.getDesde())) {
+                    rechazadas.put(indice, "La ventana termina antes de comenzar.");
+                } else if (solicitud.getHasta().isBefore(minimo)) {
+                    rechazadas.put(indice, "No se puede programar una cita en el pasado.");
+                } else if (medicos.isEmpty() || salas.isEmpty()) {
+                    rechazadas.put(indice, "No hay médicos y salas de " + especialidad.getDescripcion() + ".");
+                } else {
+                    ordenadas.add(indice);
+                }
+            }
+            ordenadas.sort(Comparator.comparing((Integer i) -> solicitudes.get(i).getDesde()));
+
+            PriorityQueue<Integer> pendientes = new PriorityQueue<>(Comparator
+                    .comparing((Integer i) -> solicitudes.get(i).getHasta())
+                    .thenComparingInt(i -> i));
+            PriorityQueue<Recurso<Medico>> medicosLibres = recursos(medicos, citaManager::getAgenda, minimo);
+            PriorityQueue<Recurso<Sala>> salasLibres = recursos(salas, citaManager::getAgenda, minimo);
+
+            List<SolicitudCita> plan = new ArrayList<>();
+            LocalDateTime ahora = minimo;
+            int siguiente = 0;
+            while (siguiente < ordenadas.size() || !pendientes.isEmpty()) {
+                if (pendientes.isEmpty()) {
+                    LocalDateTime apertura = solicitudes.get(ordenadas.get(siguiente)).getDesde();
+                    if (apertura.isAfter(ahora)) {
+                        ahora = apertura;
+                    }
+                }
+                while (siguiente < ordenadas.size()
+                        && !solicitudes.get(ordenadas.get(siguiente)).getDesde().isAfter(ahora)) {
+                    pendientes.add(ordenadas.get(siguiente++));
+                }
+                while (!pendientes.isEmpty() && solicitudes.get(pendientes.peek()).getHasta().isBefore(ahora)) {
+                    rechazadas.put(pendientes.poll(), "No hay médico y sala libres dentro de la ventana.");
+                }
+                if (pendientes.isEmpty()) {
+                    continue;
+                }
+
+                Recurso<Medico> medico = primeroLibre(medicosLibres, ahora);
+                Recurso<Sala> sala = primeroLibre(salasLibres, ahora);
+                if (medico.libre.equals(ahora) && sala.libre.equals(ahora)) {
+                    int indice = pendientes.poll();
+                    SolicitudAsignacion solicitud = solicitudes.get(indice);
+                    plan.add(SolicitudCita.builder()
+                            .paciente(solicitud.getPaciente())
+                            .medico(medico.recurso)
+                            .sala(sala.recurso)
+                            .fechaHora(ahora)
+                            .costo(solicitud.getCosto())
+                            .build());
+                    planificadas.add(indice);
+                    medicosLibres.add(medicosLibres.poll().ocupar(ahora));
+                    salasLibres.add(salasLibres.poll().ocupar(ahora));
+                } else {
+                    ahora = medico.libre.isAfter(sala.libre) ? medico.libre : sala.libre;
+                }
+            }
+            return plan;
+        }
+    }
+
+    private static <R> PriorityQueue<Recurso<R>> recursos(List<R> lista,
+            Function<R, NavigableMap<LocalDateTime, Cita>> agenda, LocalDateTime desde) {
+        PriorityQueue<Recurso<R>> cola = new PriorityQueue<>(Math.max(1, lista.size()), Comparator
+                .comparing((Recurso<R> r) -> r.libre)
+                .thenComparingInt(r -> r.orden));
+        for (int i = 0; i < lista.size(); i++) {
+            Recurso<R> recurso = new Recurso<>(lista.get(i), agenda.apply(lista.get(i)), i);
+            recurso.libre = BuscadorHorarios.siguienteHorarioLibre(recurso.agenda, desde);
+            cola.add(recurso);
+        }
+        return cola;
+    }
+
+    /** Deja en el tope de la cola el recurso que antes queda libre desde {@code ahora}. */
+    private static <R> Recurso<R> primeroLibre(PriorityQueue<Recurso<R>> cola, LocalDateTime ahora) {
+        while (cola.peek().libre.isBefore(ahora)) {
+            Recurso<R> recurso = cola.poll();
+            recurso.libre = BuscadorHorarios.siguienteHorarioLibre(recurso.agenda, ahora);
+            cola.add(recurso);
+        }
+        return cola.peek();
+    }
+
+    /**
+     * Médico o sala con su próximo horario libre. Las citas del plan se
+     * asignan en orden creciente, así que basta con empezar la búsqueda
+     * {@link CitaManager#VENTANA_MINIMA} después de la última.
+     */
+    private static final class Recurso<R> {
+        final R recurso;
+        final NavigableMap<LocalDateTime, Cita> agenda;
+        final int orden;
+        LocalDateTime libre;
+
+        Recurso(R recurso, NavigableMap<LocalDateTime, Cita> agenda, int orden) {
+            this.recurso = recurso;
+            this.agenda = agenda;
+            this.orden = orden;
+        }
+
+        Recurso<R> ocupar(LocalDateTime fechaHora) {
+            libre = BuscadorHorarios.siguienteHorarioLibre(agenda, fechaHora.plus(CitaManager.VENTANA_MINIMA));
+            return this;
+        }
+    }
+}
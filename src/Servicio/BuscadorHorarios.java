@@ -0,0 +1,193 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.Medico;
+import Entidades.Sala;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * [HU-08] Búsqueda de los primeros horarios libres entre varios médicos y
+ * salas compatibles.
+ *
+ * Cada médico avanza por sus huecos con {@link #siguienteHorarioLibre}, que
+ * salta de una cita a la siguiente en lugar de probar horario por horario, y
+ * en cada candidato se busca la sala que quede libre primero. Los médicos se
+ * intercalan en una cola de prioridad por fecha, de modo que solo se
+ * calculan los horarios que llegan al resultado.
+ *
+ * La respuesta de cada sala se recuerda: si otro médico pregunta desde un
+ * horario que cae entre la consulta anterior y su resultado, la respuesta es
+ * la misma, así que cada agenda de sala se recorre a lo sumo una vez aunque
+ * todos los médicos compitan por ella.
+ *
+ * Dos ofertas de un mismo médico quedan separadas al menos por
+ * {@link CitaManager#VENTANA_MINIMA}, es decir, son turnos que podría
+ * atender uno detrás de otro. Cada sala ofrecida queda ocupada durante esa
+ * ventana para el resto de la búsqueda, así que dos ofertas nunca se
+ * disputan la misma sala y todas pueden confirmarse juntas. Un candidato
+ * cuya sala fue ofrecida mientras esperaba en la cola se recalcula al salir.
+ */
+final class BuscadorHorarios {
+    private final List<Sala> salas;
+    private final List<NavigableMap<LocalDateTime, Cita>> agendasSala;
+    /** Horarios ya ofrecidos por sala; {@code null} mientras la sala no tiene ofertas. */
+    private final List<NavigableMap<LocalDateTime, Medico>> ofertasSala;
+    private final LocalDateTime[] consultaSala;
+    private final LocalDateTime[] libreSala;
+    private final PriorityQueue<Candidato> cola;
+
+    /**
+     * Las agendas van en el mismo orden que sus médicos y salas; una agenda
+     * {@code null} equivale a una vacía.
+     *
+     * @param preferido Médico que se ofrece primero ante igual horario; puede ser {@code null}
+     */
+    BuscadorHorarios(List<Medico> medicos, List<NavigableMap<LocalDateTime, Cita>> agendasMedico,
+            List<Sala> salas, List<NavigableMap<LocalDateTime, Cita>> agendasSala, Medico preferido,
+            LocalDateTime desde) {
+        this.salas = salas;
+        this.agendasSala = agendasSala;
+        this.ofertasSala = new ArrayList<>(Collections.nCopies(salas.size(), null));
+        this.consultaSala = new LocalDateTime[salas.size()];
+        this.libreSala = new LocalDateTime[salas.size()];
+        this.cola = new PriorityQueue<>(Math.max(1, medicos.size()), Comparator
+                .comparing((Candidato c) -> c.fechaHora)
+                .thenComparing(c -> c.medico != preferido)
+                .thenComparingInt(c -> c.orden));
+        for (int i = 0; i < medicos.size(); i++) {
+            Candidato candidato = new Candidato(medicos.get(i), agendasMedico.get(i), i);
+            if (candidato.avanzar(desde)) {
+                cola.add(candidato);
+            }
+        }
+    }
+
+    List<HorarioDisponible> buscar(int cantidad) {
+        List<HorarioDisponible> horarios = new ArrayList<>(cantidad);
+        while (horarios.size() < cantidad && !cola.isEmpty()) {
+            Candidato candidato = cola.poll();
+            if (!siguienteLibreSala(candidato.indiceSala, candidato.fechaHora).equals(candidato.fechaHora)) {
+                // Su sala se ofreció a otro médico mientras esperaba: se recalcula desde el mismo horario
+                if (candidato.avanzar(candidato.fechaHora)) {
+                    cola.add(candidato);
+                }
+                continue;
+            }
+            horarios.add(new HorarioDisponible(candidato.medico, salas.get(candidato.indiceSala),
+                    candidato.fechaHora));
+            ofrecer(candidato.indiceSala, candidato.fechaHora, candidato.medico);
+            if (candidato.avanzar(candidato.fechaHora.plus(CitaManager.VENTANA_MINIMA))) {
+                cola.add(candidato);
+            }
+        }
+        return horarios;
+    }
+
+    /** Ocupa la sala en ese horario para las ofertas siguientes; la respuesta recordada deja de valer. */
+    private void ofrecer(int sala, LocalDateTime fechaHora, Medico medico) {
+        if (ofertasSala.get(sala) == null) {
+            ofertasSala.set(sala, new TreeMap<>());
+        }
+        ofertasSala.get(sala).put(fechaHora, medico);
+        consultaSala[sala] = null;
+    }
+
+    /** Primer horario que respeta la ventana con la agenda de la sala y con sus ofertas. */
+    private LocalDateTime siguienteLibreSala(int sala, LocalDateTime desde) {
+        LocalDateTime consulta = consultaSala[sala];
+        if (consulta != null && !desde.isBefore(consulta) && !desde.isAfter(libreSala[sala])) {
+            return libreSala[sala];
+        }
+        LocalDateTime libre = desde;
+        while (true) {
+            LocalDateTime siguiente = siguienteHorarioLibre(ofertasSala.get(sala),
+                    siguienteHorarioLibre(agendasSala.get(sala), libre));
+            if (siguiente.equals(libre)) {
+                break;
+            }
+            libre = siguiente;
+        }
+        consultaSala[sala] = desde;
+        libreSala[sala] = libre;
+        return libre;
+    }
+
+    /**
+     * [HU-08] Primer horario en o después de {@code desde} que respeta la
+     * ventana de 2 horas con todas las citas de la agenda. Cada iteración
+     * salta al final de la cita en conflicto, así que el costo es O(log n)
+     * para ubicar la primera más O(1) por cita atravesada.
+     */
+    static LocalDateTime siguienteHorarioLibre(NavigableMap<LocalDateTime, ?> agenda, LocalDateTime desde) {
+        if (agenda == null) {
+            return desde;
+        }
+        LocalDateTime fechaHora = desde;
+        LocalDateTime limite = fechaHora.plus(CitaManager.VENTANA_MINIMA);
+        for (LocalDateTime cita : agenda.tailMap(fechaHora.minus(CitaManager.VENTANA_MINIMA), false).keySet()) {
+            if (!cita.isBefore(limite)) {
+                break;
+            }
+            fechaHora = cita.plus(CitaManager.VENTANA_MINIMA);
+            limite = fechaHora.plus(CitaManager.VENTANA_MINIMA);
+        }
+        return fechaHora;
+    }
+
+    /** Próximo horario ofrecido por un médico y la sala que lo acompaña. */
+    private final class Candidato {
+        final Medico medico;
+        final NavigableMap<LocalDateTime, Cita> agenda;
+        final int orden;
+        LocalDateTime fechaHora;
+        int indiceSala;
+
+        Candidato(Medico medico, NavigableMap<LocalDateTime, Cita> agenda, int orden) {
+            this.medico = medico;
+            this.agenda = agenda;
+            this.orden = orden;
+        }
+
+        /**
+         * Alterna entre el próximo hueco del médico y el de las salas hasta
+         * que ambos coinciden.
+         *
+         * @return {@code false} si no hay salas
+         */
+        boolean avanzar(LocalDateTime desde) {
+            LocalDateTime fechaHora = desde;
+            while (true) {
+                fechaHora = siguienteHorarioLibre(agenda, fechaHora);
+                LocalDateTime primeraSala = null;
+                int elegida = -1;
+                for (int i = 0; i < salas.size(); i++) {
+                    LocalDateTime libre = siguienteLibreSala(i, fechaHora);
+                    if (primeraSala == null || libre.isBefore(primeraSala)) {
+                        primeraSala = libre;
+                        elegida = i;
+                        if (libre.equals(fechaHora)) {
+                            break;
+                        }
+                    }
+                }
+                if (elegida < 0) {
+                    return false;
+                }
+                if (primeraSala.equals(fechaHora)) {
+                    this.fechaHora = fechaHora;
+                    this.indiceSala = elegida;
+                    return true;
+                }
+                fechaHora = primeraSala;
+            }
+        }
+    }
+}
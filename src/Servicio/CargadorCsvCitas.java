@@ -0,0 +1,494 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.EstadoCita;
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.Sala;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * [HU-11] Cargador de citas en formato CSV (RN-11.1) de alto rendimiento.
+ *
+ * El archivo se mapea en memoria y se divide en tramos alineados a fin de
+ * línea que se procesan en paralelo. Cada línea se interpreta directamente
+ * sobre los bytes mapeados: las claves de paciente, médico y sala se buscan
+ * en tablas indexadas por bytes y la fecha y el costo se decodifican sin
+ * {@code String.split}, expresiones regulares ni cadenas intermedias. Solo se
+ * crean los objetos que forman parte de la {@link Cita} resultante.
+ *
+ * Las citas se devuelven en el mismo orden en que aparecen en el archivo.
+ * Los archivos gzip generados por {@link EscritorCsvCitas} se descomprimen de
+ * forma secuencial.
+ */
+final class CargadorCsvCitas {
+    /** Tamaño máximo de un tramo; debe ser menor a 2 GB para poder mapearlo. */
+    private static final long TAMANIO_MAXIMO_TRAMO = 256L * 1024 * 1024;
+    /** Por debajo de este tamaño no conviene dividir el archivo. */
+    private static final long TAMANIO_MINIMO_TRAMO = 1024L * 1024;
+    private static final int CAMPOS = 7;
+    private static final int TAMANIO_BLOQUE_GZIP = 1024 * 1024;
+
+    private static final EstadoCita[] ESTADOS = EstadoCita.values();
+    private static final byte[][] NOMBRES_ESTADO = new byte[ESTADOS.length][];
+
+    static {
+        for (int i = 0; i < ESTADOS.length; i++) {
+            NOMBRES_ESTADO[i] = ESTADOS[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final TablaClaves<Paciente> pacientes;
+    private final TablaClaves<Medico> medicos;
+    private final TablaClaves<Sala> salas;
+
+    CargadorCsvCitas(Map<String, Paciente> pacientes, Map<String, Medico> medicos, Map<String, Sala> salas) {
+        this.pacientes = new TablaClaves<>(pacientes);
+        this.medicos = new TablaClaves<>(medicos);
+        this.salas = new TablaClaves<>(salas);
+    }
+
+    /**
+     * Lee todas las citas del archivo. Los archivos comprimidos con gzip
+     * se detectan automáticamente.
+     *
+     * @throws CitaException Si alguna línea es inválida; se informa la primera
+     *                       en orden de archivo
+     */
+    List<Cita> cargar(Path archivo) throws IOException, CitaException {
+        if (esGzip(archivo)) {
+            return cargarComprimido(archivo);
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long[] limites = calcularTramos(canal);
+            int tramos = limites.length - 1;
+
+            Object[] resultados = new Object[tramos];
+            try {
+                IntStream.range(0, tramos).parallel().forEach(i -> {
+                    try {
+                        resultados[i] = parsearTramo(canal, limites[i], limites[i + 1]);
+                    } catch (CitaException e) {
+                        resultados[i] = e;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int total = 0;
+            for (Object resultado : resultados) {
+                if (resultado instanceof CitaException) {
+                    throw (CitaException) resultado;
+                }
+                total += ((List<?>) resultado).size();
+            }
+            List<Cita> citas = new ArrayList<>(total);
+            for (Object resultado : resultados) {
+                @SuppressWarnings("unchecked")
+                List<Cita> parcial = (List<Cita>) resultado;
+                citas.addAll(parcial);
+            }
+            return citas;
+        }
+    }
+
+    /**
+     * Divide el archivo en tramos cuyos límites caen justo después de un
+     * salto de línea.
+     *
+     * @return Posiciones de inicio de cada tramo más la posición final
+     */
+    private static long[] calcularTramos(FileChannel canal) throws IOException {
+        long tamanio = canal.size();
+        int paralelismo = Runtime.getRuntime().availableProcessors();
+        long tramoObjetivo = TAMANIO_MAXIMO_TRAMO / 2;
+        long deseados = Math.max(paralelismo * 4L, (tamanio + tramoObjetivo - 1) / tramoObjetivo);
+        deseados = Math.max(1, Math.min(deseados, tamanio / TAMANIO_MINIMO_TRAMO));
+        long paso = Math.max(1, tamanio / deseados);
+
+        List<Long> limites = new ArrayList<>();
+        limites.add(0L);
+        ByteBuffer lectura = ByteBuffer.allocate(8192);
+        long ultimo = 0;
+        while (true) {
+            long objetivo = Math.max(ultimo + paso, ultimo + 1);
+            if (objetivo >= tamanio) {
+                break;
+            }
+            long limite = siguienteLinea(canal, objetivo, lectura);
+            if (limite >= tamanio) {
+                break;
+            }
+            if (limite - ultimo > TAMANIO_MAXIMO_TRAMO) {
+                throw new IOException("Línea demasiado larga en el archivo de citas cerca de la posición " + ultimo);
+            }
+            limites.add(limite);
+            ultimo = limite;
+        }
+        if (tamanio - ultimo > TAMANIO_MAXIMO_TRAMO) {
+            throw new IOException("Línea demasiado larga en el archivo de citas cerca de la posición " + ultimo);
+        }
+        limites.add(tamanio);
+
+        long[] resultado = new long[limites.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = limites.get(i);
+        }
+        return resultado;
+    }
+
+    /** Posición inmediatamente posterior al primer '\n' a partir de {@code desde}. */
+    private static long siguienteLinea(FileChannel canal, long desde, ByteBuffer lectura) throws IOException {
+        long posicion = desde;
+        while (true) {
+            lectura.clear();
+            int leidos = canal.read(lectura, posicion);
+            if (leidos <= 0) {
+                return canal.size();
+            }
+            for (int i = 0; i < leidos; i++) {
+                if (lectura.get(i) == '\n') {
+                    return posicion + i + 1;
+                }
+            }
+            posicion += leidos;
+        }
+    }
+
+    private List<Cita> parsearTramo(FileChannel canal, long inicio, long fin) throws IOException, CitaException {
+        MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, inicio, fin - inicio);
+        List<Cita> citas = new ArrayList<>(Math.max(16, buffer.limit() / 96));
+        parsearLineas(buffer, 0, buffer.limit(), true, citas, new int[CAMPOS - 1], new byte[256]);
+        return citas;
+    }
+
+    /**
+     * Lee un archivo comprimido con gzip. No puede mapearse en memoria, así que
+     * se descomprime en bloques sobre un buffer reutilizable que se interpreta
+     * con el mismo analizador de líneas.
+     */
+    private List<Cita> cargarComprimido(Path archivo) throws IOException, CitaException {
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(archivo), TAMANIO_BLOQUE_GZIP)) {
+            List<Cita> citas = new ArrayList<>();
+            int[] comas = new int[CAMPOS - 1];
+            byte[] temporal = new byte[256];
+            byte[] bloque = new byte[TAMANIO_BLOQUE_GZIP];
+            int pendiente = 0;
+            int fin = 0;
+            while (true) {
+                if (fin == bloque.length) {
+                    if (pendiente == 0) {
+                        bloque = Arrays.copyOf(bloque, bloque.length * 2);
+                    } else {
+                        System.arraycopy(bloque, pendiente, bloque, 0, fin - pendiente);
+                        fin -= pendiente;
+                        pendiente = 0;
+                    }
+                }
+                int leidos = entrada.read(bloque, fin, bloque.length - fin);
+                if (leidos < 0) {
+                    break;
+                }
+                fin += leidos;
+                pendiente = parsearLineas(ByteBuffer.wrap(bloque), pendiente, fin, false, citas, comas, temporal);
+            }
+            parsearLineas(ByteBuffer.wrap(bloque), pendiente, fin, true, citas, comas, temporal);
+            return citas;
+        }
+    }
+
+    private static boolean esGzip(Path archivo) throws IOException {
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            return entrada.read() == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                    && entrada.read() == (GZIPInputStream.GZIP_MAGIC >>> 8);
+        }
+    }
+
+    /**
+     * Interpreta las líneas completas entre {@code desde} y {@code hasta}.
+     *
+     * @param finDeArchivo Si la última línea puede no terminar en salto de línea
+     * @return Posición de inicio de la primera línea no procesada
+     */
+    private int parsearLineas(ByteBuffer buffer, int desde, int hasta, boolean finDeArchivo, List<Cita> destino,
+            int[] comas, byte[] temporal) throws CitaException {
+        int posicion = desde;
+        while (posicion < hasta) {
+            int finLinea = posicion;
+            while (finLinea < hasta && buffer.get(finLinea) != '\n') {
+                finLinea++;
+            }
+            if (finLinea == hasta && !finDeArchivo) {
+                return posicion;
+            }
+            int finContenido = finLinea;
+            if (finContenido > posicion && buffer.get(finContenido - 1) == '\r') {
+                finContenido--;
+            }
+            try {
+                destino.add(parsearLinea(buffer, posicion, finContenido, comas, temporal));
+            } catch (CitaException e) {
+                System.err.println("Error al cargar cita desde CSV: "
+                        + decodificar(buffer, posicion, finContenido) + " - " + e.getMessage());
+                throw e;
+            }
+            posicion = finLinea + 1;
+        }
+        return Math.min(posicion, hasta);
+    }
+
+    /** Interpreta una única fila RN-11.1; usado al reproducir el {@link DiarioCitas}. */
+    Cita parsearRegistro(ByteBuffer buffer, int inicio, int fin) throws CitaException {
+        return parsearLinea(buffer, inicio, fin, new int[CAMPOS - 1], new byte[256]);
+    }
+
+    private Cita parsearLinea(ByteBuffer buffer, int inicio, int fin, int[] comas, byte[] temporal)
+            throws CitaException {
+        int encontradas = 0;
+        for (int i = inicio; i < fin; i++) {
+            if (buffer.get(i) == ',') {
+                if (encontradas == comas.length) {
+                    encontradas++;
+                    break;
+                }
+                comas[encontradas++] = i;
+            }
+        }
+        if (encontradas != comas.length) {
+            throw new CitaException("Formato de CSV inválido para Cita: " + decodificar(buffer, inicio, fin));
+        }
+
+        LocalDateTime fechaHora = parsearFechaHora(buffer, comas[2] + 1, comas[3]);
+        BigDecimal costo = parsearCosto(buffer, comas[3] + 1, comas[4]);
+        EstadoCita estado = parsearEstado(buffer, comas[4] + 1, comas[5]);
+        String observaciones = parsearObservaciones(buffer, comas[5] + 1, fin, temporal);
+
+        Paciente paciente = pacientes.buscar(buffer, inicio, comas[0]);
+        Medico medico = medicos.buscar(buffer, comas[0] + 1, comas[1]);
+        Sala sala = salas.buscar(buffer, comas[1] + 1, comas[2]);
+
+        if (paciente == null) {
+            throw new CitaException("Paciente no encontrado: " + decodificar(buffer, inicio, comas[0]));
+        }
+        if (medico == null) {
+            throw new CitaException("Médico no encontrado: " + decodificar(buffer, comas[0] + 1, comas[1]));
+        }
+        if (sala == null) {
+            throw new CitaException("Sala no encontrada: " + decodificar(buffer, comas[1] + 1, comas[2]));
+        }
+
+        return Cita.builder()
+                .paciente(paciente)
+                .medico(medico)
+                .sala(sala)
+                .fechaHora(fechaHora)
+                .costo(costo)
+                .estado(estado)
+                .observaciones(observaciones)
+                .build();
+    }
+
+    /**
+     * Decodifica el formato de {@link LocalDateTime#toString()}:
+     * {@code uuuu-MM-ddTHH:mm[:ss[.fffffffff]]}. Cualquier otra variante se
+     * delega a {@link LocalDateTime#parse}.
+     */
+    static LocalDateTime parsearFechaHora(ByteBuffer buffer, int inicio, int fin) throws CitaException {
+        int largo = fin - inicio;
+        try {
+            if (largo >= 16 && buffer.get(inicio + 4) == '-' && buffer.get(inicio + 7) == '-'
+                    && buffer.get(inicio + 10) == 'T' && buffer.get(inicio + 13) == ':') {
+                int anio = digitos(buffer, inicio, 4);
+                int mes = digitos(buffer, inicio + 5, 2);
+                int dia = digitos(buffer, inicio + 8, 2);
+                int hora = digitos(buffer, inicio + 11, 2);
+                int minuto = digitos(buffer, inicio + 14, 2);
+                int segundo = 0;
+                int nanos = 0;
+                boolean valido = anio >= 0 && mes >= 0 && dia >= 0 && hora >= 0 && minuto >= 0;
+                if (valido && largo > 16) {
+                    valido = largo >= 19 && buffer.get(inicio + 16) == ':';
+                    segundo = valido ? digitos(buffer, inicio + 17, 2) : -1;
+                    valido = segundo >= 0;
+                    if (valido && largo > 19) {
+                        int fraccion = largo - 20;
+                        valido = buffer.get(inicio + 19) == '.' && fraccion >= 1 && fraccion <= 9;
+                        nanos = valido ? digitos(buffer, inicio + 20, fraccion) : -1;
+                        valido = nanos >= 0;
+                        for (int i = fraccion; valido && i < 9; i++) {
+                            nanos *= 10;
+                        }
+                    }
+                }
+                if (valido) {
+                    return LocalDateTime.of(anio, mes, dia, hora, minuto, segundo, nanos);
+                }
+            }
+            return LocalDateTime.parse(decodificar(buffer, inicio, fin));
+        } catch (DateTimeException e) {
+            throw new CitaException("Fecha inválida en CSV: " + decodificar(buffer, inicio, fin), e);
+        }
+    }
+
+    /** @return El valor de {@code cantidad} dígitos decimales, o -1 si alguno no es dígito. */
+    private static int digitos(ByteBuffer buffer, int inicio, int cantidad) {
+        int valor = 0;
+        for (int i = inicio; i < inicio + cantidad; i++) {
+            int d = buffer.get(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            valor = valor * 10 + d;
+        }
+        return valor;
+    }
+
+    /**
+     * Decodifica costos en notación decimal simple ({@code -123.45}) como
+     * valor sin escala más escala; otras notaciones se delegan a
+     * {@link BigDecimal#BigDecimal(String)}.
+     */
+    private static BigDecimal parsearCosto(ByteBuffer buffer, int inicio, int fin) throws CitaException {
+        int i = inicio;
+        boolean negativo = i < fin && buffer.get(i) == '-';
+        if (negativo) {
+            i++;
+        }
+        long sinEscala = 0;
+        int escala = -1;
+        int cifras = 0;
+        boolean simple = i < fin;
+        for (; simple && i < fin; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && escala < 0) {
+                escala = 0;
+            } else if (b >= '0' && b <= '9' && cifras < 18) {
+                sinEscala = sinEscala * 10 + (b - '0');
+                cifras++;
+                if (escala >= 0) {
+                    escala++;
+                }
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && cifras > 0) {
+            return BigDecimal.valueOf(negativo ? -sinEscala : sinEscala, Math.max(escala, 0));
+        }
+        try {
+            return new BigDecimal(decodificar(buffer, inicio, fin));
+        } catch (NumberFormatException e) {
+            throw new CitaException("Costo inválido en CSV: " + decodificar(buffer, inicio, fin), e);
+        }
+    }
+
+    static EstadoCita parsearEstado(ByteBuffer buffer, int inicio, int fin) throws CitaException {
+        for (int e = 0; e < NOMBRES_ESTADO.length; e++) {
+            if (iguales(NOMBRES_ESTADO[e], buffer, inicio, fin)) {
+                return ESTADOS[e];
+            }
+        }
+        throw new CitaException("Estado de cita inválido en CSV: " + decodificar(buffer, inicio, fin));
+    }
+
+    /** Revierte el escape de RN-11.1: ';' en el archivo representa ',' en las observaciones. */
+    static String parsearObservaciones(ByteBuffer buffer, int inicio, int fin, byte[] temporal) {
+        int largo = fin - inicio;
+        if (largo == 0) {
+            return "";
+        }
+        byte[] destino = largo <= temporal.length ? temporal : new byte[largo];
+        for (int i = 0; i < largo; i++) {
+            byte b = buffer.get(inicio + i);
+            destino[i] = b == ';' ? (byte) ',' : b;
+        }
+        return new String(destino, 0, largo, StandardCharsets.UTF_8);
+    }
+
+    private static boolean iguales(byte[] clave, ByteBuffer buffer, int inicio, int fin) {
+        if (clave.length != fin - inicio) {
+            return false;
+        }
+        for (int i = 0; i < clave.length; i++) {
+            if (clave[i] != buffer.get(inicio + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String decodificar(ByteBuffer buffer, int inicio, int fin) {
+        byte[] bytes = new byte[fin - inicio];
+        buffer.get(inicio, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tabla hash de direccionamiento abierto con claves en bytes UTF-8.
+     * Permite resolver DNI y números de sala directamente desde el buffer
+     * mapeado sin crear un {@link String} por línea.
+     */
+    static final class TablaClaves<V> {
+        private final byte[][] claves;
+        private final Object[] valores;
+        private final int mascara;
+
+        TablaClaves(Map<String, V> origen) {
+            int capacidad = Integer.highestOneBit(Math.max(2, origen.size() * 2 - 1)) << 1;
+            this.claves = new byte[capacidad][];
+            this.valores = new Object[capacidad];
+            this.mascara = capacidad - 1;
+            for (Map.Entry<String, V> entrada : origen.entrySet()) {
+                byte[] clave = entrada.getKey().getBytes(StandardCharsets.UTF_8);
+                int i = hash(ByteBuffer.wrap(clave), 0, clave.length) & mascara;
+                while (claves[i] != null) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clave;
+                valores[i] = entrada.getValue();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V buscar(ByteBuffer buffer, int inicio, int fin) {
+            int i = hash(buffer, inicio, fin) & mascara;
+            while (claves[i] != null) {
+                if (iguales(claves[i], buffer, inicio, fin)) {
+                    return (V) valores[i];
+                }
+                i = (i + 1) & mascara;
+            }
+            return null;
+        }
+
+        private static int hash(ByteBuffer buffer, int inicio, int fin) {
+            int h = 0;
+            for (int i = inicio; i < fin; i++) {
+                h = 31 * h + buffer.get(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
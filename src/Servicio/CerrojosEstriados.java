@@ -0,0 +1,83 @@
+package Servicio;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * [HU-08] Cerrojos estriados por recurso.
+ *
+ * Cada clave (DNI del médico, número de sala, DNI del paciente) se asigna a
+ * una de N franjas. La programación de una cita bloquea solo las franjas de
+ * sus recursos, de modo que citas de médicos y salas no relacionados se
+ * programan en paralelo sin un cerrojo global.
+ *
+ * Los cerrojos se adquieren siempre en orden ascendente de franja para
+ * evitar interbloqueos entre hilos que comparten recursos.
+ */
+final class CerrojosEstriados {
+    private final ReentrantLock[] cerrojos;
+    private final int mascara;
+
+    CerrojosEstriados(int franjas) {
+        if (franjas <= 0) {
+            throw new IllegalArgumentException("La cantidad de franjas debe ser positiva.");
+        }
+        int tamanio = Integer.highestOneBit(franjas);
+        if (tamanio < franjas) {
+            tamanio <<= 1;
+        }
+        this.cerrojos = new ReentrantLock[tamanio];
+        for (int i = 0; i < tamanio; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+        this.mascara = tamanio - 1;
+    }
+
+    int franja(Object clave) {
+        int h = clave.hashCode();
+        return (h ^ (h >>> 16)) & mascara;
+    }
+
+    /**
+     * Bloquea las franjas de las claves indicadas, sin repetir franjas.
+     *
+     * @return Las franjas adquiridas, en el orden en que deben liberarse
+     */
+    int[] bloquear(Object... claves) {
+        int[] franjas = new int[claves.length];
+        for (int i = 0; i < claves.length; i++) {
+            franjas[i] = franja(claves[i]);
+        }
+        Arrays.sort(franjas);
+        int distintas = 0;
+        for (int i = 0; i < franjas.length; i++) {
+            if (i == 0 || franjas[i] != franjas[i - 1]) {
+                franjas[distintas++] = franjas[i];
+            }
+        }
+        int[] adquiridas = Arrays.copyOf(franjas, distintas);
+        for (int f : adquiridas) {
+            cerrojos[f].lock();
+        }
+        return adquiridas;
+    }
+
+    void desbloquear(int[] franjas) {
+        for (int i = franjas.length - 1; i >= 0; i--) {
+            cerrojos[franjas[i]].unlock();
+        }
+    }
+
+    /** Bloquea todas las franjas; usado para operaciones que reemplazan el estado completo. */
+    void bloquearTodas() {
+        for (ReentrantLock cerrojo : cerrojos) {
+            cerrojo.lock();
+        }
+    }
+
+    void desbloquearTodas() {
+        for (int i = cerrojos.length - 1; i >= 0; i--) {
+            cerrojos[i].unlock();
+        }
+    }
+}
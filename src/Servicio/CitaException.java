@@ -1,12 +1,28 @@
 package Servicio;
 
 public class CitaException extends Exception {
+    private final ReglaNegocio regla;
 
     public CitaException(String message) {
-        super(message);
+        this(null, message);
     }
 
     public CitaException(String message, Throwable cause) {
         super(message, cause);
+        this.regla = null;
+    }
+
+    /**
+     * @param regla   Regla de negocio que rechazó la cita
+     * @param message Mensaje para el usuario
+     */
+    public CitaException(ReglaNegocio regla, String message) {
+        super(message);
+        this.regla = regla;
+    }
+
+    /** @return La regla de negocio violada, o {@code null} si el error no proviene de una regla */
+    public ReglaNegocio getRegla() {
+        return regla;
     }
 }
@@ -0,0 +1,25 @@
+package Servicio;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * [HU-07] Error de programación en lote.
+ * Indica que ninguna cita del lote fue registrada e informa el motivo de
+ * rechazo de cada solicitud, indexado por su posición en el lote.
+ */
+public class CitaLoteException extends CitaException {
+    private static final long serialVersionUID = 1L;
+
+    private final Map<Integer, String> errores;
+
+    public CitaLoteException(Map<Integer, String> errores) {
+        super("El lote fue rechazado: " + errores.size() + " solicitud(es) con errores.");
+        this.errores = Collections.unmodifiableMap(new TreeMap<>(errores));
+    }
+
+    public Map<Integer, String> getErrores() {
+        return errores;
+    }
+}
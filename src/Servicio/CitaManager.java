@@ -1,18 +1,39 @@
 package Servicio;
 
 import Entidades.Cita;
+import Entidades.Departamento;
+import Entidades.EspecialidadMedica;
+import Entidades.EstadoCita;
+import Entidades.Hospital;
 import Entidades.Medico;
+import Entidades.ObservadorCita;
 import Entidades.Paciente;
 import Entidades.Sala;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * [HU-07] Programación de Citas
@@ -34,22 +55,102 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * Reglas de Negocio:
  * - RN-07.1: No programar citas en el pasado
- * - RN-07.2: Costo debe ser positivo
+ * - RN-07.2: Costo debe ser positivo y no superar {@link AnaliticaCitas#COSTO_MAXIMO}
+ * - RN-07.3: Solo se permiten transiciones de estado válidas
  * - RN-08.1: Ventana de 2 horas entre citas del mismo médico
  * - RN-08.2: Ventana de 2 horas entre citas de la misma sala
  * - RN-09.1: Especialidad del médico debe coincidir con departamento de sala
  * - RN-10.1: Consultas deben usar índices para eficiencia
  * - RN-11.1: Formato CSV estándar y predefinido
  *
+ * Las agendas de médicos y salas se indexan por {@code fechaHora} en un
+ * {@link NavigableMap}, de modo que la validación de la ventana de 2 horas
+ * solo consulta la cita anterior y la siguiente (O(log n)). Las citas de cada
+ * paciente y el registro global se ordenan por {@link ClaveCita}, así que las
+ * consultas por rango ({@code desde}, {@code hasta}) devuelven vistas de solo
+ * lectura sobre el índice, sin copiar: el costo depende de las citas del
+ * rango y no del historial completo.
+ *
+ * Los índices por recurso usan como clave el DNI o el número de sala, que
+ * son inmutables y cachean su hash: cada búsqueda es O(1) sin importar
+ * cuántas citas acumule el recurso, y no depende de los campos mutables de
+ * las entidades.
+ *
+ * Los cambios de {@link EstadoCita} mantienen un contador por estado y las
+ * agendas de cada médico y sala separadas por estado, de modo que
+ * {@link #contarCitas(EstadoCita)} es O(1) y "las citas en curso de la sala X"
+ * cuesta lo que su resultado.
+ *
+ * Una cita cancelada o eliminada sale de todos los índices en O(log n) y
+ * deja de ocupar su ventana de 2 horas.
+ *
+ * Cada cita se guarda una vez por índice: {@code getCitas()} de pacientes,
+ * médicos y salas devuelve una vista de solo lectura, en orden de
+ * {@code fechaHora}, sobre su agenda en el último gestor que les registró
+ * citas.
+ *
+ * Concurrencia: la programación es segura entre hilos. La verificación de
+ * disponibilidad y la actualización de índices se ejecutan bajo los cerrojos
+ * estriados del médico, la sala y el paciente involucrados, por lo que dos
+ * recepcionistas no pueden reservar el mismo médico o sala a la vez, mientras
+ * que las citas de recursos no relacionados avanzan en paralelo. Las consultas
+ * no bloquean.
+ *
+ * Métricas: cada operación pública registra su latencia y cada rechazo la
+ * regla de negocio que lo causó, sin asignar memoria; {@link #getMetricas()}
+ * devuelve una instantánea.
+ *
+ * Facturación: cada cita se replica en columnas primitivas
+ * ({@link AnaliticaCitas}) con cada alta, cambio de estado y baja, así que
+ * los reportes de ingresos recorren arreglos y no las citas.
+ *
+ * Ocupación: el índice por sala se refleja en mapas de bits de turnos por
+ * día ({@link OcupacionSalas}), así que la utilización de una sala en un
+ * rango de fechas se cuenta por días y no por citas.
+ *
  * @see CitaService
  * @see Cita
  * @see CitaException
  */
 public class CitaManager implements CitaService {
-    private final List<Cita> citas = new ArrayList<>();
-    private final Map<Paciente, List<Cita>> citasPorPaciente = new ConcurrentHashMap<>();
-    private final Map<Medico, List<Cita>> citasPorMedico = new ConcurrentHashMap<>();
-    private final Map<Sala, List<Cita>> citasPorSala = new ConcurrentHashMap<>();
+    /** RN-08.1 / RN-08.2: separación mínima entre citas del mismo médico o sala. */
+    static final Duration VENTANA_MINIMA = Duration.ofHours(2);
+
+    private volatile NavigableMap<ClaveCita, Cita> citas = new ConcurrentSkipListMap<>();
+    /** Por DNI del paciente. */
+    private final Map<String, NavigableMap<ClaveCita, Cita>> citasPorPaciente = new ConcurrentHashMap<>();
+    /** Por DNI del médico. */
+    private final Map<String, NavigableMap<LocalDateTime, Cita>> citasPorMedico = new ConcurrentHashMap<>();
+    /** Por número de sala. */
+    private final Map<String, NavigableMap<LocalDateTime, Cita>> citasPorSala = new ConcurrentHashMap<>();
+    private final Map<EstadoCita, LongAdder> conteoPorEstado = new EnumMap<>(EstadoCita.class);
+    /** Por hospital de la sala, como vista de solo lectura: la que ven sus estadísticas. */
+    private final Map<Hospital, Map<EstadoCita, LongAdder>> conteoPorHospital = new ConcurrentHashMap<>();
+    private final Map<EstadoCita, Map<String, NavigableMap<LocalDateTime, Cita>>> medicosPorEstado = new EnumMap<>(EstadoCita.class);
+    private final Map<EstadoCita, Map<String, NavigableMap<LocalDateTime, Cita>>> salasPorEstado = new EnumMap<>(EstadoCita.class);
+    private final CerrojosEstriados cerrojos;
+    private final ObservadorCita observador = new ObservadorInterno();
+    private final MetricasCitas metricas = new MetricasCitas();
+    private final AnaliticaCitas analitica = new AnaliticaCitas();
+    private final OcupacionSalas ocupacion = new OcupacionSalas();
+    private volatile DiarioCitas diario;
+
+    public CitaManager() {
+        this(Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+    }
+
+    /**
+     * @param franjasDeBloqueo Cantidad de cerrojos estriados; se redondea a la
+     *                         siguiente potencia de dos
+     */
+    public CitaManager(int franjasDeBloqueo) {
+        this.cerrojos = new CerrojosEstriados(franjasDeBloqueo);
+        for (EstadoCita estado : EstadoCita.values()) {
+            conteoPorEstado.put(estado, new LongAdder());
+            medicosPorEstado.put(estado, new ConcurrentHashMap<>());
+            salasPorEstado.put(estado, new ConcurrentHashMap<>());
+        }
+    }
 
     /**
      * [HU-07] Programa una nueva cita médica.
@@ -67,142 +168,870 @@ public class CitaManager implements CitaService {
     @Override
     public Cita programarCita(Paciente paciente, Medico medico, Sala sala,
             LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
+        long inicio = System.nanoTime();
+        try {
+            return programar(paciente, medico, sala, fechaHora, costo);
+        } catch (CitaException e) {
+            metricas.registrarRechazo(e.getRegla());
+            throw e;
+        } finally {
+            metricas.registrarLatencia(OperacionCita.PROGRAMAR_CITA, inicio);
+        }
+    }
 
+    private Cita programar(Paciente paciente, Medico medico, Sala sala,
+            LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
         // [HU-07] RN-07.1 y RN-07.2: Validar fecha futura y costo positivo
         validarCita(fechaHora, costo);
 
-        // [HU-08] RN-08.1: Validar disponibilidad del médico (ventana 2 horas)
-        if (!esMedicoDisponible(medico, fechaHora)) {
-            throw new CitaException("El médico no está disponible en la fecha y hora solicitadas.");
+        Cita cita;
+        long secuencia;
+        int[] franjas = cerrojos.bloquear(medico.getDni(), sala.getNumero(), paciente.getDni());
+        try {
+            // [HU-08] RN-08.1: Validar disponibilidad del médico (ventana 2 horas)
+            if (!esMedicoDisponible(medico, fechaHora)) {
+                throw new CitaException(ReglaNegocio.RN_08_1,
+                        "El médico no está disponible en la fecha y hora solicitadas.");
+            }
+
+            // [HU-08] RN-08.2: Validar disponibilidad de la sala (ventana 2 horas)
+            if (!esSalaDisponible(sala, fechaHora)) {
+                throw new CitaException(ReglaNegocio.RN_08_2,
+                        "La sala no está disponible en la fecha y hora solicitadas.");
+            }
+
+            // [HU-09] RN-09.1: Validar compatibilidad de especialidades
+            if (!medico.getEspecialidad().equals(sala.getDepartamento().getEspecialidad())) {
+                throw new CitaException(ReglaNegocio.RN_09_1,
+                        "La especialidad del médico no coincide con el departamento de la sala.");
+            }
+
+            cita = Cita.builder()
+                    .paciente(paciente)
+                    .medico(medico)
+                    .sala(sala)
+                    .fechaHora(fechaHora)
+                    .costo(costo)
+                    .build();
+            // Lo que puede fallar va antes del diario; después, registrar ya no falla
+            AnaliticaCitas.Fila fila = AnaliticaCitas.fila(cita);
+            secuencia = registrarEnDiario(cita);
+            registrar(cita, fila);
+        } finally {
+            cerrojos.desbloquear(franjas);
         }
+        esperarDiario(secuencia);
+        return cita;
+    }
 
-        // [HU-08] RN-08.2: Validar disponibilidad de la sala (ventana 2 horas)
-        if (!esSalaDisponible(sala, fechaHora)) {
-            throw new CitaException("La sala no está disponible en la fecha y hora solicitadas.");
+    /**
+     * [HU-07] Programa un lote de citas con semántica todo-o-nada.
+     *
+     * Las solicitudes se ordenan por médico/sala y fecha, y se validan en una
+     * sola pasada contra los índices existentes y entre sí (RN-08.1/RN-08.2).
+     * Si alguna solicitud es inválida no se registra ninguna cita y se lanza
+     * {@link CitaLoteException} con el motivo de cada rechazo.
+     *
+     * @param solicitudes Las solicitudes a programar
+     * @return Las citas creadas, en el mismo orden que las solicitudes
+     * @throws CitaLoteException Si al menos una solicitud es inválida
+     */
+    @Override
+    public List<Cita> programarCitas(List<SolicitudCita> solicitudes) throws CitaException {
+        long inicio = System.nanoTime();
+        try {
+            return programarLote(solicitudes);
+        } finally {
+            metricas.registrarLatencia(OperacionCita.PROGRAMAR_CITAS, inicio);
         }
+    }
+
+    private List<Cita> programarLote(List<SolicitudCita> solicitudes) throws CitaException {
+        int n = solicitudes.size();
+        Map<Integer, String> errores = new TreeMap<>();
 
-        // [HU-09] RN-09.1: Validar compatibilidad de especialidades
-        if (!medico.getEspecialidad().equals(sala.getDepartamento().getEspecialidad())) {
-            throw new CitaException("La especialidad del médico no coincide con el departamento de la sala.");
+        // [HU-07] RN-07.1/RN-07.2 y [HU-09] RN-09.1: validaciones independientes
+        Object[] claves = new Object[n * 3];
+        for (int i = 0; i < n; i++) {
+            SolicitudCita solicitud = solicitudes.get(i);
+            try {
+                validarCita(solicitud.getFechaHora(), solicitud.getCosto());
+                if (!solicitud.getMedico().getEspecialidad()
+                        .equals(solicitud.getSala().getDepartamento().getEspecialidad())) {
+                    throw new CitaException(ReglaNegocio.RN_09_1,
+                            "La especialidad del médico no coincide con el departamento de la sala.");
+                }
+            } catch (CitaException e) {
+                errores.put(i, e.getMessage());
+                metricas.registrarRechazo(e.getRegla());
+            }
+            claves[3 * i] = solicitud.getMedico().getDni();
+            claves[3 * i + 1] = solicitud.getSala().getNumero();
+            claves[3 * i + 2] = solicitud.getPaciente().getDni();
         }
 
-        Cita cita = Cita.builder()
-                .paciente(paciente)
-                .medico(medico)
-                .sala(sala)
-                .fechaHora(fechaHora)
-                .costo(costo)
-                .build();
-        citas.add(cita);
+        List<Cita> creadas = new ArrayList<>(n);
+        long secuencia = 0;
+        int[] franjas = cerrojos.bloquear(claves);
+        try {
+            // [HU-08] RN-08.1 y RN-08.2: ventanas contra el índice y dentro del lote
+            metricas.registrarRechazos(ReglaNegocio.RN_08_1, validarVentanasLote(solicitudes,
+                    SolicitudCita::getMedico, Medico::getDni, citasPorMedico,
+                    "El médico no está disponible en la fecha y hora solicitadas.", errores));
+            metricas.registrarRechazos(ReglaNegocio.RN_08_2, validarVentanasLote(solicitudes,
+                    SolicitudCita::getSala, Sala::getNumero, citasPorSala,
+                    "La sala no está disponible en la fecha y hora solicitadas.", errores));
 
-        actualizarIndicePaciente(paciente, cita);
-        actualizarIndiceMedico(medico, cita);
-        actualizarIndiceSala(sala, cita);
+            if (!errores.isEmpty()) {
+                throw new CitaLoteException(errores);
+            }
 
-        paciente.addCita(cita);
-        medico.addCita(cita);
-        sala.addCita(cita);
+            List<AnaliticaCitas.Fila> filas = new ArrayList<>(n);
+            for (SolicitudCita solicitud : solicitudes) {
+                Cita cita = Cita.builder()
+                        .paciente(solicitud.getPaciente())
+                        .medico(solicitud.getMedico())
+                        .sala(solicitud.getSala())
+                        .fechaHora(solicitud.getFechaHora())
+                        .costo(solicitud.getCosto())
+                        .build();
+                filas.add(AnaliticaCitas.fila(cita));
+                creadas.add(cita);
+            }
+            // Todo el lote entra al diario de una vez, o nada, antes de tocar los índices
+            secuencia = registrarLoteEnDiario(creadas);
+            for (int i = 0; i < n; i++) {
+                registrar(creadas.get(i), filas.get(i));
+            }
+        } finally {
+            cerrojos.desbloquear(franjas);
+        }
+        esperarDiario(secuencia);
+        return creadas;
+    }
 
-        return cita;
+    /**
+     * Recorre las solicitudes ordenadas por recurso y fecha. Cada solicitud se
+     * compara con la agenda existente del recurso y con la última solicitud
+     * aceptada del mismo recurso dentro del lote.
+     *
+     * @return Cantidad de solicitudes rechazadas en esta pasada
+     */
+    static <R> int validarVentanasLote(List<SolicitudCita> solicitudes,
+            Function<SolicitudCita, R> recurso, Function<R, String> clave,
+            Map<String, ? extends NavigableMap<LocalDateTime, ?>> indice, String mensaje,
+            Map<Integer, String> errores) {
+        Integer[] orden = new Integer[solicitudes.size()];
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+        }
+        Arrays.sort(orden, Comparator
+                .comparing((Integer i) -> clave.apply(recurso.apply(solicitudes.get(i))))
+                .thenComparing(i -> solicitudes.get(i).getFechaHora()));
+
+        String claveActual = null;
+        NavigableMap<LocalDateTime, ?> agenda = null;
+        LocalDateTime ultimaAceptada = null;
+        int indiceUltima = -1;
+        int rechazadas = 0;
+        for (int i : orden) {
+            SolicitudCita solicitud = solicitudes.get(i);
+            R r = recurso.apply(solicitud);
+            String c = clave.apply(r);
+            if (!c.equals(claveActual)) {
+                claveActual = c;
+                agenda = indice.get(c);
+                ultimaAceptada = null;
+            }
+            if (errores.containsKey(i)) {
+                continue;
+            }
+            LocalDateTime fechaHora = solicitud.getFechaHora();
+            if (!esHorarioLibre(agenda, fechaHora)) {
+                errores.put(i, mensaje);
+                rechazadas++;
+            } else if (ultimaAceptada != null
+                    && Duration.between(ultimaAceptada, fechaHora).compareTo(VENTANA_MINIMA) < 0) {
+                errores.put(i, mensaje + " Conflicto con la solicitud #" + indiceUltima + " del lote.");
+                rechazadas++;
+            } else {
+                ultimaAceptada = fechaHora;
+                indiceUltima = i;
+            }
+        }
+        return rechazadas;
+    }
+
+    /**
+     * Agrega una cita ya validada al registro global y a los índices, que las
+     * entidades ven por su vista. No falla: la disponibilidad se verificó bajo
+     * los mismos cerrojos y la fila de la analítica ya está convertida, así
+     * que la cita registrada en el diario siempre queda también en memoria.
+     */
+    private void registrar(Cita cita, AnaliticaCitas.Fila fila) {
+        cita.vincularObservador(observador);
+        ClaveCita clave = ClaveCita.de(cita);
+        clave.estado = cita.getEstado();
+        citas.put(clave, cita);
+
+        actualizarIndicePaciente(cita.getPaciente(), clave, cita);
+        actualizarIndiceMedico(cita.getMedico(), cita);
+        actualizarIndiceSala(cita.getSala(), cita);
+        ocupacion.agregar(cita);
+        indexarEstado(cita, cita.getEstado());
+        vincularEstadisticas(cita.getSala());
+        // La clave registrada recuerda la fila para los cambios de estado y la baja
+        clave.fila = analitica.agregar(fila);
+    }
+
+    /** Las estadísticas del hospital de la sala pasan a leer sus contadores en este gestor. */
+    private void vincularEstadisticas(Sala sala) {
+        Hospital hospital = hospitalDe(sala);
+        if (hospital != null) {
+            hospital.vincularCitas(conteoDe(hospital));
+        }
     }
 
-    private void validarCita(LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
+    /** Citas por estado en las salas del hospital. */
+    private Map<EstadoCita, LongAdder> conteoDe(Hospital hospital) {
+        return conteoPorHospital.computeIfAbsent(hospital, h -> {
+            Map<EstadoCita, LongAdder> contadores = new EnumMap<>(EstadoCita.class);
+            for (EstadoCita estado : EstadoCita.values()) {
+                contadores.put(estado, new LongAdder());
+            }
+            return Collections.unmodifiableMap(contadores);
+        });
+    }
+
+    private static Hospital hospitalDe(Sala sala) {
+        Departamento departamento = sala.getDepartamento();
+        return departamento != null ? departamento.getHospital() : null;
+    }
+
+    /**
+     * [HU-07] Cambia el estado de una cita de este gestor.
+     * RN-07.3: solo se aceptan las transiciones de {@link EstadoCita#puedeCambiarA}.
+     *
+     * El cambio se hace bajo los cerrojos del médico, la sala y el paciente,
+     * así que dos cambios concurrentes sobre la misma cita no pueden partir del
+     * mismo estado. Los contadores y los índices por estado se actualizan en
+     * el mismo paso. Pasar a {@link EstadoCita#CANCELADA} equivale a
+     * {@link #cancelarCita}. La transición se valida contra el estado con que
+     * el gestor indexó la cita, aunque se le haya asignado otro con
+     * {@link Cita#setEstado}.
+     *
+     * @throws CitaException            Si la transición no está permitida
+     * @throws IllegalArgumentException Si la cita no fue programada en este gestor
+     */
+    @Override
+    public void cambiarEstado(Cita cita, EstadoCita nuevoEstado) throws CitaException {
+        long inicio = System.nanoTime();
+        long secuencia;
+        int[] franjas = bloquear(cita);
+        try {
+            verificarPertenencia(cita);
+            ClaveCita clave = claveRegistrada(cita);
+            EstadoCita actual = clave.estado;
+            if (!actual.puedeCambiarA(nuevoEstado)) {
+                throw new CitaException(ReglaNegocio.RN_07_3, "No se puede pasar una cita de "
+                        + actual.getDescripcion() + " a " + nuevoEstado.getDescripcion() + ".");
+            }
+            if (nuevoEstado == EstadoCita.CANCELADA) {
+                // La baja en el diario alcanza para recuperarla: no se registra además el estado
+                secuencia = retirar(cita);
+                cita.setEstado(nuevoEstado);
+            } else {
+                secuencia = registrarEstadoEnDiario(cita, nuevoEstado);
+                cita.setEstado(nuevoEstado);
+                desindexarEstado(cita, actual);
+                indexarEstado(cita, nuevoEstado);
+                clave.estado = nuevoEstado;
+                analitica.cambiarEstado(clave.fila, nuevoEstado);
+            }
+        } catch (CitaException e) {
+            metricas.registrarRechazo(e.getRegla());
+            throw e;
+        } finally {
+            cerrojos.desbloquear(franjas);
+            metricas.registrarLatencia(OperacionCita.CAMBIAR_ESTADO, inicio);
+        }
+        esperarDiario(secuencia);
+    }
+
+    /**
+     * [HU-07] Cancela una cita (RN-07.3: solo si está programada o en curso)
+     * y libera su horario: la cita queda en estado
+     * {@link EstadoCita#CANCELADA} y sale de todos los índices, por lo que
+     * el médico y la sala pueden volver a reservarse en esa ventana.
+     *
+     * @throws CitaException            Si la cita ya está en un estado final
+     * @throws IllegalArgumentException Si la cita no fue programada en este gestor
+     */
+    @Override
+    public void cancelarCita(Cita cita) throws CitaException {
+        cambiarEstado(cita, EstadoCita.CANCELADA);
+    }
+
+    /**
+     * [HU-07] Elimina una cita sin importar su estado, por ejemplo una cargada
+     * por error. Sale de todos los índices en O(log n) y libera su horario.
+     *
+     * @throws IllegalArgumentException Si la cita no fue programada en este gestor
+     */
+    @Override
+    public void eliminarCita(Cita cita) throws CitaException {
+        long inicio = System.nanoTime();
+        long secuencia;
+        int[] franjas = bloquear(cita);
+        try {
+            verificarPertenencia(cita);
+            secuencia = retirar(cita);
+        } finally {
+            cerrojos.desbloquear(franjas);
+            metricas.registrarLatencia(OperacionCita.ELIMINAR_CITA, inicio);
+        }
+        esperarDiario(secuencia);
+    }
+
+    /** Cerrojos del médico, la sala y el paciente de la cita, como al programarla. */
+    private int[] bloquear(Cita cita) {
+        return cerrojos.bloquear(cita.getMedico().getDni(), cita.getSala().getNumero(),
+                cita.getPaciente().getDni());
+    }
+
+    private void verificarPertenencia(Cita cita) {
+        if (citas.get(ClaveCita.de(cita)) != cita) {
+            throw new IllegalArgumentException("La cita no pertenece a este gestor: " + cita);
+        }
+    }
+
+    /**
+     * Quita una cita de los índices y de sus entidades. Cada agenda está
+     * ordenada por fecha, así que cada baja es O(log n); las agendas vacías se
+     * conservan para no competir con una programación concurrente.
+     *
+     * @return Secuencia del registro de baja en el diario, o 0 sin diario
+     */
+    private long retirar(Cita cita) throws CitaException {
+        long secuencia = 0;
+        DiarioCitas actual = diario;
+        if (actual != null) {
+            try {
+                secuencia = actual.registrarBaja(cita);
+            } catch (IOException e) {
+                throw new CitaException("No se pudo registrar la baja en el diario.", e);
+            }
+        }
+
+        ClaveCita clave = claveRegistrada(cita);
+        analitica.retirar(clave.fila);
+        citas.remove(clave, cita);
+        quitarDe(citasPorPaciente, cita.getPaciente().getDni(), clave, cita);
+        quitarDe(citasPorMedico, cita.getMedico().getDni(), cita.getFechaHora(), cita);
+        quitarDe(citasPorSala, cita.getSala().getNumero(), cita.getFechaHora(), cita);
+        ocupacion.retirar(cita);
+        desindexarEstado(cita, clave.estado);
+        return secuencia;
+    }
+
+    /**
+     * Clave con que se registró la cita, que guarda su fila en la analítica y
+     * su estado indexado. Se invoca con la pertenencia ya verificada.
+     */
+    private ClaveCita claveRegistrada(Cita cita) {
+        return citas.ceilingKey(ClaveCita.de(cita));
+    }
+
+    private static <K> void quitarDe(Map<String, NavigableMap<K, Cita>> indice, String recurso, K clave, Cita cita) {
+        NavigableMap<K, Cita> agenda = indice.get(recurso);
+        if (agenda != null) {
+            agenda.remove(clave, cita);
+        }
+    }
+
+    static void validarCita(LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
         if (fechaHora.isBefore(LocalDateTime.now())) {
-            throw new CitaException("No se puede programar una cita en el pasado.");
+            throw new CitaException(ReglaNegocio.RN_07_1, "No se puede programar una cita en el pasado.");
         }
 
         if (costo.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new CitaException("El costo debe ser mayor que cero.");
+            throw new CitaException(ReglaNegocio.RN_07_2, "El costo debe ser mayor que cero.");
+        }
+
+        if (costo.compareTo(AnaliticaCitas.COSTO_MAXIMO) > 0) {
+            throw new CitaException(ReglaNegocio.RN_07_2,
+                    "El costo no puede superar " + AnaliticaCitas.COSTO_MAXIMO + ".");
         }
     }
 
     private boolean esMedicoDisponible(Medico medico, LocalDateTime fechaHora) {
-        List<Cita> citasExistentes = citasPorMedico.get(medico);
-        if (citasExistentes != null) {
-            for (Cita citaExistente : citasExistentes) {
-                if (Math.abs(citaExistente.getFechaHora().compareTo(fechaHora)) < 2) { // 2 horas de diferencia
-                    return false;
-                }
-            }
-        }
-        return true;
+        return esHorarioLibre(citasPorMedico.get(medico.getDni()), fechaHora);
     }
 
     private boolean esSalaDisponible(Sala sala, LocalDateTime fechaHora) {
-        List<Cita> citasExistentes = citasPorSala.get(sala);
-        if (citasExistentes != null) {
-            for (Cita citaExistente : citasExistentes) {
-                if (Math.abs(citaExistente.getFechaHora().compareTo(fechaHora)) < 2) { // 2 horas de diferencia
-                    return false;
+        return esHorarioLibre(citasPorSala.get(sala.getNumero()), fechaHora);
+    }
+
+    /**
+     * [HU-08] Verifica la ventana de 2 horas contra una agenda ordenada.
+     * Basta con mirar la cita inmediatamente anterior y la inmediatamente
+     * posterior a {@code fechaHora}.
+     */
+    static boolean esHorarioLibre(NavigableMap<LocalDateTime, ?> agenda, LocalDateTime fechaHora) {
+        if (agenda == null || agenda.isEmpty()) {
+            return true;
+        }
+        LocalDateTime anterior = agenda.floorKey(fechaHora);
+        if (anterior != null && Duration.between(anterior, fechaHora).compareTo(VENTANA_MINIMA) < 0) {
+            return false;
+        }
+        LocalDateTime siguiente = agenda.ceilingKey(fechaHora);
+        return siguiente == null || Duration.between(fechaHora, siguiente).compareTo(VENTANA_MINIMA) >= 0;
+    }
+
+    private void actualizarIndicePaciente(Paciente paciente, ClaveCita clave, Cita cita) {
+        citasPorPaciente.computeIfAbsent(paciente.getDni(),
+                dni -> vincular(paciente::vincularCitas, new ConcurrentSkipListMap<>())).put(clave, cita);
+    }
+
+    private void actualizarIndiceMedico(Medico medico, Cita cita) {
+        citasPorMedico.computeIfAbsent(medico.getDni(),
+                dni -> vincular(medico::vincularCitas, new ConcurrentSkipListMap<>())).put(cita.getFechaHora(), cita);
+    }
+
+    private void actualizarIndiceSala(Sala sala, Cita cita) {
+        citasPorSala.computeIfAbsent(sala.getNumero(),
+                numero -> vincular(sala::vincularCitas, new ConcurrentSkipListMap<>())).put(cita.getFechaHora(), cita);
+    }
+
+    /**
+     * [HU-11] Reconstruye los índices a partir de las citas cargadas. Las
+     * agendas se arman primero en mapas no concurrentes y se copian a
+     * {@link ConcurrentSkipListMap} en tiempo lineal, evitando una inserción
+     * concurrente por cita.
+     */
+    private void indexarEnBloque(List<Cita> cargadas) throws CitaException {
+        TreeMap<ClaveCita, Cita> todas = new TreeMap<>();
+        Map<String, TreeMap<ClaveCita, Cita>> agendasPaciente = new HashMap<>();
+        Map<String, TreeMap<LocalDateTime, Cita>> agendasMedico = new HashMap<>();
+        Map<String, TreeMap<LocalDateTime, Cita>> agendasSala = new HashMap<>();
+        Map<EstadoCita, Map<String, TreeMap<LocalDateTime, Cita>>> medicosEstado = new EnumMap<>(EstadoCita.class);
+        Map<EstadoCita, Map<String, TreeMap<LocalDateTime, Cita>>> salasEstado = new EnumMap<>(EstadoCita.class);
+        // Por hospital de la sala (null si no tiene) y por ordinal del estado
+        Map<Hospital, long[]> conteo = new HashMap<>();
+        for (Cita cita : cargadas) {
+            if (cita.getEstado() == EstadoCita.CANCELADA) {
+                // Cancelada en un archivo anterior a las bajas: ya no ocupa su horario
+                continue;
+            }
+            ClaveCita clave = ClaveCita.de(cita);
+            clave.estado = cita.getEstado();
+            todas.put(clave, cita);
+            agendasPaciente.computeIfAbsent(cita.getPaciente().getDni(), dni -> new TreeMap<>()).put(clave, cita);
+            if (agendasMedico.computeIfAbsent(cita.getMedico().getDni(), dni -> new TreeMap<>())
+                    .putIfAbsent(cita.getFechaHora(), cita) != null) {
+                throw new CitaException("El médico " + cita.getMedico().getDni()
+                        + " ya tiene una cita en " + cita.getFechaHora());
+            }
+            if (agendasSala.computeIfAbsent(cita.getSala().getNumero(), numero -> new TreeMap<>())
+                    .putIfAbsent(cita.getFechaHora(), cita) != null) {
+                throw new CitaException("La sala " + cita.getSala().getNumero()
+                        + " ya tiene una cita en " + cita.getFechaHora());
+            }
+            EstadoCita estado = cita.getEstado();
+            medicosEstado.computeIfAbsent(estado, e -> new HashMap<>())
+                    .computeIfAbsent(cita.getMedico().getDni(), dni -> new TreeMap<>()).put(cita.getFechaHora(), cita);
+            salasEstado.computeIfAbsent(estado, e -> new HashMap<>())
+                    .computeIfAbsent(cita.getSala().getNumero(), numero -> new TreeMap<>()).put(cita.getFechaHora(), cita);
+            conteo.computeIfAbsent(hospitalDe(cita.getSala()), h -> new long[EstadoCita.values().length])
+                    [estado.ordinal()]++;
+        }
+        // Se convierte antes de publicar: un costo fuera de rango también deja el gestor vacío
+        List<AnaliticaCitas.Fila> filas = new ArrayList<>(todas.size());
+        for (Cita cita : todas.values()) {
+            filas.add(AnaliticaCitas.fila(cita));
+        }
+        // Se publica recién sin duplicados: un archivo rechazado deja el gestor vacío
+        conteo.forEach((hospital, cantidades) -> {
+            for (EstadoCita estado : EstadoCita.values()) {
+                conteoPorEstado.get(estado).add(cantidades[estado.ordinal()]);
+                if (hospital != null) {
+                    conteoDe(hospital).get(estado).add(cantidades[estado.ordinal()]);
                 }
             }
+        });
+        todas.values().forEach(cita -> cita.vincularObservador(observador));
+        // En orden cronológico, así las consultas por rango de fechas recorren filas contiguas
+        Iterator<AnaliticaCitas.Fila> fila = filas.iterator();
+        todas.keySet().forEach(clave -> clave.fila = analitica.agregar(fila.next()));
+        citas = new ConcurrentSkipListMap<>(todas);
+        agendasSala.values().forEach(agenda -> vincularEstadisticas(agenda.firstEntry().getValue().getSala()));
+        // Cada agenda tiene al menos una cita, que indica la entidad a vincular
+        agendasPaciente.forEach((dni, agenda) -> citasPorPaciente.put(dni,
+                vincular(agenda.firstEntry().getValue().getPaciente()::vincularCitas,
+                        new ConcurrentSkipListMap<>(agenda))));
+        agendasMedico.forEach((dni, agenda) -> citasPorMedico.put(dni,
+                vincular(agenda.firstEntry().getValue().getMedico()::vincularCitas,
+                        new ConcurrentSkipListMap<>(agenda))));
+        agendasSala.values().forEach(agenda -> agenda.values().forEach(ocupacion::agregar));
+        agendasSala.forEach((numero, agenda) -> citasPorSala.put(numero,
+                vincular(agenda.firstEntry().getValue().getSala()::vincularCitas,
+                        new ConcurrentSkipListMap<>(agenda))));
+        medicosEstado.forEach((estado, agendas) -> agendas.forEach((dni, agenda) ->
+                medicosPorEstado.get(estado).put(dni, new ConcurrentSkipListMap<>(agenda))));
+        salasEstado.forEach((estado, agendas) -> agendas.forEach((numero, agenda) ->
+                salasPorEstado.get(estado).put(numero, new ConcurrentSkipListMap<>(agenda))));
+    }
+
+    /**
+     * Cada entidad ve sus citas como vista sobre su agenda en este gestor, así
+     * que cada cita se guarda una sola vez por índice y {@code getCitas()} no
+     * copia.
+     */
+    private static <K> NavigableMap<K, Cita> vincular(Consumer<Collection<Cita>> entidad,
+            NavigableMap<K, Cita> agenda) {
+        entidad.accept(agenda.values());
+        return agenda;
+    }
+
+    /** Vacía todos los índices; se invoca con todos los cerrojos tomados. */
+    private void limpiarIndices() {
+        for (Cita cita : citas.values()) {
+            cita.getPaciente().vincularCitas(List.of());
+            cita.getMedico().vincularCitas(List.of());
+            cita.getSala().vincularCitas(List.of());
+        }
+        citas.clear();
+        analitica.vaciar();
+        ocupacion.vaciar();
+        citasPorPaciente.clear();
+        citasPorMedico.clear();
+        citasPorSala.clear();
+        // Los hospitales siguen viendo sus contadores, ahora en cero
+        conteoPorHospital.values().forEach(contadores -> contadores.values().forEach(LongAdder::reset));
+        for (EstadoCita estado : EstadoCita.values()) {
+            conteoPorEstado.get(estado).reset();
+            medicosPorEstado.get(estado).clear();
+            salasPorEstado.get(estado).clear();
         }
-        return true;
     }
 
-    private void actualizarIndicePaciente(Paciente paciente, Cita cita) {
-        List<Cita> citasPaciente = citasPorPaciente.get(paciente);
-        if (citasPaciente == null) {
-            citasPaciente = new ArrayList<>();
-            citasPorPaciente.put(paciente, citasPaciente);
+    private void indexarEstado(Cita cita, EstadoCita estado) {
+        medicosPorEstado.get(estado).computeIfAbsent(cita.getMedico().getDni(), dni -> new ConcurrentSkipListMap<>())
+                .put(cita.getFechaHora(), cita);
+        salasPorEstado.get(estado).computeIfAbsent(cita.getSala().getNumero(), numero -> new ConcurrentSkipListMap<>())
+                .put(cita.getFechaHora(), cita);
+        contarEstado(cita, estado, 1);
+    }
+
+    private void desindexarEstado(Cita cita, EstadoCita estado) {
+        NavigableMap<LocalDateTime, Cita> agendaMedico = medicosPorEstado.get(estado).get(cita.getMedico().getDni());
+        if (agendaMedico != null) {
+            agendaMedico.remove(cita.getFechaHora(), cita);
+        }
+        NavigableMap<LocalDateTime, Cita> agendaSala = salasPorEstado.get(estado).get(cita.getSala().getNumero());
+        if (agendaSala != null) {
+            agendaSala.remove(cita.getFechaHora(), cita);
         }
-        citasPaciente.add(cita);
+        contarEstado(cita, estado, -1);
     }
 
-    private void actualizarIndiceMedico(Medico medico, Cita cita) {
-        List<Cita> citasMedico = citasPorMedico.get(medico);
-        if (citasMedico == null) {
-            citasMedico = new ArrayList<>();
-            citasPorMedico.put(medico, citasMedico);
+    private void contarEstado(Cita cita, EstadoCita estado, long delta) {
+        conteoPorEstado.get(estado).add(delta);
+        Hospital hospital = hospitalDe(cita.getSala());
+        if (hospital != null) {
+            conteoDe(hospital).get(estado).add(delta);
         }
-        citasMedico.add(cita);
     }
 
-    private void actualizarIndiceSala(Sala sala, Cita cita) {
-        List<Cita> citasSala = citasPorSala.get(sala);
-        if (citasSala == null) {
-            citasSala = new ArrayList<>();
-            citasPorSala.put(sala, citasSala);
+    /**
+     * [HU-10] Citas del paciente en orden cronológico, como vista de solo
+     * lectura sin copia: refleja las altas y bajas posteriores.
+     */
+    @Override
+    public Collection<Cita> getCitasPorPaciente(Paciente paciente) {
+        long inicio = System.nanoTime();
+        try {
+            return vista(citasPorPaciente.get(paciente.getDni()));
+        } finally {
+            metricas.registrarLatencia(OperacionCita.CONSULTA_POR_PACIENTE, inicio);
         }
-        citasSala.add(cita);
     }
 
+    /**
+     * [HU-10] Agenda del médico en orden cronológico, como vista de solo lectura
+     * sin copia: refleja las altas y bajas posteriores.
+     */
     @Override
-    public List<Cita> getCitasPorPaciente(Paciente paciente) {
-        List<Cita> citasPaciente = citasPorPaciente.get(paciente);
-        if (citasPaciente != null) {
-            return Collections.unmodifiableList(citasPaciente);
-        } else {
-            return Collections.emptyList();
+    public Collection<Cita> getCitasPorMedico(Medico medico) {
+        long inicio = System.nanoTime();
+        try {
+            return vista(citasPorMedico.get(medico.getDni()));
+        } finally {
+            metricas.registrarLatencia(OperacionCita.CONSULTA_POR_MEDICO, inicio);
         }
     }
 
+    /**
+     * [HU-10] Agenda de la sala en orden cronológico, como vista de solo lectura
+     * sin copia: refleja las altas y bajas posteriores.
+     */
     @Override
-    public List<Cita> getCitasPorMedico(Medico medico) {
-        List<Cita> citasMedico = citasPorMedico.get(medico);
-        if (citasMedico != null) {
-            return Collections.unmodifiableList(citasMedico);
-        } else {
-            return Collections.emptyList();
+    public Collection<Cita> getCitasPorSala(Sala sala) {
+        long inicio = System.nanoTime();
+        try {
+            return vista(citasPorSala.get(sala.getNumero()));
+        } finally {
+            metricas.registrarLatencia(OperacionCita.CONSULTA_POR_SALA, inicio);
         }
     }
 
+    /**
+     * [HU-10] Citas del paciente con {@code desde <= fechaHora < hasta}, en
+     * orden cronológico.
+     *
+     * Devuelve una vista de solo lectura sobre el índice, no una copia: se
+     * crea en O(log n) y recorrerla cuesta lo que las citas del rango. La vista
+     * refleja las citas programadas después de obtenerla y su iteración nunca
+     * lanza {@link java.util.ConcurrentModificationException}.
+     *
+     * @throws IllegalArgumentException Si {@code desde} es posterior a {@code hasta}
+     */
+    @Override
+    public Collection<Cita> getCitasPorPaciente(Paciente paciente, LocalDateTime desde, LocalDateTime hasta) {
+        return rango(citasPorPaciente.get(paciente.getDni()), ClaveCita.inicio(desde), ClaveCita.inicio(hasta));
+    }
+
+    /**
+     * [HU-10] Agenda del médico con {@code desde <= fechaHora < hasta}, como
+     * vista de solo lectura sin copia.
+     *
+     * @see #getCitasPorPaciente(Paciente, LocalDateTime, LocalDateTime)
+     */
+    @Override
+    public Collection<Cita> getCitasPorMedico(Medico medico, LocalDateTime desde, LocalDateTime hasta) {
+        return rango(citasPorMedico.get(medico.getDni()), desde, hasta);
+    }
+
+    /**
+     * [HU-10] Agenda de la sala con {@code desde <= fechaHora < hasta}, como
+     * vista de solo lectura sin copia.
+     *
+     * @see #getCitasPorPaciente(Paciente, LocalDateTime, LocalDateTime)
+     */
+    @Override
+    public Collection<Cita> getCitasPorSala(Sala sala, LocalDateTime desde, LocalDateTime hasta) {
+        return rango(citasPorSala.get(sala.getNumero()), desde, hasta);
+    }
+
+    /**
+     * [HU-10] Todas las citas del hospital con {@code desde <= fechaHora < hasta},
+     * ordenadas por fecha y DNI del médico, como vista de solo lectura sin
+     * copia.
+     *
+     * @see #getCitasPorPaciente(Paciente, LocalDateTime, LocalDateTime)
+     */
     @Override
-    public List<Cita> getCitasPorSala(Sala sala) {
-        List<Cita> citasSala = citasPorSala.get(sala);
-        if (citasSala != null) {
-            return Collections.unmodifiableList(citasSala);
-        } else {
+    public Collection<Cita> getCitasEntre(LocalDateTime desde, LocalDateTime hasta) {
+        return rango(citas, ClaveCita.inicio(desde), ClaveCita.inicio(hasta));
+    }
+
+    /** [HU-10] Cantidad de citas en el estado dado, en O(1). */
+    public long contarCitas(EstadoCita estado) {
+        return conteoPorEstado.get(estado).sum();
+    }
+
+    /** [HU-10] Cantidad de citas de cada estado. */
+    public Map<EstadoCita, Long> getConteoPorEstado() {
+        Map<EstadoCita, Long> conteo = new EnumMap<>(EstadoCita.class);
+        conteoPorEstado.forEach((estado, contador) -> conteo.put(estado, contador.sum()));
+        return conteo;
+    }
+
+    /**
+     * [HU-10] Citas del médico en el estado dado, en orden cronológico, como
+     * vista de solo lectura: por ejemplo, la cita en curso de un médico.
+     */
+    public Collection<Cita> getCitasPorEstado(Medico medico, EstadoCita estado) {
+        return vista(medicosPorEstado.get(estado).get(medico.getDni()));
+    }
+
+    /**
+     * [HU-10] Citas de la sala en el estado dado, en orden cronológico, como
+     * vista de solo lectura: por ejemplo, qué ocupa la sala en este momento.
+     */
+    public Collection<Cita> getCitasPorEstado(Sala sala, EstadoCita estado) {
+        return vista(salasPorEstado.get(estado).get(sala.getNumero()));
+    }
+
+    private static Collection<Cita> vista(NavigableMap<?, Cita> indice) {
+        return indice == null ? Collections.emptyList() : Collections.unmodifiableCollection(indice.values());
+    }
+
+    private static <K> Collection<Cita> rango(NavigableMap<K, Cita> indice, K desde, K hasta) {
+        if (indice == null) {
             return Collections.emptyList();
         }
+        return Collections.unmodifiableCollection(indice.subMap(desde, true, hasta, false).values());
+    }
+
+    /**
+     * [HU-08] Primeros horarios libres en un departamento, para ofrecer
+     * turnos sin probar {@link #programarCita} hasta que no falle.
+     *
+     * Se consideran los médicos del departamento con su misma especialidad y
+     * todas sus salas (RN-09.1); cada resultado respeta la ventana de 2 horas
+     * del médico y de la sala (RN-08.1/RN-08.2). La búsqueda recorre los
+     * huecos entre citas de las agendas ordenadas, así que su costo depende de
+     * las citas atravesadas y no de la longitud del horizonte.
+     *
+     * El resultado es una sugerencia: no reserva nada y una programación
+     * concurrente puede ocupar el horario antes de confirmarlo.
+     *
+     * @param desde     Horario a partir del cual buscar; nunca antes del presente (RN-07.1)
+     * @param preferido Médico que se ofrece primero ante igual horario, o {@code null}
+     * @param cantidad  Cantidad máxima de horarios a devolver
+     * @return Horarios ordenados por fecha; los de un mismo médico o una
+     *         misma sala quedan separados al menos 2 horas, así que pueden
+     *         programarse todos
+     * @throws CitaException Si el médico preferido no es de la especialidad (RN-09.1)
+     */
+    public List<HorarioDisponible> buscarHorariosDisponibles(Departamento departamento, LocalDateTime desde,
+            Medico preferido, int cantidad) throws CitaException {
+        return buscarHorarios(departamento.getEspecialidad(), List.of(departamento), desde, preferido, cantidad);
+    }
+
+    /**
+     * [HU-08] Igual que {@link #buscarHorariosDisponibles(Departamento, LocalDateTime, Medico, int)}
+     * sobre todos los departamentos del hospital con la especialidad dada.
+     */
+    public List<HorarioDisponible> buscarHorariosDisponibles(Hospital hospital, EspecialidadMedica especialidad,
+            LocalDateTime desde, Medico preferido, int cantidad) throws CitaException {
+        List<Departamento> departamentos = new ArrayList<>();
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            if (departamento.getEspecialidad() == especialidad) {
+                departamentos.add(departamento);
+            }
+        }
+        return buscarHorarios(especialidad, departamentos, desde, preferido, cantidad);
+    }
+
+    private List<HorarioDisponible> buscarHorarios(EspecialidadMedica especialidad,
+            List<Departamento> departamentos, LocalDateTime desde, Medico preferido, int cantidad)
+            throws CitaException {
+        if (cantidad < 0) {
+            throw new IllegalArgumentException("La cantidad de horarios no puede ser negativa.");
+        }
+        if (preferido != null && preferido.getEspecialidad() != especialidad) {
+            throw new CitaException(ReglaNegocio.RN_09_1,
+                    "La especialidad del médico no coincide con el departamento de la sala.");
+        }
+        long inicio = System.nanoTime();
+        try {
+            Map<String, Medico> medicos = new LinkedHashMap<>();
+            Map<String, Sala> salas = new LinkedHashMap<>();
+            if (preferido != null) {
+                medicos.put(preferido.getDni(), preferido);
+            }
+            reunirRecursos(especialidad, departamentos, medicos, salas);
+
+            List<Medico> listaMedicos = new ArrayList<>(medicos.values());
+            List<NavigableMap<LocalDateTime, Cita>> agendasMedico = new ArrayList<>(listaMedicos.size());
+            for (Medico medico : listaMedicos) {
+                agendasMedico.add(citasPorMedico.get(medico.getDni()));
+            }
+            List<Sala> listaSalas = new ArrayList<>(salas.values());
+            List<NavigableMap<LocalDateTime, Cita>> agendasSala = new ArrayList<>(listaSalas.size());
+            for (Sala sala : listaSalas) {
+                agendasSala.add(citasPorSala.get(sala.getNumero()));
+            }
+
+            LocalDateTime ahora = LocalDateTime.now();
+            return new BuscadorHorarios(listaMedicos, agendasMedico, listaSalas, agendasSala, preferido,
+                    desde.isBefore(ahora) ? ahora : desde).buscar(cantidad);
+        } finally {
+            metricas.registrarLatencia(OperacionCita.BUSCAR_HORARIOS, inicio);
+        }
+    }
+
+    /**
+     * [HU-09] RN-09.1: médicos de la especialidad y salas de los departamentos
+     * dados, indexados por DNI y número para que el médico preferido no se
+     * repita.
+     */
+    static void reunirRecursos(EspecialidadMedica especialidad, List<Departamento> departamentos,
+            Map<String, Medico> medicos, Map<String, Sala> salas) {
+        for (Departamento departamento : departamentos) {
+            for (Medico medico : departamento.getMedicos()) {
+                if (medico.getEspecialidad() == especialidad) {
+                    medicos.putIfAbsent(medico.getDni(), medico);
+                }
+            }
+            for (Sala sala : departamento.getSalas()) {
+                salas.putIfAbsent(sala.getNumero(), sala);
+            }
+        }
+    }
+
+    /** Agenda viva del médico, o {@code null} si no tiene citas. */
+    NavigableMap<LocalDateTime, Cita> getAgenda(Medico medico) {
+        return citasPorMedico.get(medico.getDni());
+    }
+
+    /** Agenda viva de la sala, o {@code null} si no tiene citas. */
+    NavigableMap<LocalDateTime, Cita> getAgenda(Sala sala) {
+        return citasPorSala.get(sala.getNumero());
+    }
+
+    /**
+     * Métricas acumuladas desde la creación del gestor: latencia de cada
+     * operación, rechazos por regla de negocio y tamaño de los índices.
+     *
+     * El total de citas se cuenta recorriendo el registro, por lo que su costo
+     * es lineal; no debe consultarse en el camino crítico.
+     */
+    public InstantaneaMetricas getMetricas() {
+        return metricas.instantanea(citas.size(), citasPorPaciente.size(), citasPorMedico.size(),
+                citasPorSala.size());
+    }
+
+    /**
+     * [HU-10] Réplica columnar de las citas de este gestor para reportes de
+     * ingresos, actualizada con cada alta, cambio de estado y baja.
+     */
+    public AnaliticaCitas getAnalitica() {
+        return analitica;
+    }
+
+    /**
+     * [HU-10] Ocupación de las salas con citas de este gestor, actualizada
+     * con cada alta y baja.
+     */
+    public OcupacionSalas getOcupacion() {
+        return ocupacion;
     }
 
     @Override
     public void guardarCitas(String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            for (Cita cita : citas) {
-                writer.println(cita.toCsvString());
+        guardarCitas(filename, false);
+    }
+
+    /**
+     * [HU-11] Guarda las citas en formato CSV (RN-11.1), opcionalmente
+     * comprimido con gzip. {@link #cargarCitas} detecta ambos formatos.
+     *
+     * @param filename Archivo destino
+     * @param gzip     Si la salida debe comprimirse con gzip
+     */
+    @Override
+    public void guardarCitas(String filename, boolean gzip) throws IOException {
+        long inicio = System.nanoTime();
+        try (EscritorCsvCitas escritor = new EscritorCsvCitas(Path.of(filename), gzip)) {
+            for (Cita cita : citas.values()) {
+                escritor.escribir(cita);
             }
+        } finally {
+            metricas.registrarLatencia(OperacionCita.GUARDAR_CITAS, inicio);
         }
     }
 
@@ -210,25 +1039,220 @@ public class CitaManager implements CitaService {
     public void cargarCitas(String filename, Map<String, Paciente> pacientes,
             Map<String, Medico> medicos, Map<String, Sala> salas)
             throws IOException, ClassNotFoundException, CitaException {
-        citas.clear();
-        citasPorPaciente.clear();
-        citasPorMedico.clear();
-        citasPorSala.clear();
+        long inicio = System.nanoTime();
+        cerrojos.bloquearTodas();
+        try {
+            limpiarIndices();
+
+            // [HU-11] Lectura paralela sobre el archivo mapeado en memoria
+            List<Cita> cargadas = new CargadorCsvCitas(pacientes, medicos, salas).cargar(Path.of(filename));
+            indexarEnBloque(cargadas);
+            if (diario != null) {
+                // El diario debe partir del nuevo estado completo
+                compactarDiario();
+            }
+        } finally {
+            cerrojos.desbloquearTodas();
+            metricas.registrarLatencia(OperacionCita.CARGAR_CITAS, inicio);
+        }
+    }
+
+    /**
+     * [HU-11] Guarda las citas en la instantánea binaria compacta
+     * ({@link InstantaneaBinariaCitas}): claves por diccionario, fechas como
+     * segundos, costos como enteros escalados y observaciones comprimidas.
+     *
+     * @param filename Archivo destino
+     */
+    @Override
+    public void guardarInstantanea(String filename) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            InstantaneaBinariaCitas.escribir(Path.of(filename), new ArrayList<>(citas.values()));
+        } finally {
+            metricas.registrarLatencia(OperacionCita.GUARDAR_INSTANTANEA, inicio);
+        }
+    }
+
+    /**
+     * [HU-11] Reemplaza las citas por las de una instantánea binaria escrita
+     * con {@link #guardarInstantanea}. El archivo se decodifica antes de
+     * bloquear, por lo que un error de lectura conserva las citas actuales.
+     *
+     * @throws CitaException Si el archivo no es una instantánea válida o
+     *                       referencia un paciente, médico o sala inexistente
+     */
+    @Override
+    public void cargarInstantanea(String filename, Map<String, Paciente> pacientes,
+            Map<String, Medico> medicos, Map<String, Sala> salas) throws IOException, CitaException {
+        long inicio = System.nanoTime();
+        try {
+            List<Cita> cargadas = InstantaneaBinariaCitas.leer(Path.of(filename), pacientes, medicos, salas);
+            cerrojos.bloquearTodas();
+            try {
+                limpiarIndices();
+                indexarEnBloque(cargadas);
+                if (diario != null) {
+                    compactarDiario();
+                }
+            } finally {
+                cerrojos.desbloquearTodas();
+            }
+        } finally {
+            metricas.registrarLatencia(OperacionCita.CARGAR_INSTANTANEA, inicio);
+        }
+    }
+
+    /**
+     * [HU-11] Recupera el estado desde el diario y comienza a registrar en él
+     * cada alta y cada cambio de estado u observaciones.
+     *
+     * Reemplaza las citas actuales por las de la última instantánea más los
+     * registros del diario. A partir de aquí la durabilidad no requiere
+     * {@link #guardarCitas}: cada operación agrega un registro de tamaño
+     * constante y el diario se compacta al superar el umbral configurado.
+     *
+     * @param configuracion Directorio, política de fsync y umbral de compactación
+     * @throws IllegalStateException Si ya hay un diario abierto
+     */
+    public void abrirDiario(ConfiguracionDiario configuracion, Map<String, Paciente> pacientes,
+            Map<String, Medico> medicos, Map<String, Sala> salas) throws IOException, CitaException {
+        cerrojos.bloquearTodas();
+        try {
+            if (diario != null) {
+                throw new IllegalStateException("El diario de citas ya está abierto.");
+            }
+            limpiarIndices();
+
+            List<Cita> recuperadas = DiarioCitas.recuperar(configuracion,
+                    new CargadorCsvCitas(pacientes, medicos, salas));
+            indexarEnBloque(recuperadas);
+            diario = DiarioCitas.abrir(configuracion, this::compactarEnSegundoPlano);
+        } finally {
+            cerrojos.desbloquearTodas();
+        }
+    }
+
+    /**
+     * [HU-11] Escribe una instantánea con todas las citas y vacía el diario.
+     * Se ejecuta automáticamente al superar el umbral de compactación.
+     */
+    public void compactarDiario() throws IOException {
+        cerrojos.bloquearTodas();
+        try {
+            DiarioCitas actual = diario;
+            if (actual != null) {
+                actual.compactar(escritor -> {
+                    for (Cita cita : citas.values()) {
+                        escritor.escribir(cita);
+                    }
+                });
+            }
+        } finally {
+            cerrojos.desbloquearTodas();
+        }
+    }
+
+    /** [HU-11] Confirma en disco los registros pendientes y cierra el diario. */
+    public void cerrarDiario() throws IOException {
+        cerrojos.bloquearTodas();
+        try {
+            if (diario != null) {
+                diario.close();
+                diario = null;
+            }
+        } finally {
+            cerrojos.desbloquearTodas();
+        }
+    }
+
+    private void compactarEnSegundoPlano() {
+        try {
+            compactarDiario();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long registrarEnDiario(Cita cita) throws CitaException {
+        DiarioCitas actual = diario;
+        if (actual == null) {
+            return 0;
+        }
+        try {
+            return actual.registrarAlta(cita);
+        } catch (IOException e) {
+            throw new CitaException("No se pudo registrar la cita en el diario.", e);
+        }
+    }
+
+    private long registrarLoteEnDiario(List<Cita> lote) throws CitaException {
+        DiarioCitas actual = diario;
+        if (actual == null || lote.isEmpty()) {
+            return 0;
+        }
+        try {
+            return actual.registrarAltas(lote);
+        } catch (IOException e) {
+            throw new CitaException("No se pudo registrar el lote en el diario; no se programó ninguna cita.", e);
+        }
+    }
+
+    private long registrarEstadoEnDiario(Cita cita, EstadoCita estado) throws CitaException {
+        DiarioCitas actual = diario;
+        if (actual == null) {
+            return 0;
+        }
+        try {
+            return actual.registrarEstado(cita, estado);
+        } catch (IOException e) {
+            throw new CitaException("No se pudo registrar el cambio de estado en el diario.", e);
+        }
+    }
+
+    private void esperarDiario(long secuencia) throws CitaException {
+        DiarioCitas actual = diario;
+        if (actual == null || secuencia == 0) {
+            return;
+        }
+        try {
+            actual.esperarDurable(secuencia);
+        } catch (IOException e) {
+            throw new CitaException("La cita fue registrada pero no pudo confirmarse en disco.", e);
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                try {
-                    Cita cita = Cita.fromCsvString(line, pacientes, medicos, salas);
-                    citas.add(cita);
-                    actualizarIndicePaciente(cita.getPaciente(), cita);
-                    actualizarIndiceMedico(cita.getMedico(), cita);
-                    actualizarIndiceSala(cita.getSala(), cita);
-                } catch (CitaException e) {
-                    System.err.println("Error al cargar cita desde CSV: " + line + " - " + e.getMessage());
-                    throw e;
+    /**
+     * Recibe los cambios hechos con {@link Cita#setObservaciones} sobre citas
+     * de este gestor. Se registran en el diario bajo los cerrojos de la cita y
+     * esperan el disco después de liberarlos, como {@link #programarCita}.
+     */
+    private final class ObservadorInterno implements ObservadorCita {
+
+        @Override
+        public void observacionesCambiadas(Cita cita, String anteriores) {
+            DiarioCitas actual = diario;
+            if (actual == null) {
+                return;
+            }
+            long secuencia;
+            int[] franjas = bloquear(cita);
+            try {
+                if (citas.get(ClaveCita.de(cita)) != cita) {
+                    // Cancelada o eliminada: el diario ya no la conoce
+                    return;
                 }
+                secuencia = actual.registrarObservaciones(cita);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudieron registrar las observaciones en el diario.", e);
+            } finally {
+                cerrojos.desbloquear(franjas);
+            }
+            try {
+                actual.esperarDurable(secuencia);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudieron registrar las observaciones en el diario.", e);
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,611 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.EstadoCita;
+import Entidades.Hospital;
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.Sala;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.Persistence;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.Interceptor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * [HU-07] Programación de Citas
+ * [HU-08] Validación de Disponibilidad
+ * [HU-09] Validación de Especialidades
+ * [HU-10] Consulta de Citas
+ * [HU-11] Persistencia de Datos
+ *
+ * Implementación de {@link CitaService} respaldada por JPA/Hibernate sobre la
+ * base H2 en archivo (unidad de persistencia {@code HospitalPU}). Aplica las
+ * mismas reglas de negocio que {@link CitaManager}.
+ *
+ * - Las citas se insertan en lotes JDBC de {@value #TAMANIO_LOTE} filas. Los
+ *   ids salen de la secuencia {@code cita_seq}, reservados de a
+ *   {@value #TAMANIO_LOTE} (pooled-lo), sin una consulta por cita.
+ * - {@link Medico}, {@link Sala} y {@code Departamento} se leen de la caché de
+ *   segundo nivel.
+ * - RN-10.1: las consultas por paciente, médico, sala y fecha usan los índices
+ *   de la tabla {@code cita}.
+ *
+ * El hospital (departamentos, médicos, salas y pacientes) debe registrarse con
+ * {@link #registrarHospital} antes de programar citas.
+ *
+ * Concurrencia: igual que {@link CitaManager}, la verificación de
+ * disponibilidad y la inserción se ejecutan bajo los cerrojos estriados del
+ * médico, la sala y el paciente. La base H2 en archivo es de un solo proceso.
+ *
+ * @see CitaService
+ * @see CitaManager
+ */
+public class CitaManagerJpa implements CitaService, AutoCloseable {
+    private static final String UNIDAD_PERSISTENCIA = "HospitalPU";
+    /** Coincide con {@code hibernate.jdbc.batch_size} y con el allocationSize de {@code cita_seq}. */
+    private static final int TAMANIO_LOTE = 50;
+    private static final int TAMANIO_PAGINA = 10_000;
+
+    private static final String SELECCION_CITAS = "select c from Cita c"
+            + " join fetch c.paciente join fetch c.medico join fetch c.sala ";
+    private static final String CONFLICTO_MEDICO = "select c.id from Cita c where c.medico.dni = :clave"
+            + " and c.fechaHora > :desde and c.fechaHora < :hasta";
+    private static final String CONFLICTO_SALA = "select c.id from Cita c where c.sala.numero = :clave"
+            + " and c.fechaHora > :desde and c.fechaHora < :hasta";
+    private static final String AGENDA_MEDICO = "select c.fechaHora, c.id from Cita c where c.medico.dni = :clave"
+            + " and c.fechaHora > :desde and c.fechaHora < :hasta";
+    private static final String AGENDA_SALA = "select c.fechaHora, c.id from Cita c where c.sala.numero = :clave"
+            + " and c.fechaHora > :desde and c.fechaHora < :hasta";
+    private static final String RANGO = " and c.fechaHora >= :desde and c.fechaHora < :hasta order by c.fechaHora";
+
+    private final EntityManagerFactory emf;
+    private final CerrojosEstriados cerrojos;
+    /** Citas programadas en esta sesión por DNI o número de sala; las entidades las exponen como vistas. */
+    private final Map<String, NavigableMap<ClaveCita, Cita>> citasPorPaciente = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<ClaveCita, Cita>> citasPorMedico = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<ClaveCita, Cita>> citasPorSala = new ConcurrentHashMap<>();
+
+    public CitaManagerJpa() {
+        this(Map.of());
+    }
+
+    /**
+     * @param propiedades Propiedades que reemplazan las de {@code persistence.xml};
+     *                    por ejemplo {@code hibernate.show_sql=true} en desarrollo
+     *                    o {@code jakarta.persistence.jdbc.url} para otra base
+     */
+    public CitaManagerJpa(Map<String, ?> propiedades) {
+        Map<String, Object> configuracion = new HashMap<>();
+        configuracion.put("hibernate.session_factory.interceptor", new EntidadesRegistradas());
+        configuracion.putAll(propiedades);
+        this.emf = Persistence.createEntityManagerFactory(UNIDAD_PERSISTENCIA, configuracion);
+        this.cerrojos = new CerrojosEstriados(Math.max(64, Runtime.getRuntime().availableProcessors() * 16));
+    }
+
+    /**
+     * [HU-01] Registra o actualiza el hospital con sus departamentos, médicos,
+     * salas y pacientes.
+     *
+     * @param hospital El hospital a persistir
+     */
+    public void registrarHospital(Hospital hospital) throws CitaException {
+        enTransaccion(em -> em.merge(hospital));
+    }
+
+    /**
+     * [HU-07] Programa una nueva cita médica.
+     * [HU-08] Valida disponibilidad de médico y sala contra la base.
+     * [HU-09] Valida compatibilidad de especialidades.
+     *
+     * @throws CitaException Si alguna validación falla o la inserción es rechazada
+     */
+    @Override
+    public Cita programarCita(Paciente paciente, Medico medico, Sala sala,
+            LocalDateTime fechaHora, BigDecimal costo) throws CitaException {
+
+        // [HU-07] RN-07.1 y RN-07.2: Validar fecha futura y costo positivo
+        CitaManager.validarCita(fechaHora, costo);
+
+        Cita cita;
+        int[] franjas = cerrojos.bloquear(medico.getDni(), sala.getNumero(), paciente.getDni());
+        try {
+            cita = enTransaccion(em -> {
+                // [HU-08] RN-08.1: Validar disponibilidad del médico (ventana 2 horas)
+                if (hayConflicto(em, CONFLICTO_MEDICO, medico.getDni(), fechaHora)) {
+                    throw new CitaException(ReglaNegocio.RN_08_1,
+                            "El médico no está disponible en la fecha y hora solicitadas.");
+                }
+
+                // [HU-08] RN-08.2: Validar disponibilidad de la sala (ventana 2 horas)
+                if (hayConflicto(em, CONFLICTO_SALA, sala.getNumero(), fechaHora)) {
+                    throw new CitaException(ReglaNegocio.RN_08_2,
+                            "La sala no está disponible en la fecha y hora solicitadas.");
+                }
+
+                // [HU-09] RN-09.1: Validar compatibilidad de especialidades
+                if (!medico.getEspecialidad().equals(sala.getDepartamento().getEspecialidad())) {
+                    throw new CitaException(ReglaNegocio.RN_09_1,
+                            "La especialidad del médico no coincide con el departamento de la sala.");
+                }
+
+                Cita nueva = Cita.builder()
+                        .paciente(paciente)
+                        .medico(medico)
+                        .sala(sala)
+                        .fechaHora(fechaHora)
+                        .costo(costo)
+                        .build();
+                em.persist(nueva);
+                return nueva;
+            });
+        } finally {
+            cerrojos.desbloquear(franjas);
+        }
+        agregarAEntidades(cita);
+        return cita;
+    }
+
+    /**
+     * [HU-07] Cambia el estado de una cita ya persistida.
+     * RN-07.3: la transición se valida contra el estado guardado en la base,
+     * leído con bloqueo de fila, y la instancia recibida se actualiza al
+     * confirmar. Pasar a {@link EstadoCita#CANCELADA} borra la fila, igual que
+     * {@link #cancelarCita}.
+     *
+     * @throws CitaException Si la transición no está permitida o la cita no existe
+     */
+    @Override
+    public void cambiarEstado(Cita cita, EstadoCita nuevoEstado) throws CitaException {
+        enTransaccion(em -> {
+            Cita guardada = buscarParaModificar(em, cita);
+            EstadoCita actual = guardada.getEstado();
+            if (!actual.puedeCambiarA(nuevoEstado)) {
+                throw new CitaException(ReglaNegocio.RN_07_3, "No se puede pasar una cita de "
+                        + actual.getDescripcion() + " a " + nuevoEstado.getDescripcion() + ".");
+            }
+            if (nuevoEstado == EstadoCita.CANCELADA) {
+                em.remove(guardada);
+            } else {
+                guardada.setEstado(nuevoEstado);
+            }
+            return null;
+        });
+        cita.setEstado(nuevoEstado);
+        if (nuevoEstado == EstadoCita.CANCELADA) {
+            quitarDeEntidades(cita);
+        }
+    }
+
+    /**
+     * [HU-07] Cancela una cita programada o en curso y borra su fila, lo que
+     * libera el horario del médico y la sala (claves únicas de RN-08).
+     */
+    @Override
+    public void cancelarCita(Cita cita) throws CitaException {
+        cambiarEstado(cita, EstadoCita.CANCELADA);
+    }
+
+    /** [HU-07] Borra la fila de la cita sin importar su estado. */
+    @Override
+    public void eliminarCita(Cita cita) throws CitaException {
+        enTransaccion(em -> {
+            em.remove(buscarParaModificar(em, cita));
+            return null;
+        });
+        quitarDeEntidades(cita);
+    }
+
+    private static Cita buscarParaModificar(EntityManager em, Cita cita) throws CitaException {
+        Cita guardada = cita.getId() == null ? null
+                : em.find(Cita.class, cita.getId(), LockModeType.PESSIMISTIC_WRITE);
+        if (guardada == null) {
+            throw new CitaException("La cita no está registrada: " + cita);
+        }
+        return guardada;
+    }
+
+    /**
+     * [HU-07] Programa un lote de citas con semántica todo-o-nada en una sola
+     * transacción. La agenda de cada médico y sala del lote se lee con una
+     * consulta por recurso y se valida igual que en
+     * {@link CitaManager#programarCitas}.
+     *
+     * @throws CitaLoteException Si al menos una solicitud es inválida
+     */
+    @Override
+    public List<Cita> programarCitas(List<SolicitudCita> solicitudes) throws CitaException {
+        int n = solicitudes.size();
+        Map<Integer, String> errores = new TreeMap<>();
+
+        // [HU-07] RN-07.1/RN-07.2 y [HU-09] RN-09.1: validaciones independientes
+        Object[] claves = new Object[n * 3];
+        for (int i = 0; i < n; i++) {
+            SolicitudCita solicitud = solicitudes.get(i);
+            try {
+                CitaManager.validarCita(solicitud.getFechaHora(), solicitud.getCosto());
+                if (!solicitud.getMedico().getEspecialidad()
+                        .equals(solicitud.getSala().getDepartamento().getEspecialidad())) {
+                    throw new CitaException(ReglaNegocio.RN_09_1,
+                            "La especialidad del médico no coincide con el departamento de la sala.");
+                }
+            } catch (CitaException e) {
+                errores.put(i, e.getMessage());
+            }
+            claves[3 * i] = solicitud.getMedico().getDni();
+            claves[3 * i + 1] = solicitud.getSala().getNumero();
+            claves[3 * i + 2] = solicitud.getPaciente().getDni();
+        }
+
+        List<Cita> creadas;
+        int[] franjas = cerrojos.bloquear(claves);
+        try {
+            creadas = enTransaccion(em -> {
+                // [HU-08] RN-08.1 y RN-08.2: ventanas contra la base y dentro del lote
+                CitaManager.validarVentanasLote(solicitudes, SolicitudCita::getMedico, Medico::getDni,
+                        leerAgendas(em, solicitudes, SolicitudCita::getMedico, Medico::getDni, AGENDA_MEDICO),
+                        "El médico no está disponible en la fecha y hora solicitadas.", errores);
+                CitaManager.validarVentanasLote(solicitudes, SolicitudCita::getSala, Sala::getNumero,
+                        leerAgendas(em, solicitudes, SolicitudCita::getSala, Sala::getNumero, AGENDA_SALA),
+                        "La sala no está disponible en la fecha y hora solicitadas.", errores);
+
+                if (!errores.isEmpty()) {
+                    throw new CitaLoteException(errores);
+                }
+
+                List<Cita> nuevas = new ArrayList<>(n);
+                for (SolicitudCita solicitud : solicitudes) {
+                    nuevas.add(Cita.builder()
+                            .paciente(solicitud.getPaciente())
+                            .medico(solicitud.getMedico())
+                            .sala(solicitud.getSala())
+                            .fechaHora(solicitud.getFechaHora())
+                            .costo(solicitud.getCosto())
+                            .build());
+                }
+                insertarEnLotes(em, nuevas);
+                return nuevas;
+            });
+        } finally {
+            cerrojos.desbloquear(franjas);
+        }
+        for (Cita cita : creadas) {
+            agregarAEntidades(cita);
+        }
+        return creadas;
+    }
+
+    /**
+     * Lee, con una consulta por recurso, las citas existentes que pueden
+     * chocar con alguna solicitud del lote: las comprendidas entre la primera
+     * y la última solicitud del recurso, ampliadas en la ventana mínima.
+     */
+    private static <R> Map<String, NavigableMap<LocalDateTime, Long>> leerAgendas(EntityManager em,
+            List<SolicitudCita> solicitudes, Function<SolicitudCita, R> recurso, Function<R, String> clave,
+            String consulta) {
+        Map<String, LocalDateTime[]> rangos = new HashMap<>();
+        for (SolicitudCita solicitud : solicitudes) {
+            LocalDateTime fechaHora = solicitud.getFechaHora();
+            LocalDateTime[] rango = rangos.computeIfAbsent(clave.apply(recurso.apply(solicitud)),
+                    c -> new LocalDateTime[] { fechaHora, fechaHora });
+            if (fechaHora.isBefore(rango[0])) {
+                rango[0] = fechaHora;
+            }
+            if (fechaHora.isAfter(rango[1])) {
+                rango[1] = fechaHora;
+            }
+        }
+
+        Map<String, NavigableMap<LocalDateTime, Long>> agendas = new HashMap<>();
+        rangos.forEach((c, rango) -> {
+            NavigableMap<LocalDateTime, Long> agenda = new TreeMap<>();
+            for (Object[] fila : em.createQuery(consulta, Object[].class)
+                    .setParameter("clave", c)
+                    .setParameter("desde", rango[0].minus(CitaManager.VENTANA_MINIMA))
+                    .setParameter("hasta", rango[1].plus(CitaManager.VENTANA_MINIMA))
+                    .getResultList()) {
+                agenda.put((LocalDateTime) fila[0], (Long) fila[1]);
+            }
+            agendas.put(c, agenda);
+        });
+        return agendas;
+    }
+
+    private static boolean hayConflicto(EntityManager em, String consulta, String clave, LocalDateTime fechaHora) {
+        return !em.createQuery(consulta, Long.class)
+                .setParameter("clave", clave)
+                .setParameter("desde", fechaHora.minus(CitaManager.VENTANA_MINIMA))
+                .setParameter("hasta", fechaHora.plus(CitaManager.VENTANA_MINIMA))
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+
+    /**
+     * Persiste las citas vaciando el contexto cada {@value #TAMANIO_LOTE}
+     * filas, de modo que Hibernate envíe un lote JDBC por tanda y la memoria
+     * no crezca con el tamaño de la carga.
+     */
+    private static void insertarEnLotes(EntityManager em, List<Cita> citas) {
+        for (int i = 0; i < citas.size(); i++) {
+            em.persist(citas.get(i));
+            if ((i + 1) % TAMANIO_LOTE == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private void agregarAEntidades(Cita cita) {
+        ClaveCita clave = ClaveCita.de(cita);
+        Paciente paciente = cita.getPaciente();
+        Medico medico = cita.getMedico();
+        Sala sala = cita.getSala();
+        citasPorPaciente.computeIfAbsent(paciente.getDni(), dni -> vincular(paciente::vincularCitas)).put(clave, cita);
+        citasPorMedico.computeIfAbsent(medico.getDni(), dni -> vincular(medico::vincularCitas)).put(clave, cita);
+        citasPorSala.computeIfAbsent(sala.getNumero(), numero -> vincular(sala::vincularCitas)).put(clave, cita);
+    }
+
+    private void quitarDeEntidades(Cita cita) {
+        ClaveCita clave = ClaveCita.de(cita);
+        citasPorPaciente.getOrDefault(cita.getPaciente().getDni(), Collections.emptyNavigableMap()).remove(clave, cita);
+        citasPorMedico.getOrDefault(cita.getMedico().getDni(), Collections.emptyNavigableMap()).remove(clave, cita);
+        citasPorSala.getOrDefault(cita.getSala().getNumero(), Collections.emptyNavigableMap()).remove(clave, cita);
+    }
+
+    private static NavigableMap<ClaveCita, Cita> vincular(Consumer<Collection<Cita>> entidad) {
+        NavigableMap<ClaveCita, Cita> agenda = new ConcurrentSkipListMap<>();
+        entidad.accept(agenda.values());
+        return agenda;
+    }
+
+    @Override
+    public List<Cita> getCitasPorPaciente(Paciente paciente) {
+        return consultar(SELECCION_CITAS + "where c.paciente.dni = :clave order by c.fechaHora", paciente.getDni());
+    }
+
+    @Override
+    public List<Cita> getCitasPorMedico(Medico medico) {
+        return consultar(SELECCION_CITAS + "where c.medico.dni = :clave order by c.fechaHora", medico.getDni());
+    }
+
+    @Override
+    public List<Cita> getCitasPorSala(Sala sala) {
+        return consultar(SELECCION_CITAS + "where c.sala.numero = :clave order by c.fechaHora", sala.getNumero());
+    }
+
+    /** [HU-10] Usa el índice {@code idx_cita_paciente(paciente_dni, fecha_hora)}. */
+    @Override
+    public List<Cita> getCitasPorPaciente(Paciente paciente, LocalDateTime desde, LocalDateTime hasta) {
+        return consultar(SELECCION_CITAS + "where c.paciente.dni = :clave" + RANGO, paciente.getDni(), desde, hasta);
+    }
+
+    /** [HU-10] Usa la clave única {@code (medico_dni, fecha_hora)}. */
+    @Override
+    public List<Cita> getCitasPorMedico(Medico medico, LocalDateTime desde, LocalDateTime hasta) {
+        return consultar(SELECCION_CITAS + "where c.medico.dni = :clave" + RANGO, medico.getDni(), desde, hasta);
+    }
+
+    /** [HU-10] Usa la clave única {@code (sala_numero, fecha_hora)}. */
+    @Override
+    public List<Cita> getCitasPorSala(Sala sala, LocalDateTime desde, LocalDateTime hasta) {
+        return consultar(SELECCION_CITAS + "where c.sala.numero = :clave" + RANGO, sala.getNumero(), desde, hasta);
+    }
+
+    /** [HU-10] Usa el índice {@code idx_cita_fecha_hora}. */
+    @Override
+    public List<Cita> getCitasEntre(LocalDateTime desde, LocalDateTime hasta) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return Collections.unmodifiableList(em.createQuery(SELECCION_CITAS
+                            + "where c.fechaHora >= :desde and c.fechaHora < :hasta order by c.fechaHora, c.medico.dni",
+                            Cita.class)
+                    .setParameter("desde", desde)
+                    .setParameter("hasta", hasta)
+                    .setHint("org.hibernate.readOnly", true)
+                    .getResultList());
+        } finally {
+            em.close();
+        }
+    }
+
+    private List<Cita> consultar(String consulta, String clave) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return Collections.unmodifiableList(em.createQuery(consulta, Cita.class)
+                    .setParameter("clave", clave)
+                    .setHint("org.hibernate.readOnly", true)
+                    .getResultList());
+        } finally {
+            em.close();
+        }
+    }
+
+    private List<Cita> consultar(String consulta, String clave, LocalDateTime desde, LocalDateTime hasta) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return Collections.unmodifiableList(em.createQuery(consulta, Cita.class)
+                    .setParameter("clave", clave)
+                    .setParameter("desde", desde)
+                    .setParameter("hasta", hasta)
+                    .setHint("org.hibernate.readOnly", true)
+                    .getResultList());
+        } finally {
+            em.close();
+        }
+    }
+
+    @Override
+    public void guardarCitas(String filename) throws IOException {
+        guardarCitas(filename, false);
+    }
+
+    /**
+     * [HU-11] Exporta las citas de la base en formato CSV (RN-11.1),
+     * recorriéndolas por páginas de id para no cargar la tabla completa.
+     */
+    @Override
+    public void guardarCitas(String filename, boolean gzip) throws IOException {
+        EntityManager em = emf.createEntityManager();
+        try (EscritorCsvCitas escritor = new EscritorCsvCitas(Path.of(filename), gzip)) {
+            recorrerPorPaginas(em, escritor::escribir);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Entrega las citas de la base en orden de id, por páginas de
+     * {@value #TAMANIO_PAGINA}; cada página se desasocia antes de leer la
+     * siguiente para no acumular la tabla en el contexto de persistencia.
+     */
+    private static void recorrerPorPaginas(EntityManager em, AccionCita accion) throws IOException {
+        TypedQuery<Cita> pagina = em.createQuery(SELECCION_CITAS + "where c.id > :ultimo order by c.id", Cita.class)
+                .setHint("org.hibernate.readOnly", true)
+                .setMaxResults(TAMANIO_PAGINA);
+        long ultimo = Long.MIN_VALUE;
+        List<Cita> citas;
+        do {
+            citas = pagina.setParameter("ultimo", ultimo).getResultList();
+            for (Cita cita : citas) {
+                accion.aceptar(cita);
+                ultimo = cita.getId();
+            }
+            em.clear();
+        } while (citas.size() == TAMANIO_PAGINA);
+    }
+
+    /**
+     * [HU-11] Reemplaza las citas de la base por las del archivo CSV, en una
+     * sola transacción con inserciones por lotes.
+     */
+    @Override
+    public void cargarCitas(String filename, Map<String, Paciente> pacientes,
+            Map<String, Medico> medicos, Map<String, Sala> salas)
+            throws IOException, ClassNotFoundException, CitaException {
+        reemplazarCitas(new CargadorCsvCitas(pacientes, medicos, salas).cargar(Path.of(filename)));
+    }
+
+    /**
+     * [HU-11] Guarda las citas de la base en la instantánea binaria,
+     * recorriéndolas por páginas de id como {@link #guardarCitas(String, boolean)}.
+     * Los diccionarios se consultan primero; todos los cerrojos se mantienen
+     * hasta terminar para que ninguna cita nueva referencie una clave que no
+     * esté en ellos.
+     */
+    @Override
+    public void guardarInstantanea(String filename) throws IOException {
+        cerrojos.bloquearTodas();
+        EntityManager em = emf.createEntityManager();
+        try (InstantaneaBinariaCitas.Escritor escritor = new InstantaneaBinariaCitas.Escritor(Path.of(filename),
+                clavesReferenciadas(em, "c.paciente.dni"), clavesReferenciadas(em, "c.medico.dni"),
+                clavesReferenciadas(em, "c.sala.numero"))) {
+            recorrerPorPaginas(em, escritor::agregar);
+            escritor.terminar();
+        } finally {
+            em.close();
+            cerrojos.desbloquearTodas();
+        }
+    }
+
+    private static List<String> clavesReferenciadas(EntityManager em, String clave) {
+        return em.createQuery("select distinct " + clave + " from Cita c", String.class).getResultList();
+    }
+
+    @Override
+    public void cargarInstantanea(String filename, Map<String, Paciente> pacientes,
+            Map<String, Medico> medicos, Map<String, Sala> salas) throws IOException, CitaException {
+        reemplazarCitas(InstantaneaBinariaCitas.leer(Path.of(filename), pacientes, medicos, salas));
+    }
+
+    private void reemplazarCitas(List<Cita> cargadas) throws CitaException {
+        cerrojos.bloquearTodas();
+        try {
+            enTransaccion(em -> {
+                em.createQuery("delete from Cita").executeUpdate();
+                insertarEnLotes(em, cargadas);
+                return null;
+            });
+        } finally {
+            cerrojos.desbloquearTodas();
+        }
+    }
+
+    /**
+     * Ejecuta el trabajo en una transacción propia. Si el trabajo lanza una
+     * excepción, o la base rechaza la escritura, se revierte la transacción.
+     *
+     * @throws CitaException Si el trabajo la lanza o la base rechaza la escritura
+     */
+    private <T> T enTransaccion(Trabajo<T> trabajo) throws CitaException {
+        EntityManager em = emf.createEntityManager();
+        EntityTransaction transaccion = em.getTransaction();
+        try {
+            transaccion.begin();
+            T resultado = trabajo.ejecutar(em);
+            transaccion.commit();
+            return resultado;
+        } catch (PersistenceException e) {
+            throw new CitaException("Error de persistencia: " + e.getMessage(), e);
+        } finally {
+            if (transaccion.isActive()) {
+                transaccion.rollback();
+            }
+            em.close();
+        }
+    }
+
+    /**
+     * Las citas referencian pacientes, médicos y salas ya registrados con
+     * {@link #registrarHospital}; la clave foránea lo garantiza. Declararlos
+     * persistentes evita que Hibernate consulte la base por cada referencia
+     * para distinguir una entidad nueva de una desasociada. El resto de las
+     * entidades, como un hospital o departamento nuevo, conserva la detección
+     * de Hibernate.
+     */
+    private static final class EntidadesRegistradas implements Interceptor {
+        @Override
+        public Boolean isTransient(Object entidad) {
+            return entidad instanceof Paciente || entidad instanceof Medico || entidad instanceof Sala
+                    ? Boolean.FALSE
+                    : null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Trabajo<T> {
+        T ejecutar(EntityManager em) throws CitaException;
+    }
+
+    @FunctionalInterface
+    private interface AccionCita {
+        void aceptar(Cita cita) throws IOException;
+    }
+
+    @Override
+    public void close() {
+        emf.close();
+    }
+}
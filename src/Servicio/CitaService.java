@@ -1,6 +1,7 @@
 package Servicio;
 
 import Entidades.Cita;
+import Entidades.EstadoCita;
 import Entidades.Medico;
 import Entidades.Paciente;
 import Entidades.Sala;
@@ -8,6 +9,7 @@ import Entidades.Sala;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -15,15 +17,39 @@ interface CitaService {
         Cita programarCita(Paciente paciente, Medico medico, Sala sala,
                         LocalDateTime fechaHora, BigDecimal costo) throws CitaException;
 
-        List<Cita> getCitasPorPaciente(Paciente paciente);
+        List<Cita> programarCitas(List<SolicitudCita> solicitudes) throws CitaException;
 
-        List<Cita> getCitasPorMedico(Medico medico);
+        void cambiarEstado(Cita cita, EstadoCita nuevoEstado) throws CitaException;
 
-        List<Cita> getCitasPorSala(Sala sala);
+        void cancelarCita(Cita cita) throws CitaException;
+
+        void eliminarCita(Cita cita) throws CitaException;
+
+        Collection<Cita> getCitasPorPaciente(Paciente paciente);
+
+        Collection<Cita> getCitasPorMedico(Medico medico);
+
+        Collection<Cita> getCitasPorSala(Sala sala);
+
+        Collection<Cita> getCitasPorPaciente(Paciente paciente, LocalDateTime desde, LocalDateTime hasta);
+
+        Collection<Cita> getCitasPorMedico(Medico medico, LocalDateTime desde, LocalDateTime hasta);
+
+        Collection<Cita> getCitasPorSala(Sala sala, LocalDateTime desde, LocalDateTime hasta);
+
+        Collection<Cita> getCitasEntre(LocalDateTime desde, LocalDateTime hasta);
 
         void guardarCitas(String filename) throws IOException;
 
+        void guardarCitas(String filename, boolean gzip) throws IOException;
+
         void cargarCitas(String filename, Map<String, Paciente> pacientes,
                         Map<String, Medico> medicos, Map<String, Sala> salas)
                         throws IOException, ClassNotFoundException, CitaException;
+
+        void guardarInstantanea(String filename) throws IOException;
+
+        void cargarInstantanea(String filename, Map<String, Paciente> pacientes,
+                        Map<String, Medico> medicos, Map<String, Sala> salas)
+                        throws IOException, CitaException;
 }
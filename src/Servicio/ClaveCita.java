@@ -0,0 +1,59 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.EstadoCita;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * [HU-10] Clave de orden temporal de una cita: {@code fechaHora} y, para
+ * desempatar, el DNI del médico. Por RN-08.1 un médico no tiene dos citas en
+ * el mismo instante, así que la clave es única en todo el hospital.
+ *
+ * {@link #inicio(LocalDateTime)} crea una cota que precede a todas las citas
+ * de ese instante, para recortar rangos con {@code subMap}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode
+final class ClaveCita implements Comparable<ClaveCita> {
+    private final LocalDateTime fechaHora;
+    /** {@code null} solo en las cotas creadas con {@link #inicio}. */
+    private final String dniMedico;
+    /**
+     * Fila de la cita en la {@link AnaliticaCitas} del gestor; solo la
+     * asigna el gestor en la clave que registra.
+     */
+    @EqualsAndHashCode.Exclude
+    int fila = -1;
+    /**
+     * Estado con el que el gestor indexó la cita, en la clave que registra.
+     * Un {@code setEstado} directo sobre la cita no lo cambia, así que los
+     * índices por estado no quedan desincronizados.
+     */
+    @EqualsAndHashCode.Exclude
+    EstadoCita estado;
+
+    static ClaveCita de(Cita cita) {
+        return new ClaveCita(cita.getFechaHora(), cita.getMedico().getDni());
+    }
+
+    /** Cota anterior a cualquier cita programada en {@code fechaHora}. */
+    static ClaveCita inicio(LocalDateTime fechaHora) {
+        return new ClaveCita(fechaHora, null);
+    }
+
+    @Override
+    public int compareTo(ClaveCita otra) {
+        int porFecha = fechaHora.compareTo(otra.fechaHora);
+        if (porFecha != 0) {
+            return porFecha;
+        }
+        if (dniMedico == null) {
+            return otra.dniMedico == null ? 0 : -1;
+        }
+        return otra.dniMedico == null ? 1 : dniMedico.compareTo(otra.dniMedico);
+    }
+}
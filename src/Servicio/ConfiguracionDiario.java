@@ -0,0 +1,32 @@
+package Servicio;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * [HU-11] Parámetros del diario de citas.
+ *
+ * @see CitaManager#abrirDiario
+ */
+@Getter
+@ToString
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ConfiguracionDiario {
+    /** Directorio que contiene la instantánea y el diario. */
+    @NonNull
+    final Path directorio;
+    @NonNull
+    @Builder.Default
+    final PoliticaSincronizacion politica = PoliticaSincronizacion.PERIODICA;
+    /** Período del hilo de fondo (fsync periódico y verificación de compactación). */
+    @NonNull
+    @Builder.Default
+    final Duration intervalo = Duration.ofMillis(100);
+    /** Cantidad de registros del diario a partir de la cual se compacta en una instantánea. */
+    @Builder.Default
+    final long umbralCompactacion = 1_000_000;
+}
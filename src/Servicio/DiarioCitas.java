@@ -0,0 +1,580 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.EstadoCita;
+import lombok.Value;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * [HU-11] Diario de escritura anticipada (write-ahead) de las citas.
+ *
+ * Cada alta, baja y cambio de estado u observaciones se agrega al final del
+ * diario antes de aplicarse, de modo que persistir un cambio cuesta O(1) en
+ * lugar de reescribir todo el archivo. Periódicamente el diario se compacta
+ * en una instantánea con el formato CSV de RN-11.1 y se vacía.
+ *
+ * Formato de registros (una línea cada uno):
+ * - {@code A,<fila RN-11.1>}: alta de una cita
+ * - {@code E,<dniMedico>,<sala>,<fechaHora>,<estado>}: cambio de estado
+ * - {@code O,<dniMedico>,<sala>,<fechaHora>,<observaciones>}: cambio de observaciones
+ * - {@code B,<dniMedico>,<sala>,<fechaHora>,}: baja de una cita (cancelada o eliminada)
+ *
+ * La recuperación carga la instantánea y reproduce el diario. Una última línea
+ * incompleta (escritura interrumpida) se descarta.
+ *
+ * La compactación crea una marca antes de reemplazar la instantánea y la
+ * borra después de vaciar el diario. Si la recuperación encuentra la marca,
+ * la instantánea nueva ya estaba completa en disco e incluye todo el diario:
+ * termina de reemplazarla y vacía el diario sin reproducirlo.
+ *
+ * Un error de escritura o de fsync, incluso en la sincronización o
+ * compactación periódicas, deja el diario en falla: cada registro y cada
+ * espera posterior lanza ese error, ya que no se sabe qué llegó al disco,
+ * hasta que una compactación vuelve a escribir el estado completo.
+ *
+ * @see PoliticaSincronizacion
+ */
+final class DiarioCitas implements Closeable {
+    static final String ARCHIVO_INSTANTANEA = "citas.csv";
+    static final String ARCHIVO_DIARIO = "citas.diario";
+    /** Presente mientras una compactación reemplaza la instantánea y vacía el diario. */
+    static final String ARCHIVO_COMPACTACION = "citas.compactacion";
+    private static final String ARCHIVO_TEMPORAL = ARCHIVO_INSTANTANEA + ".tmp";
+
+    private static final char ALTA = 'A';
+    private static final char ESTADO = 'E';
+    private static final char OBSERVACIONES = 'O';
+    private static final char BAJA = 'B';
+
+    /** Vuelca el estado completo en la instantánea durante la compactación. */
+    @FunctionalInterface
+    interface Volcado {
+        void escribir(EscritorCsvCitas escritor) throws IOException;
+    }
+
+    private final ConfiguracionDiario configuracion;
+    private final Path instantanea;
+    private final FileChannel canal;
+    private final EscritorCsvCitas escritor;
+    private final ScheduledExecutorService planificador;
+
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private final Condition sincronizado = cerrojo.newCondition();
+    private long ultimaSecuencia;
+    private long secuenciaDurable;
+    private boolean sincronizando;
+    private long registrosDesdeCompactacion;
+    /** Primer error de escritura o sincronización desde la última compactación. */
+    private IOException fallo;
+
+    private DiarioCitas(ConfiguracionDiario configuracion, FileChannel canal, long registrosExistentes,
+            Runnable compactador) {
+        this.configuracion = configuracion;
+        this.instantanea = configuracion.getDirectorio().resolve(ARCHIVO_INSTANTANEA);
+        this.canal = canal;
+        this.escritor = new EscritorCsvCitas(canal);
+        this.registrosDesdeCompactacion = registrosExistentes;
+
+        long intervalo = Math.max(1, configuracion.getIntervalo().toMillis());
+        this.planificador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "diario-citas");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        planificador.scheduleWithFixedDelay(() -> {
+            try {
+                if (configuracion.getPolitica() == PoliticaSincronizacion.PERIODICA) {
+                    sincronizar(true);
+                } else if (configuracion.getPolitica() == PoliticaSincronizacion.NUNCA) {
+                    sincronizar(false);
+                }
+            } catch (IOException | RuntimeException e) {
+                informarFallo(e);
+            }
+            // Se intenta aunque la sincronización haya fallado: compactar es lo que sale de la falla
+            try {
+                if (requiereCompactacion()) {
+                    compactador.run();
+                }
+            } catch (RuntimeException e) {
+                informarFallo(e);
+            }
+        }, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    private void informarFallo(Exception error) {
+        if (recordarFallo(error)) {
+            System.err.println("Error en el diario de citas: " + error);
+        }
+    }
+
+    /**
+     * Abre el diario para agregar registros. Debe llamarse después de
+     * {@link #recuperar}, que deja el archivo sin líneas incompletas.
+     *
+     * @param compactador Tarea que invoca {@link #compactar} con los cerrojos
+     *                    del gestor adquiridos
+     */
+    static DiarioCitas abrir(ConfiguracionDiario configuracion, Runnable compactador) throws IOException {
+        Path archivo = configuracion.getDirectorio().resolve(ARCHIVO_DIARIO);
+        long registros = contarLineas(archivo);
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        canal.position(canal.size());
+        return new DiarioCitas(configuracion, canal, registros, compactador);
+    }
+
+    /**
+     * Reconstruye las citas a partir de la instantánea y el diario.
+     *
+     * @return Las citas en su estado final, en orden de alta
+     */
+    static List<Cita> recuperar(ConfiguracionDiario configuracion, CargadorCsvCitas cargador)
+            throws IOException, CitaException {
+        Path directorio = configuracion.getDirectorio();
+        Files.createDirectories(directorio);
+        Path instantanea = directorio.resolve(ARCHIVO_INSTANTANEA);
+        Path diario = directorio.resolve(ARCHIVO_DIARIO);
+        if (Files.exists(directorio.resolve(ARCHIVO_COMPACTACION))) {
+            terminarCompactacion(directorio);
+        }
+
+        List<Cita> citas = Files.exists(instantanea) ? cargador.cargar(instantanea) : new ArrayList<>();
+        Map<ClaveRegistro, Cita> porClave = new HashMap<>();
+        for (Cita cita : citas) {
+            porClave.put(new ClaveRegistro(cita.getMedico().getDni(), cita.getFechaHora()), cita);
+        }
+        if (Files.exists(diario)) {
+            reproducir(diario, cargador, citas, porClave);
+        }
+        if (porClave.size() != citas.size()) {
+            // Hubo bajas: quedan solo las citas que siguen registradas bajo su clave
+            citas.removeIf(cita -> porClave.get(new ClaveRegistro(cita.getMedico().getDni(), cita.getFechaHora())) != cita);
+        }
+        return citas;
+    }
+
+    /**
+     * Completa una compactación interrumpida después de confirmar en disco la
+     * instantánea nueva: la renombra si no llegó a hacerlo y vacía el diario,
+     * cuyos registros ya están en ella.
+     */
+    private static void terminarCompactacion(Path directorio) throws IOException {
+        Path temporal = directorio.resolve(ARCHIVO_TEMPORAL);
+        if (Files.exists(temporal)) {
+            Files.move(temporal, directorio.resolve(ARCHIVO_INSTANTANEA),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Path diario = directorio.resolve(ARCHIVO_DIARIO);
+        if (Files.exists(diario)) {
+            try (FileChannel canal = FileChannel.open(diario, StandardOpenOption.WRITE)) {
+                canal.truncate(0);
+                canal.force(true);
+            }
+        }
+        Files.delete(directorio.resolve(ARCHIVO_COMPACTACION));
+    }
+
+    private static void reproducir(Path diario, CargadorCsvCitas cargador, List<Cita> citas,
+            Map<ClaveRegistro, Cita> porClave) throws IOException, CitaException {
+        long completo;
+        try (FileChannel canal = FileChannel.open(diario, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("El diario de citas supera el tamaño máximo; debe compactarse.");
+            }
+            // Se lee en memoria (el diario está acotado por la compactación) para poder truncarlo después
+            ByteBuffer buffer = ByteBuffer.allocate((int) canal.size());
+            while (buffer.hasRemaining() && canal.read(buffer) >= 0) {
+                // lectura completa
+            }
+            int limite = buffer.position();
+            int posicion = 0;
+            while (posicion < limite) {
+                int finLinea = posicion;
+                while (finLinea < limite && buffer.get(finLinea) != '\n') {
+                    finLinea++;
+                }
+                if (finLinea == limite) {
+                    // Escritura interrumpida: el registro nunca fue confirmado
+                    break;
+                }
+                int finContenido = finLinea;
+                if (finContenido > posicion && buffer.get(finContenido - 1) == '\r') {
+                    finContenido--;
+                }
+                aplicar(buffer, posicion, finContenido, cargador, citas, porClave);
+                posicion = finLinea + 1;
+            }
+            completo = posicion;
+            if (completo < limite) {
+                canal.truncate(completo);
+                canal.force(true);
+            }
+        }
+    }
+
+    private static void aplicar(ByteBuffer buffer, int inicio, int fin, CargadorCsvCitas cargador,
+            List<Cita> citas, Map<ClaveRegistro, Cita> porClave) throws CitaException {
+        if (fin - inicio < 2 || buffer.get(inicio + 1) != ',') {
+            throw new CitaException("Registro de diario inválido: " + CargadorCsvCitas.decodificar(buffer, inicio, fin));
+        }
+        char tipo = (char) buffer.get(inicio);
+        if (tipo == ALTA) {
+            Cita cita = cargador.parsearRegistro(buffer, inicio + 2, fin);
+            if (porClave.putIfAbsent(new ClaveRegistro(cita.getMedico().getDni(), cita.getFechaHora()), cita) != null) {
+                throw new CitaException("Registro de diario con una cita ya registrada: "
+                        + CargadorCsvCitas.decodificar(buffer, inicio, fin));
+            }
+            citas.add(cita);
+            return;
+        }
+
+        int[] comas = new int[3];
+        int encontradas = 0;
+        for (int i = inicio + 2; i < fin && encontradas < comas.length; i++) {
+            if (buffer.get(i) == ',') {
+                comas[encontradas++] = i;
+            }
+        }
+        if (encontradas != comas.length || (tipo != ESTADO && tipo != OBSERVACIONES && tipo != BAJA)) {
+            throw new CitaException("Registro de diario inválido: " + CargadorCsvCitas.decodificar(buffer, inicio, fin));
+        }
+        String dniMedico = CargadorCsvCitas.decodificar(buffer, inicio + 2, comas[0]);
+        LocalDateTime fechaHora = CargadorCsvCitas.parsearFechaHora(buffer, comas[1] + 1, comas[2]);
+        ClaveRegistro clave = new ClaveRegistro(dniMedico, fechaHora);
+        Cita cita = tipo == BAJA ? porClave.remove(clave) : porClave.get(clave);
+        if (cita == null) {
+            throw new CitaException("Registro de diario sin cita asociada: "
+                    + CargadorCsvCitas.decodificar(buffer, inicio, fin));
+        }
+        if (tipo == BAJA) {
+            return;
+        }
+        if (tipo == ESTADO) {
+            cita.setEstado(CargadorCsvCitas.parsearEstado(buffer, comas[2] + 1, fin));
+        } else {
+            cita.setObservaciones(CargadorCsvCitas.parsearObservaciones(buffer, comas[2] + 1, fin, new byte[256]));
+        }
+    }
+
+    private static long contarLineas(Path archivo) throws IOException {
+        if (!Files.exists(archivo)) {
+            return 0;
+        }
+        long lineas = 0;
+        ByteBuffer bloque = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            while (canal.read(bloque.clear()) > 0) {
+                for (int i = 0; i < bloque.position(); i++) {
+                    if (bloque.get(i) == '\n') {
+                        lineas++;
+                    }
+                }
+            }
+        }
+        return lineas;
+    }
+
+    /** @return Número de secuencia del registro, para {@link #esperarDurable} */
+    long registrarAlta(Cita cita) throws IOException {
+        return registrar(() -> {
+            escritor.escribirPrefijo(ALTA);
+            escritor.escribir(cita);
+        });
+    }
+
+    /**
+     * Registra las altas de un lote como una unidad: si la escritura falla,
+     * el diario se recorta a donde estaba antes del lote, así que la
+     * recuperación no ve altas sueltas de un lote rechazado.
+     *
+     * @return Número de secuencia del lote, para {@link #esperarDurable}
+     */
+    long registrarAltas(List<Cita> citas) throws IOException {
+        cerrojo.lock();
+        try {
+            verificarFallo();
+            long inicio;
+            try {
+                escritor.vaciar();
+                inicio = canal.position();
+            } catch (IOException e) {
+                recordarFallo(e);
+                throw e;
+            }
+            try {
+                for (Cita cita : citas) {
+                    escritor.escribirPrefijo(ALTA);
+                    escritor.escribir(cita);
+                }
+                // Se entrega completo: un error aquí también se deshace recortando
+                escritor.vaciar();
+            } catch (IOException e) {
+                escritor.descartar();
+                try {
+                    canal.truncate(inicio);
+                    canal.position(inicio);
+                } catch (IOException recorte) {
+                    // No se sabe qué parte del lote quedó en el archivo
+                    e.addSuppressed(recorte);
+                    recordarFallo(e);
+                }
+                throw e;
+            }
+            registrosDesdeCompactacion += citas.size();
+            return ++ultimaSecuencia;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Se registra antes de asignar {@code estado} a la cita. */
+    long registrarEstado(Cita cita, EstadoCita estado) throws IOException {
+        return registrar(() -> {
+            escritor.escribirPrefijo(ESTADO);
+            escritor.escribirClave(cita);
+            escritor.escribirSeparador();
+            escritor.escribirEstado(estado);
+            escritor.terminarLinea();
+        });
+    }
+
+    long registrarObservaciones(Cita cita) throws IOException {
+        return registrar(() -> {
+            escritor.escribirPrefijo(OBSERVACIONES);
+            escritor.escribirClave(cita);
+            escritor.escribirSeparador();
+            escritor.escribirObservaciones(cita.getObservaciones());
+            escritor.terminarLinea();
+        });
+    }
+
+    long registrarBaja(Cita cita) throws IOException {
+        return registrar(() -> {
+            escritor.escribirPrefijo(BAJA);
+            escritor.escribirClave(cita);
+            escritor.escribirSeparador();
+            escritor.terminarLinea();
+        });
+    }
+
+    private long registrar(Registro registro) throws IOException {
+        cerrojo.lock();
+        try {
+            verificarFallo();
+            registro.escribir();
+            registrosDesdeCompactacion++;
+            return ++ultimaSecuencia;
+        } catch (IOException e) {
+            recordarFallo(e);
+            throw e;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Guarda el primer error; los siguientes son consecuencia de él.
+     *
+     * @return {@code true} si es el primero
+     */
+    private boolean recordarFallo(Exception error) {
+        cerrojo.lock();
+        try {
+            if (fallo != null) {
+                return false;
+            }
+            fallo = error instanceof IOException ? (IOException) error : new IOException(error.getMessage(), error);
+            sincronizado.signalAll();
+            return true;
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Se invoca con el cerrojo tomado. */
+    private void verificarFallo() throws IOException {
+        if (fallo != null) {
+            throw new IOException("El diario de citas está en falla desde un error anterior: " + fallo, fallo);
+        }
+    }
+
+    /**
+     * Con {@link PoliticaSincronizacion#SIEMPRE} bloquea hasta que el registro
+     * esté en disco. El primer hilo en llegar ejecuta el fsync para todos los
+     * registros pendientes (group commit); los demás esperan su resultado.
+     */
+    void esperarDurable(long secuencia) throws IOException {
+        cerrojo.lock();
+        try {
+            verificarFallo();
+            if (configuracion.getPolitica() != PoliticaSincronizacion.SIEMPRE) {
+                return;
+            }
+            while (secuenciaDurable < secuencia) {
+                verificarFallo();
+                if (sincronizando) {
+                    sincronizado.awaitUninterruptibly();
+                } else {
+                    sincronizarComoLider();
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Vuelca el buffer y, si {@code forzar}, ejecuta fsync. */
+    void sincronizar(boolean forzar) throws IOException {
+        cerrojo.lock();
+        try {
+            verificarFallo();
+            if (forzar) {
+                while (sincronizando) {
+                    sincronizado.awaitUninterruptibly();
+                }
+                if (secuenciaDurable < ultimaSecuencia) {
+                    sincronizarComoLider();
+                }
+            } else {
+                try {
+                    escritor.vaciar();
+                } catch (IOException e) {
+                    recordarFallo(e);
+                    throw e;
+                }
+            }
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /** Se invoca con el cerrojo tomado; lo libera durante el fsync. */
+    private void sincronizarComoLider() throws IOException {
+        sincronizando = true;
+        long objetivo = ultimaSecuencia;
+        boolean exito = false;
+        try {
+            escritor.vaciar();
+            cerrojo.unlock();
+            try {
+                canal.force(false);
+                exito = true;
+            } finally {
+                cerrojo.lock();
+            }
+        } catch (IOException e) {
+            recordarFallo(e);
+            throw e;
+        } finally {
+            sincronizando = false;
+            if (exito && objetivo > secuenciaDurable) {
+                secuenciaDurable = objetivo;
+            }
+            sincronizado.signalAll();
+        }
+    }
+
+    private boolean requiereCompactacion() {
+        cerrojo.lock();
+        try {
+            return registrosDesdeCompactacion >= configuracion.getUmbralCompactacion();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Escribe una nueva instantánea con {@code volcado} y vacía el diario. El
+     * llamador debe impedir nuevas altas mientras tanto; los cambios de
+     * estado concurrentes quedan bloqueados en el cerrojo del diario y se
+     * registran en el diario nuevo.
+     */
+    void compactar(Volcado volcado) throws IOException {
+        cerrojo.lock();
+        try {
+            while (sincronizando) {
+                sincronizado.awaitUninterruptibly();
+            }
+            Path temporal = instantanea.resolveSibling(ARCHIVO_TEMPORAL);
+            try (EscritorCsvCitas instantaneaNueva = new EscritorCsvCitas(temporal, false)) {
+                volcado.escribir(instantaneaNueva);
+            }
+            try (FileChannel copia = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                copia.force(true);
+            }
+            // Desde aquí la instantánea nueva es la válida: una recuperación con la marca no reproduce el diario
+            Path marca = instantanea.resolveSibling(ARCHIVO_COMPACTACION);
+            try (FileChannel nueva = FileChannel.open(marca, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                nueva.force(true);
+            }
+            try {
+                Files.move(temporal, instantanea, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+                // Los registros pendientes ya están reflejados en la instantánea
+                escritor.descartar();
+                canal.truncate(0);
+                canal.position(0);
+                canal.force(true);
+                Files.delete(marca);
+            } catch (IOException e) {
+                // La marca quedó: el diario a medio vaciar no debe recibir más registros
+                recordarFallo(e);
+                throw e;
+            }
+            secuenciaDurable = ultimaSecuencia;
+            registrosDesdeCompactacion = 0;
+            // La instantánea tiene el estado completo en disco: la falla anterior ya no aplica
+            fallo = null;
+            sincronizado.signalAll();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        planificador.shutdown();
+        try {
+            planificador.awaitTermination(configuracion.getIntervalo().toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cerrojo.lock();
+        try {
+            escritor.vaciar();
+            canal.force(true);
+            escritor.close();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Registro {
+        void escribir() throws IOException;
+    }
+
+    @Value
+    private static class ClaveRegistro {
+        String dniMedico;
+        LocalDateTime fechaHora;
+    }
+}
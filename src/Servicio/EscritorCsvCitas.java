@@ -0,0 +1,240 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.EstadoCita;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * [HU-11] Escritor de citas en formato CSV (RN-11.1) de alto rendimiento.
+ *
+ * Cada fila se codifica en UTF-8 directamente sobre un buffer de bytes
+ * reutilizable que se vuelca al {@link FileChannel} cuando se llena. No se
+ * usan {@code String.format} ni expresiones regulares: la fecha se escribe
+ * dígito a dígito y los nombres de estado se precodifican.
+ *
+ * La salida es idéntica byte a byte a {@link Cita#toCsvString()} seguido del
+ * separador de línea del sistema. Opcionalmente se comprime con gzip.
+ */
+final class EscritorCsvCitas implements Closeable {
+    private static final int TAMANIO_BUFFER = 64 * 1024;
+    /** Espacio reservado para el carácter más largo en UTF-8. */
+    private static final int MAXIMO_BYTES_CARACTER = 4;
+
+    private static final byte[][] NOMBRES_ESTADO = new byte[EstadoCita.values().length][];
+    private static final byte[] SEPARADOR_LINEA = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (EstadoCita estado : EstadoCita.values()) {
+            NOMBRES_ESTADO[estado.ordinal()] = estado.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final FileChannel canal;
+    private final OutputStream comprimido;
+    private final byte[] buffer = new byte[TAMANIO_BUFFER];
+    private final ByteBuffer vista = ByteBuffer.wrap(buffer);
+    private int posicion;
+
+    /**
+     * @param archivo Archivo destino; se crea o se trunca
+     * @param gzip    Si la salida debe comprimirse con gzip
+     */
+    EscritorCsvCitas(Path archivo, boolean gzip) throws IOException {
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.comprimido = gzip ? new GZIPOutputStream(Channels.newOutputStream(canal), TAMANIO_BUFFER) : null;
+    }
+
+    /**
+     * Escribe a partir de la posición actual de un canal ya abierto, sin
+     * compresión. Cerrar el escritor cierra el canal.
+     */
+    EscritorCsvCitas(FileChannel canal) {
+        this.canal = canal;
+        this.comprimido = null;
+    }
+
+    void escribir(Cita cita) throws IOException {
+        escribirTexto(cita.getPaciente().getDni(), false);
+        escribirByte(',');
+        escribirClave(cita);
+        escribirByte(',');
+        escribirCosto(cita.getCosto());
+        escribirByte(',');
+        escribirEstado(cita.getEstado());
+        escribirByte(',');
+        escribirObservaciones(cita.getObservaciones());
+        terminarLinea();
+    }
+
+    /** Escribe el tipo de registro seguido de ','; usado por {@link DiarioCitas}. */
+    void escribirPrefijo(char tipo) throws IOException {
+        escribirByte(tipo);
+        escribirByte(',');
+    }
+
+    /**
+     * Escribe {@code dniMedico,numeroSala,fechaHora}. Por RN-08.1 un médico no
+     * puede tener dos citas en el mismo instante, así que identifica la cita.
+     */
+    void escribirClave(Cita cita) throws IOException {
+        escribirTexto(cita.getMedico().getDni(), false);
+        escribirByte(',');
+        escribirTexto(cita.getSala().getNumero(), false);
+        escribirByte(',');
+        escribirFechaHora(cita.getFechaHora());
+    }
+
+    void escribirEstado(EstadoCita estado) throws IOException {
+        escribirBytes(NOMBRES_ESTADO[estado.ordinal()]);
+    }
+
+    /** RN-11.1: las comas de las observaciones se escapan como ';'. */
+    void escribirObservaciones(String observaciones) throws IOException {
+        escribirTexto(observaciones, true);
+    }
+
+    void escribirSeparador() throws IOException {
+        escribirByte(',');
+    }
+
+    void terminarLinea() throws IOException {
+        escribirBytes(SEPARADOR_LINEA);
+    }
+
+    /** Replica {@link LocalDateTime#toString()} para años de 4 dígitos. */
+    private void escribirFechaHora(LocalDateTime fechaHora) throws IOException {
+        int anio = fechaHora.getYear();
+        if (anio < 1000 || anio > 9999) {
+            escribirTexto(fechaHora.toString(), false);
+            return;
+        }
+        asegurarEspacio(29);
+        escribirDigitos(anio, 4);
+        buffer[posicion++] = '-';
+        escribirDigitos(fechaHora.getMonthValue(), 2);
+        buffer[posicion++] = '-';
+        escribirDigitos(fechaHora.getDayOfMonth(), 2);
+        buffer[posicion++] = 'T';
+        escribirDigitos(fechaHora.getHour(), 2);
+        buffer[posicion++] = ':';
+        escribirDigitos(fechaHora.getMinute(), 2);
+        int segundo = fechaHora.getSecond();
+        int nano = fechaHora.getNano();
+        if (segundo > 0 || nano > 0) {
+            buffer[posicion++] = ':';
+            escribirDigitos(segundo, 2);
+            if (nano > 0) {
+                buffer[posicion++] = '.';
+                if (nano % 1_000_000 == 0) {
+                    escribirDigitos(nano / 1_000_000, 3);
+                } else if (nano % 1000 == 0) {
+                    escribirDigitos(nano / 1000, 6);
+                } else {
+                    escribirDigitos(nano, 9);
+                }
+            }
+        }
+    }
+
+    private void escribirDigitos(int valor, int cantidad) {
+        for (int i = posicion + cantidad - 1; i >= posicion; i--) {
+            buffer[i] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        }
+        posicion += cantidad;
+    }
+
+    /** {@link BigDecimal#toString()} queda cacheado en la instancia, por lo que se codifica una sola vez. */
+    private void escribirCosto(BigDecimal costo) throws IOException {
+        escribirTexto(costo.toString(), false);
+    }
+
+    private void escribirTexto(String texto, boolean escaparComas) throws IOException {
+        int largo = texto.length();
+        for (int i = 0; i < largo; i++) {
+            if (posicion + MAXIMO_BYTES_CARACTER > buffer.length) {
+                vaciar();
+            }
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                buffer[posicion++] = (byte) (escaparComas && c == ',' ? ';' : c);
+            } else if (c < 0x800) {
+                buffer[posicion++] = (byte) (0xC0 | (c >> 6));
+                buffer[posicion++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < largo && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int punto = Character.toCodePoint(c, texto.charAt(++i));
+                buffer[posicion++] = (byte) (0xF0 | (punto >> 18));
+                buffer[posicion++] = (byte) (0x80 | ((punto >> 12) & 0x3F));
+                buffer[posicion++] = (byte) (0x80 | ((punto >> 6) & 0x3F));
+                buffer[posicion++] = (byte) (0x80 | (punto & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Sustituto huérfano: mismo reemplazo que aplica el codificador UTF-8 del JDK
+                buffer[posicion++] = '?';
+            } else {
+                buffer[posicion++] = (byte) (0xE0 | (c >> 12));
+                buffer[posicion++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[posicion++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void escribirBytes(byte[] bytes) throws IOException {
+        asegurarEspacio(bytes.length);
+        System.arraycopy(bytes, 0, buffer, posicion, bytes.length);
+        posicion += bytes.length;
+    }
+
+    private void escribirByte(char c) throws IOException {
+        asegurarEspacio(1);
+        buffer[posicion++] = (byte) c;
+    }
+
+    private void asegurarEspacio(int bytes) throws IOException {
+        if (posicion + bytes > buffer.length) {
+            vaciar();
+        }
+    }
+
+    /** Entrega al sistema operativo los bytes pendientes del buffer. */
+    void vaciar() throws IOException {
+        if (comprimido != null) {
+            comprimido.write(buffer, 0, posicion);
+        } else {
+            vista.clear().limit(posicion);
+            while (vista.hasRemaining()) {
+                canal.write(vista);
+            }
+        }
+        posicion = 0;
+    }
+
+    /** Descarta los bytes pendientes sin escribirlos. */
+    void descartar() {
+        posicion = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vaciar();
+            if (comprimido != null) {
+                comprimido.close();
+            }
+        } finally {
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Servicio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias log-lineal, al estilo de HdrHistogram.
+ *
+ * Cada potencia de dos se divide en {@value #SUBCUBETAS} cubetas, por lo que
+ * el error relativo de un percentil es menor al 3,2 %. Los valores por encima
+ * de 2^{@value #MAXIMO_EXPONENTE} ns (unas 2,4 horas) se acumulan en la última
+ * cubeta.
+ *
+ * El registro no asigna memoria: cada hilo escribe en una de varias franjas
+ * de contadores atómicos, elegida por su identidad, para que los hilos no
+ * compitan por la misma línea de caché. La lectura suma las franjas.
+ */
+final class HistogramaLatencia {
+    private static final int BITS_SUBCUBETA = 5;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    private static final int MAXIMO_EXPONENTE = 43;
+    private static final int CUBETAS = (MAXIMO_EXPONENTE - BITS_SUBCUBETA + 2) * SUBCUBETAS;
+    private static final long MAXIMO_REPRESENTABLE = (1L << (MAXIMO_EXPONENTE + 1)) - 1;
+
+    /** Posiciones de cada franja a continuación de las cubetas. */
+    private static final int CANTIDAD = CUBETAS;
+    private static final int SUMA = CUBETAS + 1;
+    private static final int MAXIMO = CUBETAS + 2;
+    private static final int LONGITUD_FRANJA = CUBETAS + 3;
+
+    private final AtomicLongArray[] franjas;
+    private final int mascara;
+
+    HistogramaLatencia(int cantidadFranjas) {
+        int tamanio = Integer.highestOneBit(Math.max(1, cantidadFranjas));
+        if (tamanio < cantidadFranjas) {
+            tamanio <<= 1;
+        }
+        this.franjas = new AtomicLongArray[tamanio];
+        for (int i = 0; i < tamanio; i++) {
+            franjas[i] = new AtomicLongArray(LONGITUD_FRANJA);
+        }
+        this.mascara = tamanio - 1;
+    }
+
+    void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        int h = System.identityHashCode(Thread.currentThread());
+        AtomicLongArray franja = franjas[(h ^ (h >>> 16)) & mascara];
+        franja.incrementAndGet(cubeta(valor));
+        franja.incrementAndGet(CANTIDAD);
+        franja.addAndGet(SUMA, valor);
+        long maximo = franja.get(MAXIMO);
+        while (valor > maximo && !franja.compareAndSet(MAXIMO, maximo, valor)) {
+            maximo = franja.get(MAXIMO);
+        }
+    }
+
+    static int cubeta(long valor) {
+        if (valor < SUBCUBETAS) {
+            return (int) valor;
+        }
+        if (valor > MAXIMO_REPRESENTABLE) {
+            return CUBETAS - 1;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int subcubeta = (int) (valor >>> (exponente - BITS_SUBCUBETA)) & (SUBCUBETAS - 1);
+        return (exponente - BITS_SUBCUBETA + 1) * SUBCUBETAS + subcubeta;
+    }
+
+    /** Mayor valor que cae en la cubeta indicada. */
+    static long limiteSuperior(int cubeta) {
+        if (cubeta < SUBCUBETAS) {
+            return cubeta;
+        }
+        int desplazamiento = cubeta / SUBCUBETAS - 1;
+        long inferior = (long) (SUBCUBETAS + cubeta % SUBCUBETAS) << desplazamiento;
+        return inferior + (1L << desplazamiento) - 1;
+    }
+
+    /**
+     * Suma las franjas y calcula los percentiles. Las franjas se leen sin
+     * bloquear, por lo que registros concurrentes pueden quedar parcialmente
+     * incluidos.
+     */
+    ResumenLatencia resumir() {
+        long[] cubetas = new long[CUBETAS];
+        long cantidad = 0;
+        long suma = 0;
+        long maximo = 0;
+        for (AtomicLongArray franja : franjas) {
+            for (int i = 0; i < CUBETAS; i++) {
+                long c = franja.get(i);
+                cubetas[i] += c;
+                cantidad += c;
+            }
+            suma += franja.get(SUMA);
+            maximo = Math.max(maximo, franja.get(MAXIMO));
+        }
+        return new ResumenLatencia(cantidad,
+                cantidad == 0 ? 0 : suma / cantidad,
+                percentil(cubetas, cantidad, 0.50, maximo),
+                percentil(cubetas, cantidad, 0.90, maximo),
+                percentil(cubetas, cantidad, 0.99, maximo),
+                percentil(cubetas, cantidad, 0.999, maximo),
+                maximo);
+    }
+
+    private static long percentil(long[] cubetas, long cantidad, double fraccion, long maximo) {
+        if (cantidad == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(cantidad * fraccion));
+        long acumulado = 0;
+        for (int i = 0; i < cubetas.length; i++) {
+            acumulado += cubetas[i];
+            if (acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), maximo);
+            }
+        }
+        return maximo;
+    }
+}
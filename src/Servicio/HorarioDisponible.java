@@ -0,0 +1,21 @@
+package Servicio;
+
+import Entidades.Medico;
+import Entidades.Sala;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * [HU-08] Combinación de médico, sala y horario que cumple la ventana de 2
+ * horas (RN-08.1/RN-08.2) y la compatibilidad de especialidades (RN-09.1)
+ * al momento de la búsqueda.
+ *
+ * @see CitaManager#buscarHorariosDisponibles(Entidades.Departamento, LocalDateTime, Medico, int)
+ */
+@Value
+public class HorarioDisponible {
+    Medico medico;
+    Sala sala;
+    LocalDateTime fechaHora;
+}
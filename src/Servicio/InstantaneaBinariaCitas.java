@@ -0,0 +1,578 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.EstadoCita;
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.Sala;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * [HU-11] Instantánea binaria compacta de las citas.
+ *
+ * Alternativa al CSV de RN-11.1 pensada para volúmenes grandes:
+ * - DNI de pacientes y médicos y números de sala se codifican una sola vez en
+ *   diccionarios; cada cita guarda solo índices (varint).
+ * - {@code fechaHora} se guarda como segundos desde la época (UTC, en delta
+ *   respecto de la cita anterior) más nanosegundos, normalmente 0.
+ * - {@code costo} se guarda como valor sin escala (long) más escala.
+ * - {@link EstadoCita} se guarda como ordinal.
+ * - Las observaciones se deduplican y comprimen con Deflate por bloque.
+ *
+ * Estructura del archivo:
+ * <pre>
+ * int magia, int versión, int longitudDiccionarios, diccionarios,
+ * int cantidadBloques, { int longitudBloque, bloque }*
+ * </pre>
+ * Cada bloque es independiente, por lo que la lectura decodifica los bloques
+ * en paralelo.
+ */
+final class InstantaneaBinariaCitas {
+    private static final int MAGIA = 0x43495442; // "CITB"
+    private static final int VERSION = 1;
+    private static final int CITAS_POR_BLOQUE = 16 * 1024;
+    /** Marca de costo que no entra en un long con escala de un byte; se guarda como texto. */
+    private static final byte ESCALA_TEXTO = Byte.MIN_VALUE;
+
+    private static final EstadoCita[] ESTADOS = EstadoCita.values();
+
+    private InstantaneaBinariaCitas() {
+    }
+
+    static void escribir(Path archivo, List<Cita> citas) throws IOException {
+        Set<String> pacientes = new LinkedHashSet<>();
+        Set<String> medicos = new LinkedHashSet<>();
+        Set<String> salas = new LinkedHashSet<>();
+        for (Cita cita : citas) {
+            pacientes.add(cita.getPaciente().getDni());
+            medicos.add(cita.getMedico().getDni());
+            salas.add(cita.getSala().getNumero());
+        }
+        try (Escritor escritor = new Escritor(archivo, pacientes, medicos, salas)) {
+            for (Cita cita : citas) {
+                escritor.agregar(cita);
+            }
+            escritor.terminar();
+        }
+    }
+
+    /**
+     * Escribe la instantánea a medida que recibe las citas, un bloque por vez,
+     * para orígenes que no conviene cargar completos (p. ej. páginas de la
+     * base). Los diccionarios se escriben primero, por lo que deben contener,
+     * sin repetir, las claves de todas las citas que se agreguen.
+     */
+    static final class Escritor implements AutoCloseable {
+        private final FileChannel canal;
+        private final Map<String, Integer> pacientes;
+        private final Map<String, Integer> medicos;
+        private final Map<String, Integer> salas;
+        private final long posicionContador;
+        private final List<Cita> pendientes = new ArrayList<>(CITAS_POR_BLOQUE);
+        private final Buffer bloque = new Buffer(CITAS_POR_BLOQUE * 16);
+        private final Buffer textos = new Buffer(4096);
+        private final Deflater compresor;
+        private int cantidadBloques;
+
+        Escritor(Path archivo, Collection<String> pacientes, Collection<String> medicos, Collection<String> salas)
+                throws IOException {
+            Buffer diccionarios = new Buffer(1024);
+            this.pacientes = escribirDiccionario(diccionarios, pacientes);
+            this.medicos = escribirDiccionario(diccionarios, medicos);
+            this.salas = escribirDiccionario(diccionarios, salas);
+            this.posicionContador = 12L + diccionarios.tamanio;
+
+            this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                Buffer cabecera = new Buffer(16);
+                cabecera.escribirInt(MAGIA);
+                cabecera.escribirInt(VERSION);
+                cabecera.escribirInt(diccionarios.tamanio);
+                cabecera.volcar(canal);
+                diccionarios.volcar(canal);
+                // La cantidad de bloques se conoce al terminar; se reserva su lugar
+                Buffer contador = new Buffer(4);
+                contador.escribirInt(0);
+                contador.volcar(canal);
+            } catch (IOException e) {
+                canal.close();
+                throw e;
+            }
+            this.compresor = new Deflater(Deflater.BEST_SPEED);
+        }
+
+        /**
+         * @throws IllegalArgumentException Si el paciente, médico o sala de la
+         *                                  cita no figura en los diccionarios
+         */
+        void agregar(Cita cita) throws IOException {
+            if (!pacientes.containsKey(cita.getPaciente().getDni())
+                    || !medicos.containsKey(cita.getMedico().getDni())
+                    || !salas.containsKey(cita.getSala().getNumero())) {
+                throw new IllegalArgumentException("La cita referencia una clave ausente de los diccionarios: " + cita);
+            }
+            pendientes.add(cita);
+            if (pendientes.size() == CITAS_POR_BLOQUE) {
+                volcarBloque();
+            }
+        }
+
+        /** Escribe el último bloque y la cantidad de bloques; sin esta llamada el archivo queda incompleto. */
+        void terminar() throws IOException {
+            if (!pendientes.isEmpty()) {
+                volcarBloque();
+            }
+            ByteBuffer contador = ByteBuffer.allocate(4).putInt(cantidadBloques).flip();
+            while (contador.hasRemaining()) {
+                canal.write(contador, posicionContador + contador.position());
+            }
+        }
+
+        private void volcarBloque() throws IOException {
+            bloque.tamanio = 4;
+            escribirBloque(bloque, textos, compresor, pendientes, pacientes, medicos, salas);
+            bloque.escribirIntEn(0, bloque.tamanio - 4);
+            bloque.volcar(canal);
+            pendientes.clear();
+            cantidadBloques++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                canal.close();
+            } finally {
+                compresor.end();
+            }
+        }
+    }
+
+    private static Map<String, Integer> escribirDiccionario(Buffer destino, Collection<String> claves) {
+        Map<String, Integer> indices = new HashMap<>();
+        destino.escribirVarint(claves.size());
+        for (String clave : claves) {
+            indices.put(clave, indices.size());
+            destino.escribirTexto(clave);
+        }
+        return indices;
+    }
+
+    private static void escribirBloque(Buffer bloque, Buffer textos, Deflater compresor, List<Cita> citas,
+            Map<String, Integer> pacientes, Map<String, Integer> medicos, Map<String, Integer> salas) {
+        Map<String, Integer> observaciones = new HashMap<>();
+        textos.tamanio = 0;
+        bloque.escribirVarint(citas.size());
+        long segundosAnterior = 0;
+        for (Cita cita : citas) {
+            bloque.escribirVarint(pacientes.get(cita.getPaciente().getDni()));
+            bloque.escribirVarint(medicos.get(cita.getMedico().getDni()));
+            bloque.escribirVarint(salas.get(cita.getSala().getNumero()));
+
+            LocalDateTime fechaHora = cita.getFechaHora();
+            long segundos = fechaHora.toEpochSecond(ZoneOffset.UTC);
+            bloque.escribirVarintZigZag(segundos - segundosAnterior);
+            bloque.escribirVarint(fechaHora.getNano());
+            segundosAnterior = segundos;
+
+            escribirCosto(bloque, cita.getCosto());
+            bloque.escribirByte(cita.getEstado().ordinal());
+
+            Integer indice = observaciones.get(cita.getObservaciones());
+            if (indice == null) {
+                indice = observaciones.size();
+                observaciones.put(cita.getObservaciones(), indice);
+                textos.escribirTexto(cita.getObservaciones());
+            }
+            bloque.escribirVarint(indice);
+        }
+
+        bloque.escribirVarint(observaciones.size());
+        bloque.escribirVarint(textos.tamanio);
+        compresor.reset();
+        compresor.setInput(textos.datos, 0, textos.tamanio);
+        compresor.finish();
+        int marcaLongitud = bloque.tamanio;
+        bloque.escribirInt(0);
+        int inicioComprimido = bloque.tamanio;
+        while (!compresor.finished()) {
+            bloque.asegurar(4096);
+            bloque.tamanio += compresor.deflate(bloque.datos, bloque.tamanio, bloque.datos.length - bloque.tamanio);
+        }
+        bloque.escribirIntEn(marcaLongitud, bloque.tamanio - inicioComprimido);
+    }
+
+    private static void escribirCosto(Buffer bloque, BigDecimal costo) {
+        int escala = costo.scale();
+        BigInteger sinEscala = costo.unscaledValue();
+        if (escala > Byte.MIN_VALUE && escala <= Byte.MAX_VALUE && sinEscala.bitLength() < 64) {
+            bloque.escribirByte(escala);
+            bloque.escribirVarintZigZag(sinEscala.longValue());
+        } else {
+            bloque.escribirByte(ESCALA_TEXTO);
+            bloque.escribirTexto(costo.toString());
+        }
+    }
+
+    /**
+     * Cada longitud, índice y ordinal leído se verifica contra los datos
+     * disponibles, por lo que un archivo dañado produce una excepción con la
+     * posición aproximada del error y no un fallo de lectura arbitrario.
+     *
+     * @throws IOException   Si el archivo está truncado o corrupto
+     * @throws CitaException Si algún DNI o sala del archivo no existe en los mapas
+     */
+    static List<Cita> leer(Path archivo, Map<String, Paciente> pacientes, Map<String, Medico> medicos,
+            Map<String, Sala> salas) throws IOException, CitaException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamanioArchivo = canal.size();
+            ByteBuffer cabecera = leerCompleto(canal, 0, 12);
+            if (cabecera.getInt() != MAGIA) {
+                throw new CitaException("El archivo no es una instantánea binaria de citas: " + archivo);
+            }
+            int version = cabecera.getInt();
+            if (version != VERSION) {
+                throw new CitaException("Versión de instantánea binaria no soportada: " + version);
+            }
+            int longitudDiccionarios = cabecera.getInt();
+            verificarTramo(12, longitudDiccionarios, tamanioArchivo, "diccionarios");
+            ByteBuffer diccionarios = leerCompleto(canal, 12, longitudDiccionarios);
+            Paciente[] porIndicePaciente = resolver(diccionarios, pacientes, Paciente.class, "Paciente no encontrado: ");
+            Medico[] porIndiceMedico = resolver(diccionarios, medicos, Medico.class, "Médico no encontrado: ");
+            Sala[] porIndiceSala = resolver(diccionarios, salas, Sala.class, "Sala no encontrada: ");
+
+            long posicion = 12L + longitudDiccionarios;
+            int cantidadBloques = leerCompleto(canal, posicion, 4).getInt();
+            // Cada bloque ocupa al menos los 4 bytes de su longitud
+            if (cantidadBloques < 0 || cantidadBloques > (tamanioArchivo - posicion - 4) / 4) {
+                throw corrupta(posicion, "cantidad de bloques inválida: " + cantidadBloques);
+            }
+            posicion += 4;
+            long[] inicios = new long[cantidadBloques];
+            int[] longitudes = new int[cantidadBloques];
+            for (int b = 0; b < cantidadBloques; b++) {
+                longitudes[b] = leerCompleto(canal, posicion, 4).getInt();
+                inicios[b] = posicion + 4;
+                verificarTramo(inicios[b], longitudes[b], tamanioArchivo, "bloque " + b);
+                posicion = inicios[b] + longitudes[b];
+            }
+
+            @SuppressWarnings("unchecked")
+            List<Cita>[] bloques = (List<Cita>[]) new List<?>[cantidadBloques];
+            try {
+                IntStream.range(0, cantidadBloques).parallel().forEach(b -> {
+                    try {
+                        ByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, inicios[b], longitudes[b]);
+                        bloques[b] = leerBloque(datos, inicios[b], porIndicePaciente, porIndiceMedico, porIndiceSala);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<Cita> citas = new ArrayList<>(cantidadBloques * CITAS_POR_BLOQUE);
+            for (List<Cita> bloque : bloques) {
+                citas.addAll(bloque);
+            }
+            return citas;
+        }
+    }
+
+    private static ByteBuffer leerCompleto(FileChannel canal, long posicion, int longitud) throws IOException {
+        ByteBuffer destino = ByteBuffer.allocate(longitud);
+        while (destino.hasRemaining()) {
+            if (canal.read(destino, posicion + destino.position()) < 0) {
+                throw new IOException("Instantánea binaria de citas truncada.");
+            }
+        }
+        return destino.flip();
+    }
+
+    private static void verificarTramo(long inicio, int longitud, long tamanioArchivo, String tramo)
+            throws IOException {
+        if (longitud < 0 || inicio + longitud > tamanioArchivo) {
+            throw corrupta(inicio, "longitud de " + tramo + " inválida: " + longitud);
+        }
+    }
+
+    private static IOException corrupta(long posicion, String detalle) {
+        return new IOException("Instantánea binaria de citas corrupta cerca del byte " + posicion + ": " + detalle);
+    }
+
+    private static IOException corrupta(long posicion, Exception causa) {
+        String detalle = causa.getMessage() != null ? causa.getMessage() : "datos truncados";
+        return new IOException("Instantánea binaria de citas corrupta cerca del byte " + posicion + ": " + detalle,
+                causa);
+    }
+
+    private static <T> T[] resolver(ByteBuffer diccionarios, Map<String, T> entidades, Class<T> tipo,
+            String mensajeFaltante) throws IOException, CitaException {
+        T[] resultado;
+        try {
+            // Cada clave ocupa al menos el byte de su longitud
+            int cantidad = leerLongitud(diccionarios);
+            @SuppressWarnings("unchecked")
+            T[] porIndice = (T[]) java.lang.reflect.Array.newInstance(tipo, cantidad);
+            resultado = porIndice;
+            for (int i = 0; i < cantidad; i++) {
+                String clave = leerTexto(diccionarios);
+                resultado[i] = entidades.get(clave);
+                if (resultado[i] == null) {
+                    throw new CitaException(mensajeFaltante + clave);
+                }
+            }
+        } catch (DataFormatException | BufferUnderflowException e) {
+            throw corrupta(12L + diccionarios.position(), e);
+        }
+        return resultado;
+    }
+
+    /**
+     * @param inicio Posición del bloque en el archivo, para ubicar los errores
+     * @throws IOException Si el bloque está truncado o corrupto
+     */
+    private static List<Cita> leerBloque(ByteBuffer datos, long inicio, Paciente[] pacientes, Medico[] medicos,
+            Sala[] salas) throws IOException {
+        try {
+            return decodificarBloque(datos, pacientes, medicos, salas);
+        } catch (DataFormatException | BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException | DateTimeException e) {
+            throw corrupta(inicio + datos.position(), e);
+        }
+    }
+
+    private static List<Cita> decodificarBloque(ByteBuffer datos, Paciente[] pacientes, Medico[] medicos,
+            Sala[] salas) throws DataFormatException {
+        // Cada fila ocupa varios bytes: la cantidad no puede superar los restantes
+        int cantidad = leerLongitud(datos);
+        int inicioFilas = datos.position();
+
+        // Las observaciones van al final del bloque: se saltean las filas para descomprimirlas primero
+        for (int i = 0; i < cantidad; i++) {
+            saltearFila(datos);
+        }
+        String[] observaciones = leerObservaciones(datos);
+
+        datos.position(inicioFilas);
+        List<Cita> citas = new ArrayList<>(cantidad);
+        long segundos = 0;
+        for (int i = 0; i < cantidad; i++) {
+            Paciente paciente = pacientes[leerIndice(datos, pacientes.length, "índice de paciente")];
+            Medico medico = medicos[leerIndice(datos, medicos.length, "índice de médico")];
+            Sala sala = salas[leerIndice(datos, salas.length, "índice de sala")];
+            segundos += leerVarintZigZag(datos);
+            int nanos = leerIndice(datos, 1_000_000_000, "nanosegundos");
+            BigDecimal costo = leerCosto(datos);
+            EstadoCita estado = ESTADOS[leerIndice(datos.get(), ESTADOS.length, "ordinal de estado")];
+            String observacion = observaciones[leerIndice(datos, observaciones.length, "índice de observaciones")];
+            citas.add(Cita.builder()
+                    .paciente(paciente)
+                    .medico(medico)
+                    .sala(sala)
+                    .fechaHora(LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC))
+                    .costo(costo)
+                    .estado(estado)
+                    .observaciones(observacion)
+                    .build());
+        }
+        return citas;
+    }
+
+    private static void saltearFila(ByteBuffer datos) throws DataFormatException {
+        for (int campo = 0; campo < 5; campo++) {
+            leerVarint(datos);
+        }
+        if (datos.get() == ESCALA_TEXTO) {
+            int longitud = leerLongitud(datos);
+            datos.position(datos.position() + longitud);
+        } else {
+            leerVarint(datos);
+        }
+        datos.get();
+        leerVarint(datos);
+    }
+
+    private static String[] leerObservaciones(ByteBuffer datos) throws DataFormatException {
+        int distintas = (int) Math.min(leerVarint(datos), Integer.MAX_VALUE);
+        long longitudTextos = leerVarint(datos);
+        int longitudComprimida = datos.getInt();
+        if (longitudComprimida < 0 || longitudComprimida > datos.remaining()) {
+            throw new DataFormatException("longitud de observaciones comprimidas inválida: " + longitudComprimida);
+        }
+        // Deflate no comprime más de 1032:1, y cada texto ocupa al menos el byte de su longitud
+        if (longitudTextos < 0 || longitudTextos > 1032L * longitudComprimida + 16 || distintas > longitudTextos) {
+            throw new DataFormatException("longitud de observaciones inválida: " + distintas + " textos en "
+                    + longitudTextos + " bytes");
+        }
+        byte[] comprimido = new byte[longitudComprimida];
+        datos.get(comprimido);
+
+        byte[] textos = new byte[(int) longitudTextos];
+        Inflater descompresor = new Inflater();
+        try {
+            descompresor.setInput(comprimido);
+            int leidos = 0;
+            while (leidos < textos.length) {
+                int n = descompresor.inflate(textos, leidos, textos.length - leidos);
+                if (n == 0 && (descompresor.finished() || descompresor.needsInput() || descompresor.needsDictionary())) {
+                    throw new DataFormatException("observaciones comprimidas truncadas");
+                }
+                leidos += n;
+            }
+        } finally {
+            descompresor.end();
+        }
+
+        ByteBuffer lector = ByteBuffer.wrap(textos);
+        String[] resultado = new String[distintas];
+        for (int i = 0; i < distintas; i++) {
+            resultado[i] = leerTexto(lector);
+        }
+        return resultado;
+    }
+
+    private static BigDecimal leerCosto(ByteBuffer datos) throws DataFormatException {
+        byte escala = datos.get();
+        if (escala == ESCALA_TEXTO) {
+            return new BigDecimal(leerTexto(datos));
+        }
+        return BigDecimal.valueOf(leerVarintZigZag(datos), escala);
+    }
+
+    private static long leerVarint(ByteBuffer datos) throws DataFormatException {
+        long valor = 0;
+        int desplazamiento = 0;
+        byte b;
+        do {
+            if (desplazamiento > 63) {
+                throw new DataFormatException("varint de más de 10 bytes");
+            }
+            b = datos.get();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            desplazamiento += 7;
+        } while (b < 0);
+        return valor;
+    }
+
+    private static long leerVarintZigZag(ByteBuffer datos) throws DataFormatException {
+        long valor = leerVarint(datos);
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    /** Lee un varint y verifica que esté en {@code [0, limite)}. */
+    private static int leerIndice(ByteBuffer datos, int limite, String campo) throws DataFormatException {
+        return leerIndice(leerVarint(datos), limite, campo);
+    }
+
+    private static int leerIndice(long valor, int limite, String campo) throws DataFormatException {
+        if (valor < 0 || valor >= limite) {
+            throw new DataFormatException(campo + " fuera de rango: " + valor);
+        }
+        return (int) valor;
+    }
+
+    /** Lee una longitud varint, que no puede superar los bytes restantes. */
+    private static int leerLongitud(ByteBuffer datos) throws DataFormatException {
+        long longitud = leerVarint(datos);
+        return leerIndice(longitud, datos.remaining() + 1, "longitud");
+    }
+
+    private static String leerTexto(ByteBuffer datos) throws DataFormatException {
+        int longitud = leerLongitud(datos);
+        if (longitud == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[longitud];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Arreglo de bytes ampliable con codificación varint. */
+    private static final class Buffer {
+        byte[] datos;
+        int tamanio;
+
+        Buffer(int capacidad) {
+            this.datos = new byte[capacidad];
+        }
+
+        void asegurar(int adicional) {
+            if (tamanio + adicional > datos.length) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, tamanio + adicional));
+            }
+        }
+
+        void escribirByte(int valor) {
+            asegurar(1);
+            datos[tamanio++] = (byte) valor;
+        }
+
+        void escribirInt(int valor) {
+            asegurar(4);
+            escribirIntEn(tamanio, valor);
+            tamanio += 4;
+        }
+
+        void escribirIntEn(int posicion, int valor) {
+            datos[posicion] = (byte) (valor >>> 24);
+            datos[posicion + 1] = (byte) (valor >>> 16);
+            datos[posicion + 2] = (byte) (valor >>> 8);
+            datos[posicion + 3] = (byte) valor;
+        }
+
+        void escribirVarint(long valor) {
+            asegurar(10);
+            while ((valor & ~0x7FL) != 0) {
+                datos[tamanio++] = (byte) ((valor & 0x7F) | 0x80);
+                valor >>>= 7;
+            }
+            datos[tamanio++] = (byte) valor;
+        }
+
+        void escribirVarintZigZag(long valor) {
+            escribirVarint((valor << 1) ^ (valor >> 63));
+        }
+
+        void escribirTexto(String texto) {
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            escribirVarint(bytes.length);
+            asegurar(bytes.length);
+            System.arraycopy(bytes, 0, datos, tamanio, bytes.length);
+            tamanio += bytes.length;
+        }
+
+        void volcar(FileChannel canal) throws IOException {
+            ByteBuffer vista = ByteBuffer.wrap(datos, 0, tamanio);
+            while (vista.hasRemaining()) {
+                canal.write(vista);
+            }
+        }
+    }
+}
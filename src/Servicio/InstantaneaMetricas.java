@@ -0,0 +1,24 @@
+package Servicio;
+
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * Estado de las métricas de un {@link CitaManager} en un momento dado.
+ *
+ * @see CitaManager#getMetricas()
+ */
+@Value
+public class InstantaneaMetricas {
+    /** Latencia de cada operación. */
+    Map<OperacionCita, ResumenLatencia> latencias;
+    /** Citas rechazadas por cada regla de negocio, incluidas las de lotes. */
+    Map<ReglaNegocio, Long> rechazos;
+    /** Total de citas registradas. */
+    long citas;
+    /** Claves de cada índice. */
+    int pacientesIndexados;
+    int medicosIndexados;
+    int salasIndexadas;
+}
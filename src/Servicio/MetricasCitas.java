@@ -0,0 +1,62 @@
+package Servicio;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de métricas de un {@link CitaManager}: latencia por
+ * {@link OperacionCita} y rechazos por {@link ReglaNegocio}.
+ *
+ * El registro no asigna memoria: los histogramas y los contadores
+ * ({@link LongAdder}) están repartidos en franjas por hilo y se indexan por
+ * ordinal.
+ */
+final class MetricasCitas {
+    private final HistogramaLatencia[] latencias = new HistogramaLatencia[OperacionCita.values().length];
+    private final LongAdder[] rechazos = new LongAdder[ReglaNegocio.values().length];
+
+    MetricasCitas() {
+        int franjas = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < latencias.length; i++) {
+            latencias[i] = new HistogramaLatencia(franjas);
+        }
+        for (int i = 0; i < rechazos.length; i++) {
+            rechazos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param inicio Valor de {@link System#nanoTime()} al comenzar la operación
+     */
+    void registrarLatencia(OperacionCita operacion, long inicio) {
+        latencias[operacion.ordinal()].registrar(System.nanoTime() - inicio);
+    }
+
+    /** @param regla Regla violada; {@code null} si el rechazo no corresponde a una regla */
+    void registrarRechazo(ReglaNegocio regla) {
+        if (regla != null) {
+            rechazos[regla.ordinal()].increment();
+        }
+    }
+
+    void registrarRechazos(ReglaNegocio regla, int cantidad) {
+        if (cantidad > 0) {
+            rechazos[regla.ordinal()].add(cantidad);
+        }
+    }
+
+    InstantaneaMetricas instantanea(long citas, int pacientes, int medicos, int salas) {
+        Map<OperacionCita, ResumenLatencia> resumenes = new EnumMap<>(OperacionCita.class);
+        for (OperacionCita operacion : OperacionCita.values()) {
+            resumenes.put(operacion, latencias[operacion.ordinal()].resumir());
+        }
+        Map<ReglaNegocio, Long> conteos = new EnumMap<>(ReglaNegocio.class);
+        for (ReglaNegocio regla : ReglaNegocio.values()) {
+            conteos.put(regla, rechazos[regla.ordinal()].sum());
+        }
+        return new InstantaneaMetricas(Collections.unmodifiableMap(resumenes), Collections.unmodifiableMap(conteos),
+                citas, pacientes, medicos, salas);
+    }
+}
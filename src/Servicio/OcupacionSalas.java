@@ -0,0 +1,272 @@
+package Servicio;
+
+import Entidades.Cita;
+import Entidades.Departamento;
+import Entidades.Hospital;
+import Entidades.Sala;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * [HU-10] Ocupación de las salas para planificar su capacidad: utilización
+ * por día y por semana, capacidad libre, hora pico y utilización por tipo
+ * de sala (consultorio, quirófano, emergencias).
+ *
+ * Cada día de una sala es un mapa de bits de 48 turnos de 30 minutos en un
+ * {@code long}. Una cita ocupa su sala durante la ventana de 2 horas de
+ * RN-08.2: los 4 turnos a partir del que contiene su {@code fechaHora}, y
+ * una cita de la noche sigue en los primeros turnos del día siguiente. Como
+ * dos citas de la misma sala están separadas al menos 2 horas, sus turnos
+ * nunca se superponen y retirar una cita apaga exactamente los bits que
+ * encendió. Las consultas cuentan bits con {@link Long#bitCount}: un año de
+ * una sala son 365 palabras, sin importar cuántas citas tenga.
+ *
+ * Los días de cada sala se agrupan en bloques de 512 que se crean con la
+ * primera cita del bloque, así que los períodos sin citas no ocupan memoria.
+ *
+ * Un {@link CitaManager} la mantiene junto con su índice por sala
+ * ({@link CitaManager#getOcupacion()}): una cita ocupa su sala desde que se
+ * programa o se carga hasta que se cancela o elimina, cualquiera sea su
+ * estado. Los rangos son de días completos, con {@code hasta} exclusivo.
+ *
+ * Concurrencia: las escrituras sobre una sala se serializan entre sí; las
+ * consultas no bloquean y ven cada día antes o después de un cambio
+ * simultáneo.
+ */
+public final class OcupacionSalas {
+    /** Resolución de los mapas de bits. */
+    public static final Duration DURACION_TURNO = Duration.ofMinutes(30);
+    private static final int MINUTOS_POR_TURNO = (int) DURACION_TURNO.toMinutes();
+    private static final int TURNOS_POR_HORA = 60 / MINUTOS_POR_TURNO;
+    private static final int TURNOS_POR_DIA = 24 * TURNOS_POR_HORA;
+    private static final int TURNOS_POR_CITA = (int) (CitaManager.VENTANA_MINIMA.toMinutes() / MINUTOS_POR_TURNO);
+    private static final long TURNOS_DEL_DIA = (1L << TURNOS_POR_DIA) - 1;
+    private static final long TURNOS_DE_UNA_HORA = (1L << TURNOS_POR_HORA) - 1;
+    private static final int BITS_BLOQUE = 9;
+    private static final int DIAS_POR_BLOQUE = 1 << BITS_BLOQUE;
+
+    /** Por número de sala. */
+    private final Map<String, Agenda> agendas = new ConcurrentHashMap<>();
+
+    OcupacionSalas() {
+    }
+
+    void agregar(Cita cita) {
+        marcar(cita, true);
+    }
+
+    void retirar(Cita cita) {
+        marcar(cita, false);
+    }
+
+    void vaciar() {
+        agendas.clear();
+    }
+
+    private void marcar(Cita cita, boolean ocupar) {
+        String numero = cita.getSala().getNumero();
+        Agenda agenda = ocupar ? agendas.computeIfAbsent(numero, n -> new Agenda()) : agendas.get(numero);
+        if (agenda == null) {
+            return;
+        }
+        long turno = Math.floorDiv(cita.getFechaHora().toEpochSecond(ZoneOffset.UTC), 60L * MINUTOS_POR_TURNO);
+        long dia = Math.floorDiv(turno, TURNOS_POR_DIA);
+        long turnos = ((1L << TURNOS_POR_CITA) - 1) << Math.floorMod(turno, TURNOS_POR_DIA);
+        synchronized (agenda) {
+            agenda.marcar(dia, turnos & TURNOS_DEL_DIA, ocupar);
+            if (turnos > TURNOS_DEL_DIA) {
+                agenda.marcar(dia + 1, turnos >>> TURNOS_POR_DIA, ocupar);
+            }
+        }
+    }
+
+    /**
+     * [HU-10] Porcentaje (de 0 a 100) del tiempo de la sala ocupado por
+     * citas entre {@code desde} y {@code hasta}; 0 si el rango está vacío.
+     */
+    public double utilizacion(Sala sala, LocalDate desde, LocalDate hasta) {
+        return porcentaje(turnosOcupados(sala, desde, hasta), dias(desde, hasta));
+    }
+
+    /** [HU-10] Tiempo de la sala sin citas entre {@code desde} y {@code hasta}. */
+    public Duration capacidadLibre(Sala sala, LocalDate desde, LocalDate hasta) {
+        return DURACION_TURNO.multipliedBy(dias(desde, hasta) * TURNOS_POR_DIA - turnosOcupados(sala, desde, hasta));
+    }
+
+    /** [HU-10] Utilización de la sala en cada día del rango, incluidos los días sin citas. */
+    public NavigableMap<LocalDate, Double> utilizacionPorDia(Sala sala, LocalDate desde, LocalDate hasta) {
+        NavigableMap<LocalDate, Double> resultado = new TreeMap<>();
+        for (LocalDate dia = desde; dia.isBefore(hasta); dia = dia.plusDays(1)) {
+            resultado.put(dia, 0.0);
+        }
+        recorrer(sala, desde, hasta, (dia, turnos) -> resultado.put(LocalDate.ofEpochDay(dia),
+                porcentaje(Long.bitCount(turnos), 1)));
+        return resultado;
+    }
+
+    /**
+     * [HU-10] Utilización de la sala en cada semana del rango, por el lunes
+     * que la comienza. Si el rango corta la primera o la última semana, solo
+     * cuentan sus días dentro del rango.
+     */
+    public NavigableMap<LocalDate, Double> utilizacionPorSemana(Sala sala, LocalDate desde, LocalDate hasta) {
+        NavigableMap<LocalDate, Double> resultado = new TreeMap<>();
+        long primero = desde.toEpochDay();
+        long fin = hasta.toEpochDay();
+        if (primero >= fin) {
+            return resultado;
+        }
+        long primerLunes = lunes(primero);
+        long[] ocupados = new long[(int) ((fin - 1 - primerLunes) / 7 + 1)];
+        recorrer(sala, desde, hasta, (dia, turnos) -> ocupados[(int) ((dia - primerLunes) / 7)] += Long.bitCount(turnos));
+        for (int semana = 0; semana < ocupados.length; semana++) {
+            long inicio = primerLunes + 7L * semana;
+            resultado.put(LocalDate.ofEpochDay(inicio),
+                    porcentaje(ocupados[semana], Math.min(inicio + 7, fin) - Math.max(inicio, primero)));
+        }
+        return resultado;
+    }
+
+    /**
+     * [HU-10] Utilización de cada tipo de sala del hospital: el tiempo ocupado
+     * de sus salas sobre la capacidad de todas ellas, incluidas las que no
+     * tienen citas. Ordenado por tipo.
+     */
+    public Map<String, Double> utilizacionPorTipo(Hospital hospital, LocalDate desde, LocalDate hasta) {
+        // Por tipo: turnos ocupados y cantidad de salas
+        Map<String, long[]> totales = new TreeMap<>();
+        for (Sala sala : salas(hospital, null)) {
+            long[] total = totales.computeIfAbsent(sala.getTipo(), tipo -> new long[2]);
+            total[0] += turnosOcupados(sala, desde, hasta);
+            total[1]++;
+        }
+        long dias = dias(desde, hasta);
+        Map<String, Double> resultado = new TreeMap<>();
+        totales.forEach((tipo, total) -> resultado.put(tipo, porcentaje(total[0], total[1] * dias)));
+        return resultado;
+    }
+
+    /**
+     * [HU-10] Hora del día (de 0 a 23) en que la sala estuvo ocupada más
+     * veces dentro del rango; ante un empate, la más temprana.
+     *
+     * @return La hora pico, o -1 si la sala no tiene citas en el rango
+     */
+    public int horaPico(Sala sala, LocalDate desde, LocalDate hasta) {
+        long[] porHora = new long[24];
+        recorrer(sala, desde, hasta, (dia, turnos) -> contarPorHora(turnos, porHora));
+        return maximo(porHora);
+    }
+
+    /**
+     * [HU-10] Hora del día con más ocupación entre las salas del hospital del
+     * tipo dado, o de todas si es {@code null}.
+     *
+     * @see #horaPico(Sala, LocalDate, LocalDate)
+     */
+    public int horaPico(Hospital hospital, String tipo, LocalDate desde, LocalDate hasta) {
+        long[] porHora = new long[24];
+        for (Sala sala : salas(hospital, tipo)) {
+            recorrer(sala, desde, hasta, (dia, turnos) -> contarPorHora(turnos, porHora));
+        }
+        return maximo(porHora);
+    }
+
+    private long turnosOcupados(Sala sala, LocalDate desde, LocalDate hasta) {
+        long[] ocupados = new long[1];
+        recorrer(sala, desde, hasta, (dia, turnos) -> ocupados[0] += Long.bitCount(turnos));
+        return ocupados[0];
+    }
+
+    /** Días de la sala con al menos un turno ocupado en {@code [desde, hasta)}, en orden. */
+    private void recorrer(Sala sala, LocalDate desde, LocalDate hasta, Recorrido recorrido) {
+        Agenda agenda = agendas.get(sala.getNumero());
+        long primero = desde.toEpochDay();
+        long fin = hasta.toEpochDay();
+        if (agenda == null || primero >= fin) {
+            return;
+        }
+        for (Map.Entry<Long, long[]> bloque : agenda.bloques
+                .subMap(primero >> BITS_BLOQUE, true, (fin - 1) >> BITS_BLOQUE, true).entrySet()) {
+            long base = bloque.getKey() << BITS_BLOQUE;
+            long[] dias = bloque.getValue();
+            for (int i = (int) Math.max(primero - base, 0), limite = (int) Math.min(fin - base, DIAS_POR_BLOQUE);
+                    i < limite; i++) {
+                long turnos = dias[i];
+                if (turnos != 0) {
+                    recorrido.dia(base + i, turnos);
+                }
+            }
+        }
+    }
+
+    private static List<Sala> salas(Hospital hospital, String tipo) {
+        List<Sala> salas = new ArrayList<>();
+        for (Departamento departamento : hospital.getDepartamentos()) {
+            for (Sala sala : departamento.getSalas()) {
+                if (tipo == null || tipo.equals(sala.getTipo())) {
+                    salas.add(sala);
+                }
+            }
+        }
+        return salas;
+    }
+
+    private static void contarPorHora(long turnos, long[] porHora) {
+        for (int hora = 0; hora < porHora.length; hora++) {
+            porHora[hora] += Long.bitCount(turnos & (TURNOS_DE_UNA_HORA << (hora * TURNOS_POR_HORA)));
+        }
+    }
+
+    private static int maximo(long[] porHora) {
+        int pico = -1;
+        for (int hora = 0; hora < porHora.length; hora++) {
+            if (porHora[hora] > 0 && (pico < 0 || porHora[hora] > porHora[pico])) {
+                pico = hora;
+            }
+        }
+        return pico;
+    }
+
+    private static long dias(LocalDate desde, LocalDate hasta) {
+        return Math.max(hasta.toEpochDay() - desde.toEpochDay(), 0);
+    }
+
+    private static double porcentaje(long turnos, long dias) {
+        return dias > 0 ? 100.0 * turnos / (dias * TURNOS_POR_DIA) : 0;
+    }
+
+    /** Día del lunes de la semana del día dado; el día 0 de la época fue jueves. */
+    private static long lunes(long dia) {
+        return dia - Math.floorMod(dia + 3, 7);
+    }
+
+    private interface Recorrido {
+        void dia(long dia, long turnos);
+    }
+
+    /** Turnos ocupados de una sala, por bloque de días consecutivos. */
+    private static final class Agenda {
+        final NavigableMap<Long, long[]> bloques = new ConcurrentSkipListMap<>();
+
+        /** Se invoca con el monitor de la agenda tomado. */
+        void marcar(long dia, long turnos, boolean ocupar) {
+            long[] dias = ocupar ? bloques.computeIfAbsent(dia >> BITS_BLOQUE, bloque -> new long[DIAS_POR_BLOQUE])
+                    : bloques.get(dia >> BITS_BLOQUE);
+            if (dias == null) {
+                return;
+            }
+            int i = (int) (dia & (DIAS_POR_BLOQUE - 1));
+            dias[i] = ocupar ? dias[i] | turnos : dias[i] & ~turnos;
+        }
+    }
+}
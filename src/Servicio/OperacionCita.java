@@ -0,0 +1,28 @@
+package Servicio;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Operaciones de {@link CitaManager} cuya latencia se mide.
+ *
+ * @see MetricasCitas
+ */
+@RequiredArgsConstructor
+@Getter
+public enum OperacionCita {
+    PROGRAMAR_CITA("Programar cita"),
+    PROGRAMAR_CITAS("Programar lote de citas"),
+    CAMBIAR_ESTADO("Cambiar estado de cita"),
+    ELIMINAR_CITA("Eliminar cita"),
+    CONSULTA_POR_PACIENTE("Consulta por paciente"),
+    CONSULTA_POR_MEDICO("Consulta por médico"),
+    CONSULTA_POR_SALA("Consulta por sala"),
+    BUSCAR_HORARIOS("Buscar horarios disponibles"),
+    GUARDAR_CITAS("Guardar CSV"),
+    CARGAR_CITAS("Cargar CSV"),
+    GUARDAR_INSTANTANEA("Guardar instantánea binaria"),
+    CARGAR_INSTANTANEA("Cargar instantánea binaria");
+
+    private final String descripcion;
+}
@@ -0,0 +1,20 @@
+package Servicio;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * [HU-11] Momento en que el {@link DiarioCitas} fuerza sus registros a disco.
+ */
+@RequiredArgsConstructor
+@Getter
+public enum PoliticaSincronizacion {
+    /** Cada operación espera su fsync; los fsync concurrentes se agrupan. */
+    SIEMPRE("Sincronización por operación"),
+    /** Un hilo de fondo ejecuta fsync cada intervalo configurado. */
+    PERIODICA("Sincronización periódica"),
+    /** Los registros se entregan al sistema operativo sin fsync explícito. */
+    NUNCA("Sin sincronización explícita");
+
+    private final String descripcion;
+}
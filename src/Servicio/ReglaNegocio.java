@@ -0,0 +1,23 @@
+package Servicio;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Reglas de negocio cuya violación rechaza una cita.
+ *
+ * @see CitaException#getRegla()
+ */
+@RequiredArgsConstructor
+@Getter
+public enum ReglaNegocio {
+    RN_07_1("RN-07.1", "No programar citas en el pasado"),
+    RN_07_2("RN-07.2", "Costo debe ser positivo y no superar el máximo"),
+    RN_07_3("RN-07.3", "Solo se permiten transiciones de estado válidas"),
+    RN_08_1("RN-08.1", "Ventana de 2 horas entre citas del mismo médico"),
+    RN_08_2("RN-08.2", "Ventana de 2 horas entre citas de la misma sala"),
+    RN_09_1("RN-09.1", "Especialidad del médico debe coincidir con departamento de sala");
+
+    private final String codigo;
+    private final String descripcion;
+}
@@ -0,0 +1,17 @@
+package Servicio;
+
+import Entidades.Cita;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * [HU-07] Resultado de {@link AsignadorCitas#asignar}: las citas programadas
+ * y el motivo de cada solicitud que no pudo ubicarse, ambos indexados por la
+ * posición de la solicitud en la lista recibida.
+ */
+@Value
+public class ResultadoAsignacion {
+    Map<Integer, Cita> asignadas;
+    Map<Integer, String> rechazadas;
+}
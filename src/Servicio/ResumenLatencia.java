@@ -0,0 +1,19 @@
+package Servicio;
+
+import lombok.Value;
+
+/**
+ * Percentiles de latencia de una operación, en nanosegundos.
+ *
+ * @see InstantaneaMetricas
+ */
+@Value
+public class ResumenLatencia {
+    long cantidad;
+    long promedio;
+    long p50;
+    long p90;
+    long p99;
+    long p999;
+    long maximo;
+}
@@ -0,0 +1,34 @@
+package Servicio;
+
+import Entidades.EspecialidadMedica;
+import Entidades.Paciente;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * [HU-07] Solicitud de cita sin médico, sala ni horario asignados.
+ * {@link AsignadorCitas} la ubica en algún médico de la especialidad y una
+ * sala compatible, en un horario dentro de la ventana
+ * {@code [desde, hasta]}.
+ *
+ * @see AsignadorCitas#asignar(Entidades.Hospital, java.util.List)
+ */
+@Getter
+@ToString(exclude = "paciente")
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SolicitudAsignacion {
+    @NonNull
+    final Paciente paciente;
+    @NonNull
+    final EspecialidadMedica especialidad;
+    @NonNull
+    final LocalDateTime desde;
+    @NonNull
+    final LocalDateTime hasta;
+    @NonNull
+    final BigDecimal costo;
+}
@@ -0,0 +1,33 @@
+package Servicio;
+
+import Entidades.Medico;
+import Entidades.Paciente;
+import Entidades.Sala;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * [HU-07] Solicitud de cita para programación en lote.
+ * Contiene los mismos datos que recibe {@link CitaService#programarCita}.
+ *
+ * @see CitaService#programarCitas(java.util.List)
+ */
+@Getter
+@ToString(exclude = { "paciente", "medico", "sala" })
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SolicitudCita {
+    @NonNull
+    final Paciente paciente;
+    @NonNull
+    final Medico medico;
+    @NonNull
+    final Sala sala;
+    @NonNull
+    final LocalDateTime fechaHora;
+    @NonNull
+    final BigDecimal costo;
+}